@@ -0,0 +1,87 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and hits of the file cache and of the typed lookups of {@link MensaCacheManager}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final int MENSA_ID = 187;
+    private static final LocalDate DATE = LocalDate.of(2025, 10, 13);
+    // writes rotate over a few keys, so that the cache directory doesn't grow during a run
+    private static final int WRITE_KEYS = 64;
+
+    private Path directory;
+    private FilePersistentCache cache;
+    private MensaCacheManager manager;
+    private List<Meal> meals;
+    private String[] writeKeys;
+    private int nextWrite;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mensa4j-bench");
+        cache = new FilePersistentCache(directory.toString());
+        manager = new MensaCacheManager(cache);
+        meals = Fixtures.meals();
+        manager.cacheMeals(MENSA_ID, DATE, meals);
+        writeKeys = new String[WRITE_KEYS];
+        for (int i = 0; i < WRITE_KEYS; i++) {
+            writeKeys[i] = "bench_" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void filePut() {
+        String key = writeKeys[nextWrite++ & (WRITE_KEYS - 1)];
+        cache.put(key, meals, System.currentTimeMillis() + 60_000);
+    }
+
+    @Benchmark
+    public List<Meal> fileGet() {
+        return cache.get("meals_" + MENSA_ID + "_2025-10-13", Fixtures.MEAL_LIST);
+    }
+
+    @Benchmark
+    public List<Meal> cachedMealsByString() {
+        return manager.getCachedMeals(MENSA_ID, "2025-10-13");
+    }
+
+    @Benchmark
+    public List<Meal> cachedMealsByDate() {
+        return manager.getCachedMeals(MENSA_ID, DATE);
+    }
+
+    @Benchmark
+    public boolean hasCachedMeals() {
+        return manager.hasCachedMeals(MENSA_ID, DATE);
+    }
+
+    @Benchmark
+    public boolean cacheUnchangedMeals() {
+        // the common case of a scrape: the menu did not change, only the expiration is extended
+        return manager.cacheMeals(MENSA_ID, DATE, meals);
+    }
+}
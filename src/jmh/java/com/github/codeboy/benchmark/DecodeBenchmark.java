@@ -0,0 +1,41 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.MensaImpl;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson decoding of the canteen and meal payloads of the OpenMensa API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    private final Gson gson = new Gson();
+    private String canteensJson;
+    private String mealsJson;
+
+    @Setup
+    public void setUp() {
+        canteensJson = Fixtures.read("canteens.json");
+        mealsJson = Fixtures.read("meals.json");
+    }
+
+    @Benchmark
+    public List<MensaImpl> decodeCanteens() {
+        return gson.fromJson(canteensJson, Fixtures.CANTEEN_LIST);
+    }
+
+    @Benchmark
+    public List<Meal> decodeMeals() {
+        return gson.fromJson(mealsJson, Fixtures.MEAL_LIST);
+    }
+}
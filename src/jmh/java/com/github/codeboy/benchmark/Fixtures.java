@@ -0,0 +1,77 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The checked in payloads the benchmarks run against, so that no benchmark touches the network.
+ */
+final class Fixtures {
+
+    static final Type CANTEEN_LIST = new TypeToken<List<MensaImpl>>() {
+    }.getType();
+    static final Type MEAL_LIST = new TypeToken<List<Meal>>() {
+    }.getType();
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param name the name of a file in the fixtures directory
+     * @return its content
+     */
+    static String read(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null)
+                throw new IllegalArgumentException("Missing fixture " + name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the canteens of one page of the OpenMensa canteen directory
+     */
+    static List<Mensa> canteens() {
+        return new ArrayList<>(new Gson().<List<MensaImpl>>fromJson(read("canteens.json"), CANTEEN_LIST));
+    }
+
+    /**
+     * @return the meals of one day of an OpenMensa canteen
+     */
+    static List<Meal> meals() {
+        return new Gson().fromJson(read("meals.json"), MEAL_LIST);
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory))
+            return;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.MealInterner;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The heap held by a month of cached meals of many canteens, with and without {@link MealInterner}.
+ * Every canteen serves a rotating selection of the recorded dishes at one of a few price levels,
+ * so dishes recur across days and canteens like they do on real menus.
+ * <p>
+ * {@code retainedHeap} reports the retained bytes as the {@code retainedBytes} counter, its time includes
+ * two full garbage collections and is not meaningful. {@code decodeDay} shows the cost of interning.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class InternBenchmark {
+
+    private static final int CANTEENS = 200;
+    private static final int DAYS = 30;
+    private static final int MEALS_PER_DAY = 6;
+
+    @Param({"true", "false"})
+    public boolean intern;
+
+    private final Gson gson = new Gson();
+    private String[] dayJson;
+    private List<List<Meal>> retained;
+    private int nextDay;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long retainedBytes;
+    }
+
+    @Setup
+    public void setUp() {
+        MealInterner.setEnabled(intern);
+        JsonArray dishes = JsonParser.parseString(Fixtures.read("meals.json")).getAsJsonArray();
+        dayJson = new String[CANTEENS * DAYS];
+        for (int canteen = 0; canteen < CANTEENS; canteen++) {
+            double surcharge = (canteen % 4) * 0.1;
+            for (int day = 0; day < DAYS; day++) {
+                JsonArray meals = new JsonArray();
+                for (int i = 0; i < MEALS_PER_DAY; i++) {
+                    JsonObject meal = dishes.get((canteen + day + i) % dishes.size()).deepCopy().getAsJsonObject();
+                    JsonObject prices = meal.getAsJsonObject("prices");
+                    for (String audience : new String[]{"students", "employees", "others"}) {
+                        JsonElement price = prices.get(audience);
+                        if (price != null && !price.isJsonNull())
+                            prices.addProperty(audience, Math.round((price.getAsDouble() + surcharge) * 100) / 100.0);
+                    }
+                    meals.add(meal);
+                }
+                dayJson[canteen * DAYS + day] = meals.toString();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        MealInterner.setEnabled(true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public List<List<Meal>> retainedHeap(Heap heap) {
+        retained = null;
+        long before = usedHeap();
+        List<List<Meal>> days = new ArrayList<>(dayJson.length);
+        for (String json : dayJson) {
+            days.add(gson.fromJson(json, Fixtures.MEAL_LIST));
+        }
+        retained = days;
+        heap.retainedBytes = usedHeap() - before;
+        return days;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public List<Meal> decodeDay() {
+        return gson.fromJson(dayJson[nextDay++ % dayJson.length], Fixtures.MEAL_LIST);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
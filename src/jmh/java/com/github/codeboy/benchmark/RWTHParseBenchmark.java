@@ -0,0 +1,48 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.RWTHMensa;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scrape of a weekly menu page of the Studierendenwerk Aachen, without the download.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RWTHParseBenchmark {
+
+    private String html;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        html = Fixtures.read("rwth-academica-w.html");
+        document = Jsoup.parse(html);
+    }
+
+    @Benchmark
+    public Document parseHtml() {
+        return Jsoup.parse(html);
+    }
+
+    @Benchmark
+    public Map<String, List<Meal>> parseWeek() throws ParseException {
+        return RWTHMensa.parseWeek(document);
+    }
+
+    @Benchmark
+    public Map<String, List<Meal>> parseHtmlAndWeek() throws ParseException {
+        return RWTHMensa.parseWeek(Jsoup.parse(html));
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.OpenMensa;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of canteens by many reader threads, alone and while another thread keeps replacing canteens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryBenchmark {
+
+    private OpenMensa openMensa;
+    private List<Mensa> canteens;
+    private int[] ids;
+
+    /**
+     * @return the OpenMensa instance without any provider, so that lookups never go to the network
+     */
+    static OpenMensa offlineOpenMensa() {
+        System.setProperty("mensa4j.providers", "");
+        return OpenMensa.getInstance();
+    }
+
+    @Setup
+    public void setUp() {
+        openMensa = offlineOpenMensa();
+        canteens = Fixtures.canteens();
+        ids = new int[canteens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Mensa mensa = canteens.get(i);
+            openMensa.addMensa(mensa);
+            ids[i] = mensa.getId();
+        }
+    }
+
+    private Mensa randomLookup() {
+        return openMensa.getMensa(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Mensa getMensa() {
+        return randomLookup();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getAllCanteens() {
+        return openMensa.getAllCanteens().size();
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public Mensa reader() {
+        return randomLookup();
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public void writer(Blackhole blackhole) {
+        Mensa mensa = canteens.get(ThreadLocalRandom.current().nextInt(canteens.size()));
+        openMensa.addMensa(new MensaImpl(mensa.getId(), mensa.getName(), mensa.getCity(), mensa.getAddress(),
+                mensa.getCoordinates()));
+        blackhole.consume(mensa);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.OpenMensa;
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.MensaImpl;
+import com.github.codeboy.api.RWTHMensa;
+import com.github.codeboy.api.ReykjavikMensa;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uncached fetches of every provider end to end, against a {@link ReplayServer} instead of the real sites.
+ * Pass {@code -p latencyMillis=50 -p errorRate=0.05} to see the fetch paths under a slow or failing upstream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final String DATE = "2025-10-13";
+
+    @Param("0")
+    public long latencyMillis;
+
+    @Param("0")
+    public double errorRate;
+
+    private ReplayServer server;
+    private Path directory;
+    private MensaCacheManager previousCacheManager;
+    private MensaImpl openMensaCanteen;
+    private RWTHMensa rwthCanteen;
+    private ReykjavikMensa reykjavikCanteen;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = ReplayServer.start(0);
+        server.setLatency(latencyMillis);
+        server.setErrorRate(errorRate);
+        server.install();
+
+        OpenMensa openMensa = RegistryBenchmark.offlineOpenMensa();
+        previousCacheManager = openMensa.getCacheManager();
+        directory = Files.createTempDirectory("mensa4j-replay");
+        openMensa.setCacheManager(new MensaCacheManager(new FilePersistentCache(directory.toString())));
+
+        openMensaCanteen = new MensaImpl(1, "Cafeteria Hochschule Aachen", "Aachen", "", Arrays.asList(50.73, 6.09));
+        rwthCanteen = new RWTHMensa(openMensaCanteen, "academica", "academica", "Aachen, Mensa Academica", 187);
+        reykjavikCanteen = new ReykjavikMensa();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        ReplayServer.uninstall();
+        OpenMensa.getInstance().setCacheManager(previousCacheManager);
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<Meal> openMensaMeals() {
+        return openMensaCanteen.getMeals(DATE, true);
+    }
+
+    @Benchmark
+    public List<Meal> rwthMeals() {
+        return rwthCanteen.getMeals(DATE, true);
+    }
+
+    @Benchmark
+    public List<Meal> reykjavikMeals() {
+        return reykjavikCanteen.getMeals(DATE, true);
+    }
+
+    @Benchmark
+    public boolean openMensaIsOpen() {
+        // the opening state is cached without a bypass, so clear it to measure the fetch
+        OpenMensa.getInstance().getCacheManager().clearAll();
+        return openMensaCanteen.isOpen(DATE);
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.OpenMensa;
+import com.github.codeboy.api.RWTHMensa;
+import com.github.codeboy.api.ReykjavikMensa;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP server that replays the recorded fixtures of every provider, so that fetches can be load tested
+ * and benchmarked without touching the real sites.
+ * <p>
+ * It serves the OpenMensa API below {@link #getOpenMensaUrl()}, the Studierendenwerk pages below
+ * {@link #getStudierendenwerkUrl()} and the Reykjavik feed at {@link #getReykjavikUrl()}.
+ * Every canteen gets the same recorded menu. Responses can be delayed and a share of them can be
+ * answered with a 503 instead.
+ * <p>
+ * Run it on its own with {@code ./gradlew replayServer -PreplayArgs="8080 50 0.01"}
+ * (port, latency in milliseconds, error rate).
+ */
+public final class ReplayServer implements AutoCloseable {
+
+    private static final Pattern CANTEEN_PAGE = Pattern.compile("/api/v2/canteens/?");
+    private static final Pattern CANTEEN = Pattern.compile("/api/v2/canteens/(\\d+)/?");
+    private static final Pattern MEALS = Pattern.compile("/api/v2/canteens/\\d+/days/[^/]+/meals/?");
+    private static final Pattern DAY = Pattern.compile("/api/v2/canteens/\\d+/days/([^/]+)/?");
+    private static final Pattern WEEK_PAGE = Pattern.compile("/studierendenwerk/speiseplaene/[^/]+-w\\.html");
+    private static final Pattern OPENINGS_PAGE = Pattern.compile("/studierendenwerk/de/Gastronomie/mensa-[^/]+-wochenplan\\.html");
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("(?:^|&)page=(\\d+)");
+    private static final String REYKJAVIK_PATH = "/reykjavik/menu";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String canteens;
+    private final Map<String, String> canteensById = new HashMap<>();
+    private final String meals;
+    private final String weekPage;
+    private final String openingsPage;
+    private final String reykjavik;
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+
+    private ReplayServer(int port) throws IOException {
+        canteens = Fixtures.read("canteens.json");
+        for (JsonElement canteen : JsonParser.parseString(canteens).getAsJsonArray()) {
+            canteensById.put(canteen.getAsJsonObject().get("id").getAsString(), canteen.toString());
+        }
+        meals = Fixtures.read("meals.json");
+        weekPage = Fixtures.read("rwth-academica-w.html");
+        openingsPage = Fixtures.read("rwth-academica-wochenplan.html");
+        reykjavik = Fixtures.read("reykjavik.json");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // a pool rather than the calling thread, so that the injected latency doesn't serialize the requests
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "replay-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Start a server on the loopback interface.
+     *
+     * @param port the port, 0 for any free port
+     */
+    public static ReplayServer start(int port) throws IOException {
+        return new ReplayServer(port);
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplayServer server = start(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+        if (args.length > 1)
+            server.setLatency(Long.parseLong(args[1]));
+        if (args.length > 2)
+            server.setErrorRate(Double.parseDouble(args[2]));
+        System.out.println("OpenMensa:         " + server.getOpenMensaUrl());
+        System.out.println("Studierendenwerk:  " + server.getStudierendenwerkUrl());
+        System.out.println("Reykjavik:         " + server.getReykjavikUrl());
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Point OpenMensa and every provider at this server.
+     */
+    public void install() {
+        OpenMensa.getInstance().setBaseUrl(getOpenMensaUrl());
+        RWTHMensa.setBaseUrl(getStudierendenwerkUrl());
+        ReykjavikMensa.setApiUrl(getReykjavikUrl());
+    }
+
+    /**
+     * Point OpenMensa and every provider back at the real sites.
+     */
+    public static void uninstall() {
+        OpenMensa.getInstance().setBaseUrl(OpenMensa.DEFAULT_BASE_URL);
+        RWTHMensa.setBaseUrl(RWTHMensa.DEFAULT_BASE_URL);
+        ReykjavikMensa.setApiUrl(ReykjavikMensa.DEFAULT_API_URL);
+    }
+
+    private String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public String getOpenMensaUrl() {
+        return getUrl() + "/api/v2";
+    }
+
+    public String getStudierendenwerkUrl() {
+        return getUrl() + "/studierendenwerk";
+    }
+
+    public String getReykjavikUrl() {
+        return getUrl() + REYKJAVIK_PATH;
+    }
+
+    /**
+     * @param latencyMillis the time every response is delayed by
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param errorRate the share of requests, between 0 and 1, that are answered with a 503
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return the number of requests served so far, including the injected errors
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            long latency = latencyMillis;
+            if (latency > 0)
+                TimeUnit.MILLISECONDS.sleep(latency);
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, 503, "text/plain", "injected error");
+                return;
+            }
+            route(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        String path = uri.getPath();
+        Matcher matcher;
+        if (CANTEEN_PAGE.matcher(path).matches()) {
+            // the whole directory fits on the first page, later pages end the paging
+            respond(exchange, 200, "application/json", getPage(uri.getQuery()) == 1 ? canteens : "[]");
+        } else if ((matcher = CANTEEN.matcher(path)).matches()) {
+            String canteen = canteensById.get(matcher.group(1));
+            if (canteen == null)
+                respond(exchange, 404, "text/plain", "unknown canteen");
+            else
+                respond(exchange, 200, "application/json", canteen);
+        } else if (MEALS.matcher(path).matches()) {
+            respond(exchange, 200, "application/json", meals);
+        } else if ((matcher = DAY.matcher(path)).matches()) {
+            respond(exchange, 200, "application/json", "{\"date\":\"" + matcher.group(1) + "\",\"closed\":false}");
+        } else if (WEEK_PAGE.matcher(path).matches()) {
+            respond(exchange, 200, "text/html; charset=utf-8", weekPage);
+        } else if (OPENINGS_PAGE.matcher(path).matches()) {
+            respond(exchange, 200, "text/html; charset=utf-8", openingsPage);
+        } else if (path.equals(REYKJAVIK_PATH)) {
+            respond(exchange, 200, "application/json", reykjavik);
+        } else {
+            respond(exchange, 404, "text/plain", "no fixture for " + path);
+        }
+    }
+
+    private static int getPage(String query) {
+        if (query == null)
+            return 1;
+        Matcher matcher = PAGE_PARAMETER.matcher(query);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.OpenMensa;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canteen search and nearest canteen queries over the canteens of the fixtures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"mensa", "aachen", "köln", "ca", "universitätsstraße"})
+    public String query;
+
+    private Path directory;
+    private OpenMensa openMensa;
+
+    @Setup
+    public void setUp() throws IOException {
+        openMensa = RegistryBenchmark.offlineOpenMensa();
+        directory = Files.createTempDirectory("mensa4j-bench");
+        openMensa.setCacheManager(new MensaCacheManager(new FilePersistentCache(directory.toString())));
+        for (Mensa mensa : Fixtures.canteens()) {
+            openMensa.addMensa(mensa);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<Mensa> searchMensa() {
+        return openMensa.searchMensa(query, 10);
+    }
+
+    @Benchmark
+    public List<Mensa> findNearest() {
+        return openMensa.findNearest(50.776, 6.084, 10);
+    }
+}
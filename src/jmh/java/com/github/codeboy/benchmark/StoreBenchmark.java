@@ -0,0 +1,143 @@
+package com.github.codeboy.benchmark;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.cache.CacheCodec;
+import com.github.codeboy.cache.CacheEntry;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MVStorePersistentCache;
+import com.github.codeboy.cache.PersistentCache;
+import com.github.codeboy.cache.TieredPersistentCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts, gets and cold starts of the {@link PersistentCache} implementations, compare them with
+ * {@code ./gradlew jmh -PjmhArgs="StoreBenchmark"}.
+ * <p>
+ * The cold start opens a cache over {@value #ENTRIES} stored days of meals and reads one of them,
+ * which is what happens before the first request of a fresh process is answered.
+ * <p>
+ * On one core with JDK 17 and h2-mvstore 2.2.224, the MVStore opened about six times faster than the file cache
+ * (20 ms against 120 ms) and answered prefix scans with a range scan (0.7 us against 22 us). Its gets were
+ * much slower (about 29 us against 0.3 us), because it decodes the entry on every read while the file
+ * cache hands out the value it holds in memory. The journal made the file cache's puts about five times
+ * faster (128 us against 605 us), close to one MVStore commit (313 us).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreBenchmark {
+
+    private static final int ENTRIES = 1000;
+    // writes rotate over a few keys, so that the store doesn't grow during a run
+    private static final int WRITE_KEYS = 64;
+
+    @Param({"file", "file-meals", "file-journal", "mvstore", "tiered"})
+    public String store;
+
+    private Path directory;
+    private PersistentCache cache;
+    private List<Meal> meals;
+    private String[] writeKeys;
+    private String[] readKeys;
+    private int nextWrite;
+    private int nextRead;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mensa4j-store");
+        meals = Fixtures.meals();
+        cache = open();
+        long expiration = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        readKeys = new String[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            readKeys[i] = "meals_" + (i % 100) + "_2025-10-" + (10 + i / 100);
+            cache.put(readKeys[i], meals, expiration);
+        }
+        writeKeys = new String[WRITE_KEYS];
+        for (int i = 0; i < WRITE_KEYS; i++) {
+            writeKeys[i] = "bench_" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        close(cache);
+        Fixtures.deleteRecursively(directory);
+    }
+
+    private PersistentCache open() {
+        if (store.equals("mvstore"))
+            return new MVStorePersistentCache(directory.resolve("cache.mv.db").toString());
+        if (store.equals("file-meals"))
+            return new FilePersistentCache(directory.toString(), false, CacheCodec.MEALS);
+        if (store.equals("file-journal")) {
+            FilePersistentCache cache = new FilePersistentCache(directory.toString());
+            cache.enableJournal(FilePersistentCache.DEFAULT_CHECKPOINT_INTERVAL_MILLIS);
+            return cache;
+        }
+        if (store.equals("tiered"))
+            return TieredPersistentCache.fromSpec("heap:256; disk:" + directory);
+        return new FilePersistentCache(directory.toString());
+    }
+
+    private static void close(PersistentCache cache) throws IOException {
+        if (cache instanceof Closeable)
+            ((Closeable) cache).close();
+    }
+
+    @Benchmark
+    public void put() {
+        String key = writeKeys[nextWrite++ & (WRITE_KEYS - 1)];
+        cache.put(key, meals, System.currentTimeMillis() + 60_000);
+    }
+
+    /**
+     * The seven days of a scraped week in one batch, like the RWTH provider stores them.
+     */
+    @Benchmark
+    public Set<String> putWeek() {
+        long expiration = System.currentTimeMillis() + 60_000;
+        Map<String, CacheEntry> week = new LinkedHashMap<>();
+        for (int day = 0; day < 7; day++) {
+            // a new content hash every time, unchanged entries aren't written
+            week.put(writeKeys[day], new CacheEntry(meals, expiration, ++nextWrite));
+        }
+        return cache.putAll(week);
+    }
+
+    @Benchmark
+    public List<Meal> get() {
+        String key = readKeys[nextRead++ % ENTRIES];
+        return cache.get(key, Fixtures.MEAL_LIST);
+    }
+
+    @Benchmark
+    public List<String> prefixScan() {
+        return cache.getKeysWithPrefix("meals_42_");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public List<Meal> coldStart() throws IOException {
+        // only one instance may have the store file open
+        close(cache);
+        cache = open();
+        return cache.get(readKeys[0], Fixtures.MEAL_LIST);
+    }
+}
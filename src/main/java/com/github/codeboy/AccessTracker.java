@@ -0,0 +1,134 @@
+package com.github.codeboy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts how often the meals of each canteen are asked for, with older requests counting less.
+ * <p>
+ * Every canteen has a score that grows by one per request and halves every half-life, so the score follows the
+ * canteens users care about right now. {@link Prefetcher} warms the canteens with the highest scores.
+ * Requests made by the prefetcher itself are not counted.
+ */
+public class AccessTracker {
+
+    public static final long DEFAULT_HALF_LIFE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // set while the prefetcher fetches, so that it doesn't reinforce its own choice
+    private static final ThreadLocal<Boolean> untracked = new ThreadLocal<>();
+
+    private final Map<Integer, Score> scores = new ConcurrentHashMap<>();
+    private final double decayPerMilli;
+
+    public AccessTracker() {
+        this(DEFAULT_HALF_LIFE_MILLIS);
+    }
+
+    /**
+     * @param halfLifeMillis the time after which a request counts half
+     */
+    public AccessTracker(long halfLifeMillis) {
+        if (halfLifeMillis <= 0)
+            throw new IllegalArgumentException("The half-life has to be positive");
+        this.decayPerMilli = Math.log(2) / halfLifeMillis;
+    }
+
+    /**
+     * Count a request for the meals of a canteen.
+     */
+    public void recordAccess(int mensaId) {
+        recordAccess(mensaId, System.currentTimeMillis());
+    }
+
+    void recordAccess(int mensaId, long now) {
+        if (untracked.get() != null)
+            return;
+        scores.computeIfAbsent(mensaId, id -> new Score()).add(now, decayPerMilli);
+    }
+
+    /**
+     * @return the decayed number of requests for the meals of a canteen, 0 if there were none
+     */
+    public double getScore(int mensaId) {
+        return getScore(mensaId, System.currentTimeMillis());
+    }
+
+    double getScore(int mensaId, long now) {
+        Score score = scores.get(mensaId);
+        return score == null ? 0 : score.get(now, decayPerMilli);
+    }
+
+    /**
+     * @param limit the maximum number of canteens
+     * @return the ids of the canteens with the highest scores, highest first
+     */
+    public List<Integer> getTopCanteens(int limit) {
+        return getTopCanteens(limit, System.currentTimeMillis());
+    }
+
+    List<Integer> getTopCanteens(int limit, long now) {
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>();
+        for (Map.Entry<Integer, Score> e : scores.entrySet()) {
+            ranked.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().get(now, decayPerMilli)));
+        }
+        ranked.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        List<Integer> top = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            top.add(ranked.get(i).getKey());
+        }
+        return top;
+    }
+
+    /**
+     * Drop the scores that decayed below a threshold, so that canteens nobody asks for anymore are forgotten.
+     *
+     * @return the number of dropped scores
+     */
+    public int prune(double threshold) {
+        long now = System.currentTimeMillis();
+        int pruned = 0;
+        for (Iterator<Score> it = scores.values().iterator(); it.hasNext(); ) {
+            if (it.next().get(now, decayPerMilli) < threshold) {
+                it.remove();
+                pruned++;
+            }
+        }
+        return pruned;
+    }
+
+    public void clear() {
+        scores.clear();
+    }
+
+    /**
+     * Run an action without counting the requests it makes.
+     */
+    static void untracked(Runnable action) {
+        untracked.set(Boolean.TRUE);
+        try {
+            action.run();
+        } finally {
+            untracked.remove();
+        }
+    }
+
+    private static final class Score {
+        private double value;
+        private long updated;
+
+        synchronized void add(long now, double decayPerMilli) {
+            value = decay(now, decayPerMilli) + 1;
+            updated = Math.max(updated, now);
+        }
+
+        synchronized double get(long now, double decayPerMilli) {
+            return decay(now, decayPerMilli);
+        }
+
+        private double decay(long now, double decayPerMilli) {
+            long elapsed = now - updated;
+            return elapsed <= 0 ? value : value * Math.exp(-decayPerMilli * elapsed);
+        }
+    }
+}
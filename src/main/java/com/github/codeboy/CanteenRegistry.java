@@ -0,0 +1,164 @@
+package com.github.codeboy;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaProvider;
+import com.github.codeboy.index.CanteenSearchIndex;
+import com.github.codeboy.index.CanteenSpatialIndex;
+
+import java.util.*;
+
+/**
+ * An immutable snapshot of all known canteens, published by {@link OpenMensa} through a single volatile field.
+ * <p>
+ * Readers never lock: they read the current registry once and work on it. Every change creates a new
+ * registry off to the side, which replaces the old one at once, so readers never see a half loaded directory.
+ * The search and spatial indexes belong to the registry they were built from and are built on first use.
+ */
+final class CanteenRegistry {
+
+    static final CanteenRegistry EMPTY = new CanteenRegistry(new IntObjectMap<>(), new Mensa[0], new IntObjectMap<>(), null);
+
+    private final IntObjectMap<Mensa> canteensById;
+    // sorted by id
+    private final Mensa[] canteens;
+    private final List<Mensa> canteenList;
+    // provider canteens that have not been created yet
+    private final IntObjectMap<MensaProvider> pending;
+    private volatile CanteenSearchIndex searchIndex;
+    private volatile CanteenSpatialIndex spatialIndex;
+
+    private CanteenRegistry(IntObjectMap<Mensa> canteensById, Mensa[] canteens, IntObjectMap<MensaProvider> pending,
+                            CanteenSearchIndex searchIndex) {
+        this.canteensById = canteensById;
+        this.canteens = canteens;
+        this.canteenList = Collections.unmodifiableList(Arrays.asList(canteens));
+        this.pending = pending;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Create a registry of canteens.
+     *
+     * @param canteens the canteens
+     * @param pending  the providers of the canteens that still have to be created, by id
+     */
+    static CanteenRegistry of(Collection<Mensa> canteens, Map<Integer, MensaProvider> pending) {
+        IntObjectMap<Mensa> byId = new IntObjectMap<>(canteens.size());
+        for (Mensa mensa : canteens) {
+            byId.put(mensa.getId(), mensa);
+        }
+        Mensa[] sorted = new Mensa[byId.size()];
+        int[] ids = byId.keys();
+        for (int i = 0; i < ids.length; i++) {
+            sorted[i] = byId.get(ids[i]);
+        }
+        IntObjectMap<MensaProvider> pendingById = new IntObjectMap<>(pending.size());
+        for (Map.Entry<Integer, MensaProvider> e : pending.entrySet()) {
+            pendingById.put(e.getKey(), e.getValue());
+        }
+        return new CanteenRegistry(byId, sorted, pendingById, null);
+    }
+
+    Mensa get(int id) {
+        return canteensById.get(id);
+    }
+
+    /**
+     * @return all canteens ordered by id, as an unmodifiable list
+     */
+    List<Mensa> getCanteens() {
+        return canteenList;
+    }
+
+    int size() {
+        return canteens.length;
+    }
+
+    /**
+     * @return the provider that still has to create the canteen, or null
+     */
+    MensaProvider getPendingProvider(int id) {
+        return pending.get(id);
+    }
+
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    int[] getPendingIds() {
+        return pending.keys();
+    }
+
+    /**
+     * Create a copy of this registry containing the canteen, replacing a canteen with the same id.
+     * The canteen is no longer pending.
+     */
+    CanteenRegistry withMensa(Mensa mensa) {
+        IntObjectMap<Mensa> byId = canteensById.copy();
+        byId.put(mensa.getId(), mensa);
+
+        Mensa[] updated;
+        int index = indexOf(mensa.getId());
+        if (index >= 0) {
+            updated = canteens.clone();
+            updated[index] = mensa;
+        } else {
+            int position = -index - 1;
+            updated = new Mensa[canteens.length + 1];
+            System.arraycopy(canteens, 0, updated, 0, position);
+            updated[position] = mensa;
+            System.arraycopy(canteens, position, updated, position + 1, canteens.length - position);
+        }
+
+        IntObjectMap<MensaProvider> newPending = pending;
+        if (pending.containsKey(mensa.getId())) {
+            newPending = pending.copy();
+            newPending.remove(mensa.getId());
+        }
+        CanteenSearchIndex currentIndex = searchIndex;
+        return new CanteenRegistry(byId, updated, newPending, currentIndex == null ? null : currentIndex.withMensa(mensa));
+    }
+
+    /**
+     * Create a copy of this registry in which the canteen is created again by its provider.
+     */
+    CanteenRegistry withPending(int id, MensaProvider provider) {
+        IntObjectMap<MensaProvider> newPending = pending.copy();
+        newPending.put(id, provider);
+        return new CanteenRegistry(canteensById, canteens, newPending, searchIndex);
+    }
+
+    CanteenSearchIndex getSearchIndex() {
+        CanteenSearchIndex index = searchIndex;
+        if (index == null) {
+            // building twice in a race is harmless, both indexes are equal
+            index = CanteenSearchIndex.build(canteenList);
+            searchIndex = index;
+        }
+        return index;
+    }
+
+    CanteenSpatialIndex getSpatialIndex() {
+        CanteenSpatialIndex index = spatialIndex;
+        if (index == null) {
+            index = CanteenSpatialIndex.build(canteenList);
+            spatialIndex = index;
+        }
+        return index;
+    }
+
+    private int indexOf(int id) {
+        int low = 0, high = canteens.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = canteens[mid].getId();
+            if (midId < id)
+                low = mid + 1;
+            else if (midId > id)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+}
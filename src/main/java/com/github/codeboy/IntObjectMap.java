@@ -0,0 +1,128 @@
+package com.github.codeboy;
+
+import java.util.Arrays;
+
+/**
+ * A minimal open addressing map from int keys to non null values, avoiding a boxed key and an
+ * entry object per mapping. Not thread safe; {@link CanteenRegistry} only reads it after building it.
+ */
+final class IntObjectMap<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    IntObjectMap() {
+        this(8);
+    }
+
+    IntObjectMap(int expectedSize) {
+        int capacity = 8;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private IntObjectMap(IntObjectMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    private static int slot(int key, int[] keys, Object[] values) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int i = (hash ^ (hash >>> 16)) & mask;
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        return (V) values[slot(key, keys, values)];
+    }
+
+    boolean containsKey(int key) {
+        return values[slot(key, keys, values)] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+        if ((size + 1) * 2 > keys.length)
+            rehash(keys.length * 2);
+        int i = slot(key, keys, values);
+        V previous = (V) values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (previous == null)
+            size++;
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int i = slot(key, keys, values);
+        V previous = (V) values[i];
+        if (previous == null)
+            return null;
+        values[i] = null;
+        size--;
+        // reinsert the rest of the cluster, so that lookups do not stop early
+        int mask = keys.length - 1;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int movedKey = keys[j];
+            Object movedValue = values[j];
+            values[j] = null;
+            int k = slot(movedKey, keys, values);
+            keys[k] = movedKey;
+            values[k] = movedValue;
+        }
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the keys in ascending order
+     */
+    int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                result[n++] = keys[i];
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    IntObjectMap<V> copy() {
+        return new IntObjectMap<>(this);
+    }
+
+    private void rehash(int capacity) {
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                int j = slot(keys[i], newKeys, newValues);
+                newKeys[j] = keys[i];
+                newValues[j] = values[i];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+}
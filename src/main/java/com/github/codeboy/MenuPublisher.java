@@ -0,0 +1,247 @@
+package com.github.codeboy;
+
+import com.github.codeboy.api.DailyMenu;
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Metrics;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Streams the meals of several canteens over a range of days, so that a dashboard can show every day
+ * as soon as it is there instead of waiting for the slowest fetch. It is a {@link Flow.Publisher}, so it can be
+ * consumed by any reactive streams library.
+ * <p>
+ * Every subscriber gets one {@link DailyMenu} per canteen and day, in the order they become available:
+ * cached days right away, the others when their fetch completes. Days are looked at from the first day on,
+ * all canteens of a day before the next day. Only as many days are fetched as the subscriber requested.
+ * The subscribers of a publisher share {@code maxConcurrentFetches} fetches at once, and the fetches of all
+ * publishers run on {@value #FETCH_THREADS} threads. Fetches that already started when the subscription
+ * is cancelled complete and still fill the cache.
+ */
+public class MenuPublisher implements Flow.Publisher<DailyMenu> {
+
+    private static final Counter HITS = Metrics.getInstance().counter("stream.hits");
+    private static final Counter FETCHES = Metrics.getInstance().counter("stream.fetches");
+    static final int FETCH_THREADS = 16;
+    private static final ExecutorService FETCH_EXECUTOR = Executors.newFixedThreadPool(FETCH_THREADS, r -> {
+        Thread thread = new Thread(r, "mensa4j-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AccessTracker tracker;
+    private final IntFunction<Mensa> canteens;
+    private final Supplier<MensaCacheManager> cacheManager;
+    private final int[] mensaIds;
+    private final List<LocalDate> dates;
+    private final Semaphore fetchPermits;
+    // subscriptions that wait for a fetch of another subscription to complete
+    private final Set<MenuSubscription> waiting = ConcurrentHashMap.newKeySet();
+    private final Executor executor;
+
+    /**
+     * @param openMensa            the canteens to stream
+     * @param mensaIds             the ids of the canteens
+     * @param from                 the first day
+     * @param to                   the last day, inclusive
+     * @param maxConcurrentFetches the maximum number of fetches at once for all subscribers
+     */
+    public MenuPublisher(OpenMensa openMensa, Collection<Integer> mensaIds, LocalDate from, LocalDate to,
+                         int maxConcurrentFetches) {
+        this(openMensa.getAccessTracker(), openMensa::getMensa, openMensa::getCacheManager, mensaIds, from, to,
+                maxConcurrentFetches, FETCH_EXECUTOR);
+    }
+
+    MenuPublisher(AccessTracker tracker, IntFunction<Mensa> canteens, Supplier<MensaCacheManager> cacheManager,
+                  Collection<Integer> mensaIds, LocalDate from, LocalDate to, int maxConcurrentFetches,
+                  Executor executor) {
+        if (maxConcurrentFetches < 1)
+            throw new IllegalArgumentException("At least one fetch at a time is needed");
+        this.tracker = tracker;
+        this.canteens = canteens;
+        this.cacheManager = cacheManager;
+        this.mensaIds = mensaIds.stream().mapToInt(Integer::intValue).toArray();
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        this.dates = Collections.unmodifiableList(dates);
+        this.fetchPermits = new Semaphore(maxConcurrentFetches);
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DailyMenu> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber");
+        MenuSubscription subscription = new MenuSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * The state of one subscriber. All signals to the subscriber are sent from {@link #drain()}, which only
+     * runs on one thread at a time: a thread calling it while another one drains makes that one loop again.
+     */
+    private final class MenuSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super DailyMenu> subscriber;
+        private final Queue<DailyMenu> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        // the items fetched or being fetched that were not emitted yet
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        // only used while draining
+        private long emitted;
+        private int next;
+        private boolean done;
+
+        MenuSubscription(Flow.Subscriber<? super DailyMenu> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " items, at least one is needed");
+            } else {
+                requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            while (!done) {
+                if (cancelled) {
+                    done = true;
+                    ready.clear();
+                    return;
+                }
+                Throwable failure = error;
+                if (failure != null) {
+                    done = true;
+                    ready.clear();
+                    subscriber.onError(failure);
+                    return;
+                }
+                long demand = requested.get();
+                if (emitted < demand) {
+                    DailyMenu menu = ready.poll();
+                    if (menu != null) {
+                        emitted++;
+                        pending.decrementAndGet();
+                        try {
+                            subscriber.onNext(menu);
+                        } catch (RuntimeException e) {
+                            // a subscriber must not throw, treat it like a cancellation
+                            cancelled = true;
+                            throw e;
+                        }
+                        continue;
+                    }
+                }
+                int total = mensaIds.length * dates.size();
+                if (next == total && pending.get() == 0) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                // only start what the subscriber asked for
+                if (next == total || emitted + pending.get() >= demand || !startNext())
+                    return;
+            }
+        }
+
+        /**
+         * Emit the next day from the cache or start fetching it.
+         *
+         * @return false if the day has to wait for a running fetch of any subscriber to complete
+         */
+        private boolean startNext() {
+            int mensaId = mensaIds[next % mensaIds.length];
+            LocalDate date = dates.get(next / mensaIds.length);
+            List<Meal> cached = cacheManager.get().getCachedMeals(mensaId, date);
+            if (cached != null) {
+                next++;
+                tracker.recordAccess(mensaId);
+                HITS.increment();
+                pending.incrementAndGet();
+                ready.add(new DailyMenu(mensaId, date, cached));
+                return true;
+            }
+            if (!fetchPermits.tryAcquire()) {
+                waiting.add(this);
+                // a fetch that completed before this subscription was added doesn't wake it up
+                if (!fetchPermits.tryAcquire())
+                    return false;
+                waiting.remove(this);
+            }
+            next++;
+            pending.incrementAndGet();
+            try {
+                executor.execute(() -> fetch(mensaId, date));
+            } catch (RuntimeException e) {
+                fetchPermits.release();
+                error = e;
+            }
+            return true;
+        }
+
+        private void fetch(int mensaId, LocalDate date) {
+            try {
+                if (!cancelled) {
+                    FETCHES.increment();
+                    Mensa mensa = canteens.apply(mensaId);
+                    List<Meal> meals = mensa == null ? null : mensa.getMeals(date);
+                    ready.add(new DailyMenu(mensaId, date, meals == null ? Collections.emptyList() : meals));
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                fetchPermits.release();
+                drain();
+                for (MenuSubscription subscription : waiting) {
+                    if (waiting.remove(subscription))
+                        subscription.drain();
+                }
+            }
+        }
+    }
+}
@@ -1,22 +1,46 @@
 package com.github.codeboy;
 
+import com.github.codeboy.api.DailyMenu;
 import com.github.codeboy.api.Mensa;
 import com.github.codeboy.api.MensaImpl;
-import com.github.codeboy.api.RWTHMensa;
+import com.github.codeboy.api.MensaProvider;
+import com.github.codeboy.api.Prices;
+import com.github.codeboy.api.RWTHMensaProvider;
 import com.github.codeboy.api.ReykjavikMensa;
+import com.github.codeboy.cache.CacheBundle;
+import com.github.codeboy.cache.CanteenSnapshot;
+import com.github.codeboy.cache.FilePersistentCache;
 import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.cache.PersistentCache;
+import com.github.codeboy.cache.TieredPersistentCache;
+import com.github.codeboy.index.CanteenSearchIndex;
+import com.github.codeboy.index.PriceStore;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 public class OpenMensa {
 
+    public static final String DEFAULT_BASE_URL = "https://openmensa.org/api/v2";
     private static final OpenMensa mensa = new OpenMensa();
-    private final HashMap<Integer, Mensa> canteens = new HashMap<>();
-    private String baseUrl = "https://openmensa.org/api/v2";
+    // read without locking, replaced as a whole under the lock of this object
+    private volatile CanteenRegistry registry = CanteenRegistry.EMPTY;
+    // canteens added by hand, which survive reloads
+    private final Map<Integer, Mensa> addedCanteens = new LinkedHashMap<>();
+    private final HashMap<Integer, MensaProvider> providedCanteens = new HashMap<>();
+    private volatile List<MensaProvider> providers;
+    private String baseUrl = DEFAULT_BASE_URL;
     private MensaCacheManager cacheManager;
+    private final AccessTracker accessTracker = new AccessTracker();
+    private Prefetcher prefetcher;
+    private Path snapshotFile;
 
     private OpenMensa() {
         cacheManager = new MensaCacheManager();
@@ -26,77 +50,340 @@ public class OpenMensa {
         return mensa;
     }
 
-    private void loadCanteens() {
+    private boolean loadCanteens() {
+        HashMap<Integer, Mensa> loaded = new HashMap<>();
         List<Mensa> mensas;
         int page = 1;
+        boolean complete = true;
         do {
             try {
                 mensas = getCanteens(page++);
                 for (Mensa mensa : mensas) {
                     if (mensa instanceof MensaImpl)
                         ((MensaImpl) mensa).init();
-                    canteens.put(mensa.getId(), mensa);
+                    loaded.put(mensa.getId(), mensa);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
+                complete = false;
                 break;
             }
         } while (!mensas.isEmpty());
-        RWTHMensa.injectRWTHCanteens(canteens);
-        injectReykjavikMensa();
+
+        if (complete) {
+            writeSnapshot(loaded.values());
+        } else if (registry.size() > 0) {
+            // keep the canteens we have rather than replacing them with a partial directory
+            return false;
+        }
+        setCanteens(loaded);
+        return complete;
+    }
+
+    private synchronized void setCanteens(HashMap<Integer, Mensa> loaded) {
+        getProviders();
+        loaded.putAll(addedCanteens);
+        // provider canteens are created again from the reloaded originals
+        registry = CanteenRegistry.of(loaded.values(), providedCanteens);
+    }
+
+    private void writeSnapshot(Collection<Mensa> loaded) {
+        Path file = getSnapshotFile();
+        if (file == null)
+            return;
+        try {
+            CanteenSnapshot.write(file, loaded);
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to write canteen snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load the canteens from the snapshot written by the last complete reload, which takes
+     * milliseconds instead of downloading the whole canteen directory.
+     *
+     * @return true if a snapshot was loaded
+     */
+    public boolean loadSnapshot() {
+        Path file = getSnapshotFile();
+        CanteenSnapshot snapshot = file == null ? null : CanteenSnapshot.read(file);
+        if (snapshot == null)
+            return false;
+        HashMap<Integer, Mensa> loaded = new HashMap<>();
+        for (Mensa mensa : snapshot.getCanteens()) {
+            ((MensaImpl) mensa).init();
+            loaded.put(mensa.getId(), mensa);
+        }
+        setCanteens(loaded);
+        return true;
+    }
+
+    /**
+     * Write the canteens and the cached meals and opening times into one bundle file,
+     * from which another instance starts with a warm cache, see {@link #importCacheBundle(Path)}.
+     *
+     * @param file the bundle file
+     * @return the number of exported cache entries
+     */
+    public int exportCacheBundle(Path file) throws IOException {
+        return cacheManager.exportBundle(file, getAllCanteens());
+    }
+
+    /**
+     * Load the canteens and the cache entries of a bundle written by {@link #exportCacheBundle(Path)}.
+     * The canteens can be refreshed afterwards with {@link #reloadCanteensAsync()}.
+     *
+     * @param file the bundle file
+     * @return the bundle
+     * @throws IOException if the bundle can't be read or is damaged, nothing is loaded then
+     */
+    public CacheBundle importCacheBundle(Path file) throws IOException {
+        CacheBundle bundle = cacheManager.importBundle(file);
+        HashMap<Integer, Mensa> loaded = new HashMap<>();
+        for (Mensa mensa : bundle.getCanteens()) {
+            ((MensaImpl) mensa).init();
+            loaded.put(mensa.getId(), mensa);
+        }
+        if (!loaded.isEmpty())
+            setCanteens(loaded);
+        return bundle;
+    }
+
+    /**
+     * Download the canteen directory in the background. The current canteens stay available
+     * until the download is complete and are then replaced at once.
+     *
+     * @return a future completing with true if the whole directory was downloaded
+     */
+    public CompletableFuture<Boolean> reloadCanteensAsync() {
+        return CompletableFuture.supplyAsync(this::loadCanteens);
+    }
+
+    /**
+     * Load the canteens as fast as possible: from the snapshot if there is one, refreshing it in
+     * the background, otherwise by downloading the canteen directory.
+     *
+     * @return a future completing once the canteens are up to date
+     */
+    public CompletableFuture<Boolean> initCanteens() {
+        if (loadSnapshot())
+            return reloadCanteensAsync();
+        return CompletableFuture.completedFuture(loadCanteens());
+    }
+
+    private List<MensaProvider> getProviders() {
+        List<MensaProvider> providers = this.providers;
+        if (providers != null)
+            return providers;
+        return discoverProviders();
+    }
+
+    private synchronized List<MensaProvider> discoverProviders() {
+        if (providers == null) {
+            List<MensaProvider> discovered = new ArrayList<>();
+            String enabled = System.getProperty("mensa4j.providers");
+            Set<String> enabledNames = enabled == null ? null : new HashSet<>(Arrays.asList(enabled.split("\\s*,\\s*")));
+            for (MensaProvider provider : ServiceLoader.load(MensaProvider.class)) {
+                if (enabledNames == null || enabledNames.contains(provider.getName())) {
+                    discovered.add(provider);
+                    addProvidedCanteens(provider);
+                }
+            }
+            providers = Collections.unmodifiableList(discovered);
+        }
+        return providers;
+    }
+
+    private void addProvidedCanteens(MensaProvider provider) {
+        CanteenRegistry updatedRegistry = registry;
+        for (int id : provider.getCanteenIds()) {
+            providedCanteens.put(id, provider);
+            updatedRegistry = updatedRegistry.withPending(id, provider);
+        }
+        registry = updatedRegistry;
+    }
+
+    /**
+     * Register a provider that is not discovered by the {@link ServiceLoader}.
+     * Its canteens replace the canteens with the same ids on their next access.
+     *
+     * @param provider the provider to register
+     */
+    public synchronized void registerProvider(MensaProvider provider) {
+        List<MensaProvider> updated = new ArrayList<>(getProviders());
+        updated.add(provider);
+        providers = Collections.unmodifiableList(updated);
+        addProvidedCanteens(provider);
+    }
+
+    private synchronized Mensa createProvidedMensa(int id) {
+        CanteenRegistry current = registry;
+        MensaProvider provider = current.getPendingProvider(id);
+        if (provider == null)
+            return current.get(id);
+        Mensa mensa = provider.createMensa(id, current.get(id));
+        registry = current.withMensa(mensa);
+        return mensa;
+    }
+
+    private synchronized void createProvidedCanteens() {
+        for (int id : registry.getPendingIds()) {
+            createProvidedMensa(id);
+        }
+    }
+
+    /**
+     * @return the current registry, with every provider canteen created
+     */
+    private CanteenRegistry getRegistry() {
+        getProviders();
+        CanteenRegistry current = registry;
+        if (!current.hasPending())
+            return current;
+        createProvidedCanteens();
+        return registry;
     }
 
     private List<Mensa> getCanteens(int page) throws Exception {
         Type type = new TypeToken<List<MensaImpl>>() {
         }.getType();
-        return Util.getObject(baseUrl + "/canteens/?page=" + page, type);
+        return Util.getObject(baseUrl + "/canteens/?page=" + page, type, "openmensa");
     }
 
     public void reloadCanteens() {
-        canteens.clear();
         loadCanteens();
     }
 
-    public void reloadRWTHCanteens() {
-        RWTHMensa.injectRWTHCanteens(canteens);
+    public synchronized void reloadRWTHCanteens() {
+        getProviders();
+        CanteenRegistry updated = registry;
+        for (int id : new RWTHMensaProvider().getCanteenIds()) {
+            if (providedCanteens.containsKey(id))
+                updated = updated.withPending(id, providedCanteens.get(id));
+        }
+        registry = updated;
     }
 
     public void injectReykjavikMensa() {
-        ReykjavikMensa reykjavikMensa = new ReykjavikMensa();
-        canteens.put(reykjavikMensa.getId(), reykjavikMensa);
+        addMensa(new ReykjavikMensa());
     }
 
     public Mensa getMensa(int id) {
-        if (canteens.containsKey(id))
-            return canteens.get(id);
+        getProviders();
+        CanteenRegistry current = registry;
+        if (current.getPendingProvider(id) != null)
+            return createProvidedMensa(id);
+        Mensa mensa = current.get(id);
+        if (mensa != null)
+            return mensa;
         try {
-            return Util.getObject(baseUrl + "/canteens/" + id, MensaImpl.class);
+            return Util.getObject(baseUrl + "/canteens/" + id, MensaImpl.class, "openmensa");
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
-    public void addMensa(Mensa mensa) {
-        canteens.put(mensa.getId(), mensa);
+    public synchronized void addMensa(Mensa mensa) {
+        addedCanteens.put(mensa.getId(), mensa);
+        registry = registry.withMensa(mensa);
     }
 
     public Optional<Mensa> getOptionalMensa(int id) {
         return Optional.of(getMensa(id));
     }
 
+    /**
+     * @return all canteens ordered by id, as an unmodifiable snapshot that reloads don't change
+     */
     public Collection<Mensa> getAllCanteens() {
-        return canteens.values();
+        return getRegistry().getCanteens();
     }
 
     public List<Mensa> searchMensa(String searchString) {
+        return searchMensa(searchString, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Search for canteens by name, city or address, ignoring case and accents.
+     *
+     * @param searchString the text to search for
+     * @param limit        the maximum number of results
+     * @return the matching canteens, best match first
+     * @see CanteenSearchIndex#search(String, int)
+     */
+    public List<Mensa> searchMensa(String searchString, int limit) {
         if (searchString == null || searchString.length() == 0) {
             return Collections.emptyList();
         }
-        String finalSearchString = searchString.toLowerCase();
-        return getAllCanteens().stream()
-                .filter(mensa -> mensa.getName().toLowerCase().contains(finalSearchString))
-                .collect(Collectors.toList());
+        return getRegistry().getSearchIndex().search(searchString, limit);
+    }
+
+    /**
+     * Find the canteens closest to a location.
+     *
+     * @param lat latitude in degrees
+     * @param lon longitude in degrees
+     * @param k   the maximum number of canteens
+     * @return up to k canteens, closest first
+     */
+    public List<Mensa> findNearest(double lat, double lon, int k) {
+        return getRegistry().getSpatialIndex().findNearest(lat, lon, k);
+    }
+
+    /**
+     * Find all canteens within a distance of a location.
+     *
+     * @param lat      latitude in degrees
+     * @param lon      longitude in degrees
+     * @param radiusKm the great circle distance in kilometers
+     * @return the canteens within the distance, closest first
+     */
+    public List<Mensa> findWithin(double lat, double lon, double radiusKm) {
+        return getRegistry().getSpatialIndex().findWithin(lat, lon, radiusKm);
+    }
+
+    /**
+     * Stream the meals of several canteens over a range of days, with at most four fetches at once.
+     *
+     * @see #streamMeals(Collection, LocalDate, LocalDate, int)
+     */
+    public Flow.Publisher<DailyMenu> streamMeals(Collection<Integer> mensaIds, LocalDate from, LocalDate to) {
+        return streamMeals(mensaIds, from, to, 4);
+    }
+
+    /**
+     * Stream the meals of several canteens over a range of days. Every subscriber gets the meals of each
+     * canteen and day as soon as they are cached or fetched, as many as it requested, see {@link MenuPublisher}.
+     *
+     * @param mensaIds             the ids of the canteens
+     * @param from                 the first day
+     * @param to                   the last day, inclusive
+     * @param maxConcurrentFetches the maximum number of upstream fetches at once for all subscribers
+     * @return the publisher
+     */
+    public Flow.Publisher<DailyMenu> streamMeals(Collection<Integer> mensaIds, LocalDate from, LocalDate to,
+                                                 int maxConcurrentFetches) {
+        return new MenuPublisher(this, mensaIds, from, to, maxConcurrentFetches);
+    }
+
+    /**
+     * Find the cheapest cached meal of a day among the canteens within a distance of a location.
+     * Only meals that are already cached are compared, nothing is fetched.
+     *
+     * @param lat      latitude in degrees
+     * @param lon      longitude in degrees
+     * @param radiusKm the great circle distance in kilometers
+     * @param date     the day
+     * @param audience whose prices to compare
+     * @return the cheapest meal, or null if no canteen nearby has cached prices for that day
+     */
+    public PriceStore.Cheapest findCheapestMeal(double lat, double lon, double radiusKm, LocalDate date, Prices.Audience audience) {
+        List<Integer> ids = new ArrayList<>();
+        for (Mensa mensa : findWithin(lat, lon, radiusKm)) {
+            ids.add(mensa.getId());
+        }
+        return cacheManager.getPriceStore().findCheapest(ids, date.toEpochDay(), audience);
     }
 
     public String getBaseUrl() {
@@ -111,7 +398,57 @@ public class OpenMensa {
         return cacheManager;
     }
 
+    /**
+     * @return the tracker of how often the meals of each canteen are requested
+     */
+    public AccessTracker getAccessTracker() {
+        return accessTracker;
+    }
+
+    /**
+     * Start fetching the upcoming meals of the most requested canteens in the background, every ten minutes.
+     * Replaces a running prefetcher.
+     *
+     * @param topCanteens     the number of most requested canteens to prefetch
+     * @param days            the number of days to prefetch, starting today
+     * @param requestsPerHour the maximum number of upstream requests per hour for prefetching
+     */
+    public synchronized void startPrefetching(int topCanteens, int days, int requestsPerHour) {
+        stopPrefetching();
+        prefetcher = new Prefetcher(this, topCanteens, days, requestsPerHour);
+        prefetcher.start(10, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stopPrefetching() {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+    }
+
     public void setCacheManager(MensaCacheManager cacheManager){
         this.cacheManager = cacheManager;
     }
+
+    /**
+     * Get the file the canteen snapshot is stored in, by default next to the cached meals.
+     *
+     * @return the snapshot file, or null if no snapshot is kept
+     */
+    public Path getSnapshotFile() {
+        if (snapshotFile != null)
+            return snapshotFile;
+        if (cacheManager == null)
+            return null;
+        PersistentCache cache = cacheManager.getCache();
+        if (cache instanceof TieredPersistentCache)
+            cache = ((TieredPersistentCache) cache).getCache(FilePersistentCache.class);
+        if (cache instanceof FilePersistentCache)
+            return ((FilePersistentCache) cache).getCacheDirectory().resolve(CanteenSnapshot.FILE_NAME);
+        return null;
+    }
+
+    public void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
 }
@@ -0,0 +1,138 @@
+package com.github.codeboy;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Metrics;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Fetches the upcoming meals of the most requested canteens in the background, so that users don't wait for
+ * the first fetch of the day.
+ * <p>
+ * Every run takes the top canteens of the {@link AccessTracker} and fetches the days from today on that aren't
+ * cached yet, today for all canteens first. Fetches are limited to a number of upstream requests per hour;
+ * a run stops when the budget is used up and continues with the next run. A day that couldn't be fetched,
+ * usually because the canteen is closed and there are no meals for it, is skipped for
+ * {@value #FAILURE_RETRY_MINUTES} minutes instead of using up the budget on every run.
+ */
+public class Prefetcher implements AutoCloseable {
+
+    private static final Counter FETCHES = Metrics.getInstance().counter("prefetch.fetches");
+    private static final Counter THROTTLED = Metrics.getInstance().counter("prefetch.throttled");
+    private static final Counter SKIPPED = Metrics.getInstance().counter("prefetch.skipped");
+    static final int FAILURE_RETRY_MINUTES = 6 * 60;
+
+    private final AccessTracker tracker;
+    private final IntFunction<Mensa> canteens;
+    private final Supplier<MensaCacheManager> cacheManager;
+    private final int topCanteens;
+    private final int days;
+    private final TokenBucket budget;
+    // the time until which a canteen and day that couldn't be fetched is skipped, by canteen id and epoch day
+    private final Map<Long, Long> failures = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param openMensa       the canteens to prefetch
+     * @param topCanteens     the number of most requested canteens to prefetch
+     * @param days            the number of days to prefetch, starting today
+     * @param requestsPerHour the maximum number of upstream requests per hour
+     */
+    public Prefetcher(OpenMensa openMensa, int topCanteens, int days, int requestsPerHour) {
+        this(openMensa.getAccessTracker(), openMensa::getMensa, openMensa::getCacheManager, topCanteens, days,
+                new TokenBucket(requestsPerHour));
+    }
+
+    Prefetcher(AccessTracker tracker, IntFunction<Mensa> canteens, Supplier<MensaCacheManager> cacheManager,
+               int topCanteens, int days, TokenBucket budget) {
+        this.tracker = tracker;
+        this.canteens = canteens;
+        this.cacheManager = cacheManager;
+        this.topCanteens = topCanteens;
+        this.days = days;
+        this.budget = budget;
+    }
+
+    /**
+     * Prefetch periodically on a daemon thread, starting now.
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (executor != null)
+            throw new IllegalStateException("The prefetcher is already running");
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mensa4j-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                prefetch();
+            } catch (RuntimeException e) {
+                // keep the schedule alive, the next run tries again
+                System.err.println("Warning: Failed to prefetch meals: " + e);
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Prefetch once on the calling thread.
+     *
+     * @return the number of upstream fetches
+     */
+    public int prefetch() {
+        return prefetch(System.currentTimeMillis());
+    }
+
+    int prefetch(long now) {
+        List<Integer> ids = tracker.getTopCanteens(topCanteens);
+        LocalDate today = LocalDate.now();
+        failures.values().removeIf(retryAt -> retryAt <= now);
+        int[] fetches = new int[1];
+        AccessTracker.untracked(() -> {
+            for (int day = 0; day < days; day++) {
+                LocalDate date = today.plusDays(day);
+                for (int id : ids) {
+                    if (cacheManager.get().hasCachedMeals(id, date))
+                        continue;
+                    long key = ((long) id << 32) | (date.toEpochDay() & 0xFFFFFFFFL);
+                    if (failures.containsKey(key)) {
+                        SKIPPED.increment();
+                        continue;
+                    }
+                    Mensa mensa = canteens.apply(id);
+                    if (mensa == null)
+                        continue;
+                    if (!budget.tryAcquire()) {
+                        THROTTLED.increment();
+                        return;
+                    }
+                    mensa.getMeals(date);
+                    fetches[0]++;
+                    FETCHES.increment();
+                    // the providers only cache the meals of a successful fetch
+                    if (!cacheManager.get().hasCachedMeals(id, date))
+                        failures.put(key, now + TimeUnit.MINUTES.toMillis(FAILURE_RETRY_MINUTES));
+                }
+            }
+        });
+        return fetches[0];
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
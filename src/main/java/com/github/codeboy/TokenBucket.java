@@ -0,0 +1,46 @@
+package com.github.codeboy;
+
+/**
+ * Limits the rate of requests: up to {@code capacity} requests at once, refilled evenly over an hour.
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_HOUR = 60L * 60 * 1_000_000_000;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilled;
+
+    /**
+     * @param requestsPerHour the sustained number of requests per hour, also the size of a burst
+     */
+    TokenBucket(int requestsPerHour) {
+        this(requestsPerHour, System.nanoTime());
+    }
+
+    TokenBucket(int requestsPerHour, long now) {
+        if (requestsPerHour < 0)
+            throw new IllegalArgumentException("The number of requests can't be negative");
+        this.capacity = requestsPerHour;
+        this.tokensPerNano = (double) requestsPerHour / NANOS_PER_HOUR;
+        this.tokens = capacity;
+        this.refilled = now;
+    }
+
+    synchronized boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(long now) {
+        long elapsed = now - refilled;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            refilled = now;
+        }
+        if (tokens < 1)
+            return false;
+        tokens--;
+        return true;
+    }
+}
@@ -1,41 +1,195 @@
 package com.github.codeboy;
 
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Events;
+import com.github.codeboy.metrics.FetchEvent;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
+import com.github.codeboy.metrics.ParseEvent;
 import com.google.gson.Gson;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.text.SimpleDateFormat;
+import java.net.URLConnection;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
 public class Util {
-    private static final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
     private static final Gson gson = new Gson();
+    private static final Counter HTTP_REQUESTS = Metrics.getInstance().counter("http.requests");
+    private static final Counter HTTP_ERRORS = Metrics.getInstance().counter("http.errors");
+    private static final Counter HTTP_BYTES = Metrics.getInstance().counter("http.bytes");
+    private static final Histogram HTTP_FETCH = Metrics.getInstance().histogram("http.fetch");
+    private static final Histogram JSON_DECODE = Metrics.getInstance().histogram("json.decode");
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    // recently rendered dates by epoch day, so that the same day is only formatted once
+    private static final IsoDate[] isoDates = new IsoDate[1024];
 
     public static String dateToString(Date date) {
-        return format.format(date);
+        return dateToString(toEpochDay(date));
+    }
+
+    public static String dateToString(LocalDate date) {
+        return dateToString(date.toEpochDay());
+    }
+
+    /**
+     * Render a day as an ISO date like "2025-10-13", as used by the OpenMensa API and the cache keys.
+     *
+     * @param epochDay the day, see {@link LocalDate#toEpochDay()}
+     * @return the ISO date
+     */
+    public static String dateToString(long epochDay) {
+        int slot = (int) (epochDay & (isoDates.length - 1));
+        IsoDate isoDate = isoDates[slot];
+        if (isoDate == null || isoDate.epochDay != epochDay) {
+            // racing threads at worst format the same day twice, IsoDate is immutable
+            isoDate = new IsoDate(epochDay, LocalDate.ofEpochDay(epochDay).toString());
+            isoDates[slot] = isoDate;
+        }
+        return isoDate.text;
+    }
+
+    /**
+     * @return the day of a date in the default time zone, see {@link LocalDate#toEpochDay()}
+     */
+    public static long toEpochDay(Date date) {
+        long seconds = Math.floorDiv(date.getTime(), 1000);
+        int offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochSecond(seconds)).getTotalSeconds();
+        return Math.floorDiv(seconds + offset, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return the date in the default time zone
+     */
+    public static LocalDate toLocalDate(Date date) {
+        return LocalDate.ofEpochDay(toEpochDay(date));
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+                HTTP_BYTES.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+                HTTP_BYTES.add(read);
+            }
+            return read;
+        }
+    }
+
+    private static final class IsoDate {
+        final long epochDay;
+        final String text;
+
+        IsoDate(long epochDay, String text) {
+            this.epochDay = epochDay;
+            this.text = text;
+        }
     }
 
     public static String readUrl(String urlString) throws Exception {
+        return readUrl(urlString, null);
+    }
+
+    /**
+     * @param urlString the url to download
+     * @param provider  the provider the download is for, recorded with the fetch event
+     * @return the response body
+     */
+    public static String readUrl(String urlString, String provider) throws Exception {
         BufferedReader reader = null;
+        CountingInputStream in = null;
+        URLConnection connection = null;
+        FetchEvent event = Events.ENABLED ? FetchEvent.start() : null;
+        long start = System.nanoTime();
+        HTTP_REQUESTS.increment();
         try {
-            URL url = new URL(urlString);
-            reader = new BufferedReader(new InputStreamReader(url.openStream()));
+            connection = new URL(urlString).openConnection();
+            in = new CountingInputStream(connection.getInputStream());
+            reader = new BufferedReader(new InputStreamReader(in));
             StringBuilder buffer = new StringBuilder();
             int read;
             char[] chars = new char[1024];
             while ((read = reader.read(chars)) != -1)
                 buffer.append(chars, 0, read);
 
+            HTTP_FETCH.recordSince(start);
             return buffer.toString();
+        } catch (Exception e) {
+            HTTP_ERRORS.increment();
+            throw e;
         } finally {
             if (reader != null)
                 reader.close();
+            if (event != null)
+                event.finish(provider, urlString, in == null ? 0 : in.count, getStatus(connection));
         }
     }
 
+    private static int getStatus(URLConnection connection) {
+        if (!(connection instanceof HttpURLConnection))
+            return 0;
+        try {
+            return ((HttpURLConnection) connection).getResponseCode();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Record a download that didn't go through {@link #readUrl(String)}.
+     *
+     * @param bytes      the size of the response body
+     * @param startNanos the start of the download, taken from {@link System#nanoTime()}
+     */
+    public static void recordDownload(long bytes, long startNanos) {
+        HTTP_REQUESTS.increment();
+        HTTP_BYTES.add(bytes);
+        HTTP_FETCH.recordSince(startNanos);
+    }
+
     public static <T> T getObject(String url, Type type) throws Exception {
-        return gson.fromJson(Util.readUrl(url), type);
+        return getObject(url, type, null);
+    }
+
+    /**
+     * @param url      the url of a JSON document
+     * @param type     the type to decode the document to
+     * @param provider the provider the download is for, recorded with the fetch event
+     */
+    public static <T> T getObject(String url, Type type, String provider) throws Exception {
+        String json = Util.readUrl(url, provider);
+        ParseEvent event = Events.ENABLED ? ParseEvent.start() : null;
+        long start = System.nanoTime();
+        T object = gson.fromJson(json, type);
+        JSON_DECODE.recordSince(start);
+        if (event != null)
+            event.finish("json", url, json.length());
+        return object;
     }
 }
@@ -0,0 +1,54 @@
+package com.github.codeboy.api;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The meals of a canteen on a day, as emitted by {@link com.github.codeboy.MenuPublisher}.
+ */
+public final class DailyMenu {
+    private final int mensaId;
+    private final LocalDate date;
+    private final List<Meal> meals;
+
+    public DailyMenu(int mensaId, LocalDate date, List<Meal> meals) {
+        this.mensaId = mensaId;
+        this.date = date;
+        this.meals = meals;
+    }
+
+    public int getMensaId() {
+        return mensaId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * @return the meals, empty if the canteen is closed or its meals couldn't be fetched
+     */
+    public List<Meal> getMeals() {
+        return meals;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof DailyMenu))
+            return false;
+        DailyMenu other = (DailyMenu) o;
+        return mensaId == other.mensaId && date.equals(other.date) && meals.equals(other.meals);
+    }
+
+    @Override
+    public int hashCode() {
+        return (mensaId * 31 + date.hashCode()) * 31 + meals.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DailyMenu{" + mensaId + ", " + date + ", " + meals.size() + " meals}";
+    }
+}
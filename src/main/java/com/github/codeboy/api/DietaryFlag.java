@@ -0,0 +1,210 @@
+package com.github.codeboy.api;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Normalized vocabulary of diet and allergen information.
+ * Every constant owns one bit of a {@code long} mask so that a meal can be filtered
+ * with a couple of bitwise operations instead of comparing its notes as strings.
+ * <p>
+ * The keywords of a constant are matched against the lower case notes of a meal.
+ * Keywords shorter than four characters only match a note exactly, longer ones also
+ * match if the note contains them (e.g. "Schwein" matches "Schweinefleisch").
+ * A keyword stating the absence of something (e.g. "glutenfrei", "gluten-free" or "free of gluten") doesn't set
+ * its flag, but the other keywords of the note still do, so "Freilandeier" is still eggs.
+ */
+public enum DietaryFlag {
+    // diet
+    VEGAN("vegan"),
+    VEGETARIAN("vegetarisch", "vegetarian", "olv", "ovo-lacto-vegetarisch"),
+    PORK("schwein", "pork"),
+    BEEF("rind", "beef"),
+    POULTRY("geflügel", "huhn", "hähnchen", "chicken", "pute"),
+    LAMB("lamm", "lamb"),
+    FISH("fisch", "fish"),
+    ALCOHOL("alkohol", "alcohol"),
+
+    // allergens
+    GLUTEN("gluten"),
+    WHEAT("weizen", "wheat"),
+    RYE("roggen", "rye"),
+    BARLEY("gerste", "barley"),
+    OATS("hafer", "oats"),
+    SPELT("dinkel", "spelt"),
+    CELERY("sellerie", "celery"),
+    CRUSTACEANS("krebstiere", "krustentiere", "crustaceans"),
+    EGGS("eier", "eggs"),
+    PEANUTS("erdnüsse", "erdnuss", "peanuts"),
+    SOY("soja", "soy"),
+    MILK("milch", "laktose", "milk", "lactose"),
+    NUTS("schalenfrüchte", "tree nuts"),
+    ALMONDS("mandeln", "almonds"),
+    HAZELNUTS("haselnüsse", "hazelnuts"),
+    WALNUTS("walnüsse", "walnuts"),
+    CASHEWS("kaschunüsse", "cashew"),
+    PECANS("pecannüsse", "pecans"),
+    BRAZIL_NUTS("paranüsse", "brazil nuts"),
+    PISTACHIOS("pistazien", "pistachios"),
+    MACADAMIA("macadamianüsse", "macadamia"),
+    MUSTARD("senf", "mustard"),
+    SESAME("sesam", "sesame"),
+    SULPHITES("schwefeldioxid", "sulfite", "sulphite"),
+    LUPIN("lupine", "lupin"),
+    MOLLUSCS("weichtiere", "molluscs"),
+
+    // additives
+    COLORING("farbstoff", "coloring"),
+    PRESERVATIVE("konservierungsstoff", "preservative"),
+    ANTIOXIDANT("antioxidationsmittel", "antioxidant"),
+    FLAVOR_ENHANCER("geschmacksverstärker", "flavour enhancer", "flavor enhancer"),
+    SULPHURED("geschwefelt", "sulphured"),
+    BLACKENED("geschwärzt", "blackened"),
+    WAXED("gewachst", "waxed"),
+    PHOSPHATE("phosphat", "phosphate"),
+    SWEETENER("süßungsmittel", "sweetener"),
+    PHENYLALANINE("phenylalanin", "phenylalanine");
+
+    private static final DietaryFlag[] VALUES = values();
+    private static final Map<String, Long> NOTE_CACHE = new ConcurrentHashMap<>();
+    private static final int NOTE_CACHE_LIMIT = 10_000;
+    private static final Set<String> ABSENCE_SUFFIXES = new HashSet<>(Arrays.asList(
+            "frei", "freie", "freier", "freies", "freien", "free"));
+    private static final String[] ABSENCE_PREFIXES = {"frei von ", "free of ", "free from ", "ohne ", "without "};
+
+    private final String[] keywords;
+
+    DietaryFlag(String... keywords) {
+        this.keywords = keywords;
+    }
+
+    /**
+     * @return the bit of this flag
+     */
+    public long mask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @return true if this flag is set in the given mask
+     */
+    public boolean isSet(long mask) {
+        return (mask & mask()) != 0;
+    }
+
+    /**
+     * @return the combined mask of the given flags
+     */
+    public static long maskOf(DietaryFlag... flags) {
+        long mask = 0;
+        for (DietaryFlag flag : flags) {
+            mask |= flag.mask();
+        }
+        return mask;
+    }
+
+    /**
+     * @return the combined mask of the given flags
+     */
+    public static long maskOf(Collection<DietaryFlag> flags) {
+        long mask = 0;
+        for (DietaryFlag flag : flags) {
+            mask |= flag.mask();
+        }
+        return mask;
+    }
+
+    /**
+     * @return the flags that are set in the given mask
+     */
+    public static EnumSet<DietaryFlag> fromMask(long mask) {
+        EnumSet<DietaryFlag> flags = EnumSet.noneOf(DietaryFlag.class);
+        for (DietaryFlag flag : VALUES) {
+            if (flag.isSet(mask))
+                flags.add(flag);
+        }
+        return flags;
+    }
+
+    /**
+     * Encode the free text notes of a meal into a mask.
+     * The result of every distinct note is remembered, so the recurring vocabulary of the
+     * providers is only matched against the keywords once.
+     *
+     * @param notes the notes of a meal, may be null
+     * @return the mask of all flags found in the notes
+     */
+    public static long encode(List<String> notes) {
+        if (notes == null)
+            return 0;
+        long mask = 0;
+        for (String note : notes) {
+            if (note != null)
+                mask |= encode(note);
+        }
+        // a vegan meal is always vegetarian as well
+        if (VEGAN.isSet(mask))
+            mask |= VEGETARIAN.mask();
+        return mask;
+    }
+
+    private static long encode(String note) {
+        Long cached = NOTE_CACHE.get(note);
+        if (cached != null)
+            return cached;
+        String normalized = note.trim().toLowerCase(Locale.ROOT);
+        long mask = 0;
+        for (DietaryFlag flag : VALUES) {
+            if (flag.matches(normalized))
+                mask |= flag.mask();
+        }
+        if (NOTE_CACHE.size() < NOTE_CACHE_LIMIT)
+            NOTE_CACHE.put(note, mask);
+        return mask;
+    }
+
+    private boolean matches(String normalizedNote) {
+        for (String keyword : keywords) {
+            if (keyword.length() < 4) {
+                if (normalizedNote.equals(keyword))
+                    return true;
+                continue;
+            }
+            for (int start = normalizedNote.indexOf(keyword); start >= 0; start = normalizedNote.indexOf(keyword, start + 1)) {
+                if (!isAbsence(normalizedNote, start, start + keyword.length()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the keyword at a position of a note is negated, as in "laktosefrei", "schweinefleischfrei",
+     * "gluten-free", "gluten free" or "free of gluten".
+     */
+    private static boolean isAbsence(String note, int start, int end) {
+        int wordEnd = end;
+        while (wordEnd < note.length() && Character.isLetter(note.charAt(wordEnd))) {
+            wordEnd++;
+        }
+        String rest = note.substring(end, wordEnd);
+        for (String suffix : ABSENCE_SUFFIXES) {
+            if (rest.endsWith(suffix))
+                return true;
+        }
+        if (rest.isEmpty() && wordEnd < note.length() && (note.charAt(wordEnd) == '-' || note.charAt(wordEnd) == ' ')) {
+            int nextEnd = wordEnd + 1;
+            while (nextEnd < note.length() && Character.isLetter(note.charAt(nextEnd))) {
+                nextEnd++;
+            }
+            if (ABSENCE_SUFFIXES.contains(note.substring(wordEnd + 1, nextEnd)))
+                return true;
+        }
+        String before = note.substring(0, start);
+        for (String prefix : ABSENCE_PREFIXES) {
+            if (before.endsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+}
@@ -1,11 +1,24 @@
 package com.github.codeboy.api;
 
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
 
-public class Meal {
-    private String name, category;
-    private List<String> notes;
-    private Prices prices;
+/**
+ * A meal of a canteen. Meals are immutable, so the cache and the providers hand out the same instances
+ * to every caller, and they are equal if all their parts are.
+ */
+@JsonAdapter(MealTypeAdapter.class)
+public final class Meal {
+    private final String name, category;
+    private final List<String> notes;
+    private final Prices prices;
+    private final long flags;
+    private final int hash;
 
     public String getName() {
         return name;
@@ -15,6 +28,9 @@ public class Meal {
         return category;
     }
 
+    /**
+     * @return the unmodifiable notes, or null if the meal has none
+     */
     public List<String> getNotes() {
         return notes;
     }
@@ -23,10 +39,68 @@ public class Meal {
         return prices;
     }
 
+    /**
+     * @return the {@link DietaryFlag} mask of this meal
+     */
+    public long getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return the dietary flags of this meal
+     */
+    public EnumSet<DietaryFlag> getDietaryFlags() {
+        return DietaryFlag.fromMask(flags);
+    }
+
+    public boolean hasFlag(DietaryFlag flag) {
+        return flag.isSet(flags);
+    }
+
+    /**
+     * Check this meal against a filter built with {@link DietaryFlag#maskOf(DietaryFlag...)}.
+     *
+     * @param includeMask flags the meal must have all of
+     * @param excludeMask flags the meal must have none of
+     * @return true if the meal matches the filter
+     */
+    public boolean matches(long includeMask, long excludeMask) {
+        return (flags & includeMask) == includeMask && (flags & excludeMask) == 0;
+    }
+
     public Meal(String name, String category, List<String> notes, Prices prices) {
-        this.name = name;
-        this.category = category;
-        this.notes = notes;
-        this.prices = prices;
+        this.name = MealInterner.intern(name);
+        this.category = MealInterner.intern(category);
+        this.notes = notes == null ? null
+                : MealInterner.isEnabled() ? MealInterner.intern(notes) : Collections.unmodifiableList(new ArrayList<>(notes));
+        this.prices = MealInterner.intern(prices);
+        // derived here rather than stored, so it always matches the flags of this version of the library
+        this.flags = DietaryFlag.encode(this.notes);
+        int hash = Objects.hashCode(this.name);
+        hash = 31 * hash + Objects.hashCode(this.category);
+        hash = 31 * hash + Objects.hashCode(this.notes);
+        this.hash = 31 * hash + Objects.hashCode(this.prices);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Meal))
+            return false;
+        Meal other = (Meal) o;
+        return hash == other.hash && Objects.equals(name, other.name)
+                && Objects.equals(category, other.category) && Objects.equals(notes, other.notes)
+                && Objects.equals(prices, other.prices);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Meal{" + name + ", " + category + "}";
     }
 }
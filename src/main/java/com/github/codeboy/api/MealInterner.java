@@ -0,0 +1,110 @@
+package com.github.codeboy.api;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Weak pools of the parts of meals that recur across days and canteens: names, categories, notes and prices.
+ * Equal parts share one instance, which is dropped from the pool once no meal uses it anymore.
+ * <p>
+ * Meals are interned when they are created by a provider and when gson decodes them,
+ * from a download as well as from the cache. Interned notes lists are unmodifiable.
+ * Interning can be turned off with the system property {@code mensa4j.intern=false}.
+ */
+public final class MealInterner {
+
+    private static final WeakPool<String> STRINGS = new WeakPool<>();
+    private static final WeakPool<List<String>> NOTES = new WeakPool<>();
+    private static final WeakPool<Prices> PRICES = new WeakPool<>();
+    private static volatile boolean enabled = !"false".equals(System.getProperty("mensa4j.intern"));
+
+    private MealInterner() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn interning on or off for the meals created from now on.
+     */
+    public static void setEnabled(boolean enabled) {
+        MealInterner.enabled = enabled;
+    }
+
+    /**
+     * @return the pooled string equal to the string, or null for null
+     */
+    public static String intern(String s) {
+        if (s == null || !enabled)
+            return s;
+        return STRINGS.intern(s);
+    }
+
+    /**
+     * @return an unmodifiable pooled list of pooled strings equal to the notes, or null for null
+     */
+    public static List<String> intern(List<String> notes) {
+        if (notes == null || !enabled)
+            return notes;
+        String[] interned = new String[notes.size()];
+        for (int i = 0; i < interned.length; i++) {
+            interned[i] = intern(notes.get(i));
+        }
+        return NOTES.intern(Collections.unmodifiableList(Arrays.asList(interned)));
+    }
+
+    /**
+     * @return the pooled prices equal to the prices, or null for null
+     */
+    public static Prices intern(Prices prices) {
+        if (prices == null || !enabled)
+            return prices;
+        return PRICES.intern(prices);
+    }
+
+    /**
+     * @return the number of pooled strings, notes lists and prices that are still in use
+     */
+    public static int size() {
+        return STRINGS.size() + NOTES.size() + PRICES.size();
+    }
+
+    /**
+     * A pool holding its values weakly, split into segments with their own lock.
+     */
+    private static final class WeakPool<T> {
+        private static final int SEGMENTS = 16;
+
+        private final List<WeakHashMap<T, WeakReference<T>>> segments = new ArrayList<>(SEGMENTS);
+
+        WeakPool() {
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments.add(new WeakHashMap<>());
+            }
+        }
+
+        T intern(T value) {
+            int hash = value.hashCode();
+            WeakHashMap<T, WeakReference<T>> segment = segments.get((hash ^ hash >>> 16) & (SEGMENTS - 1));
+            synchronized (segment) {
+                WeakReference<T> reference = segment.get(value);
+                T pooled = reference == null ? null : reference.get();
+                if (pooled != null)
+                    return pooled;
+                segment.put(value, new WeakReference<>(value));
+                return value;
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (WeakHashMap<T, WeakReference<T>> segment : segments) {
+                synchronized (segment) {
+                    size += segment.size();
+                }
+            }
+            return size;
+        }
+    }
+}
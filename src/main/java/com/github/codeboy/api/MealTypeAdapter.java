@@ -0,0 +1,90 @@
+package com.github.codeboy.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes {@link Meal meals} without reflection, creating them through their constructor.
+ * The {@link DietaryFlag} mask isn't stored, it depends on the version of the library and is derived
+ * from the notes whenever a meal is read. The flags written by earlier versions are ignored.
+ * Registered with {@link com.google.gson.annotations.JsonAdapter} on the class itself.
+ */
+final class MealTypeAdapter extends TypeAdapter<Meal> {
+
+    @Override
+    public void write(JsonWriter out, Meal meal) throws IOException {
+        if (meal == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("name").value(meal.getName());
+        out.name("category").value(meal.getCategory());
+        out.name("notes");
+        List<String> notes = meal.getNotes();
+        if (notes == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (String note : notes) {
+                out.value(note);
+            }
+            out.endArray();
+        }
+        out.name("prices");
+        PricesTypeAdapter.INSTANCE.write(out, meal.getPrices());
+        out.endObject();
+    }
+
+    @Override
+    public Meal read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = null, category = null;
+        List<String> notes = null;
+        Prices prices = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    name = PricesTypeAdapter.readString(in);
+                    break;
+                case "category":
+                    category = PricesTypeAdapter.readString(in);
+                    break;
+                case "notes":
+                    notes = readNotes(in);
+                    break;
+                case "prices":
+                    prices = PricesTypeAdapter.INSTANCE.read(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Meal(name, category, notes, prices);
+    }
+
+    private static List<String> readNotes(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> notes = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            notes.add(PricesTypeAdapter.readString(in));
+        }
+        in.endArray();
+        return notes;
+    }
+}
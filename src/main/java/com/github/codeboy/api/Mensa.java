@@ -1,15 +1,27 @@
 package com.github.codeboy.api;
 
+import com.github.codeboy.Util;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
 
 public interface Mensa {
     default List<Meal> getMeals() {
-        return getMeals(new Date());
+        return getMeals(LocalDate.now());
     }
 
     default List<Meal> getMeals(boolean bypassCache) {
-        return getMeals(new Date(), bypassCache);
+        return getMeals(LocalDate.now(), bypassCache);
+    }
+
+    default List<Meal> getMeals(LocalDate date) {
+        return getMeals(date, false);
+    }
+
+    default List<Meal> getMeals(LocalDate date, boolean bypassCache) {
+        return getMeals(Util.dateToString(date), bypassCache);
     }
 
     List<Meal> getMeals(Date date);
@@ -28,6 +40,10 @@ public interface Mensa {
 
     boolean isOpen(Date date);
 
+    default boolean isOpen(LocalDate date) {
+        return isOpen(Util.dateToString(date));
+    }
+
     boolean isOpen(String date);
 
     int getId();
@@ -59,4 +75,18 @@ public interface Mensa {
     default float getClosingTime(Date date) {
         return 0;
     }
+
+    /**
+     * @return the hour of day where the mensa opens - or 0 if unknown
+     */
+    default float getOpeningTime(LocalDate date) {
+        return getOpeningTime(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    }
+
+    /**
+     * @return the hour of day where the mensa closes - or 0 if unknown
+     */
+    default float getClosingTime(LocalDate date) {
+        return getClosingTime(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    }
 }
@@ -3,16 +3,25 @@ package com.github.codeboy.api;
 import com.github.codeboy.OpenMensa;
 import com.github.codeboy.Util;
 import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 public class MensaImpl implements Mensa {
+    private static final Counter HITS = Metrics.getInstance().counter("provider.openmensa.hits");
+    private static final Counter MISSES = Metrics.getInstance().counter("provider.openmensa.misses");
+    private static final Counter ERRORS = Metrics.getInstance().counter("provider.openmensa.errors");
+    private static final Histogram FETCH = Metrics.getInstance().histogram("provider.openmensa.fetch");
+
     private final int id;
     private final String name, city, address;
     private final List<Double> coordinates;
@@ -51,25 +60,32 @@ public class MensaImpl implements Mensa {
 
     @Override
     public List<Meal> getMeals(String date, boolean bypassCache) {
+        OpenMensa.getInstance().getAccessTracker().recordAccess(id);
         // Check cache if not bypassing
         if (!bypassCache) {
             List<Meal> cachedMeals = getCacheManager().getCachedMeals(id, date);
             if (cachedMeals != null) {
+                HITS.increment();
                 return cachedMeals;
             }
         }
+        MISSES.increment();
 
         // Fetch from network
+        long start = System.nanoTime();
         try {
             Type type = new TypeToken<List<Meal>>() {
             }.getType();
-            List<Meal> fetchedMeals = Util.getObject(OpenMensa.getInstance().getBaseUrl() + "/canteens/" + id + "/days/" + date + "/meals/", type);
+            List<Meal> fetchedMeals = Collections.unmodifiableList(Util.getObject(
+                    OpenMensa.getInstance().getBaseUrl() + "/canteens/" + id + "/days/" + date + "/meals/", type, "openmensa"));
             
             // Cache the fetched meals
             getCacheManager().cacheMeals(id, date, fetchedMeals);
+            FETCH.recordSince(start);
             
             return fetchedMeals;
         } catch (Exception e) {
+            ERRORS.increment();
             e.printStackTrace();
         }
         return Collections.emptyList();
@@ -77,7 +93,7 @@ public class MensaImpl implements Mensa {
 
     @Override
     public boolean isOpen() {
-        return isOpen(new Date());
+        return isOpen(LocalDate.now());
     }
 
     @Override
@@ -95,7 +111,7 @@ public class MensaImpl implements Mensa {
 
         // Fetch from network
         try {
-            JsonElement e = JsonParser.parseString(Util.readUrl("https://openmensa.org/api/v2/canteens/" + id + "/days/" + date + "/"));
+            JsonElement e = JsonParser.parseString(Util.readUrl(OpenMensa.getInstance().getBaseUrl() + "/canteens/" + id + "/days/" + date + "/", "openmensa"));
             boolean closed = e.getAsJsonObject().get("closed").getAsBoolean();
             boolean isOpen = !closed;
             
@@ -104,6 +120,7 @@ public class MensaImpl implements Mensa {
             
             return isOpen;
         } catch (Exception e) {
+            ERRORS.increment();
             e.printStackTrace();
         }
         return false;
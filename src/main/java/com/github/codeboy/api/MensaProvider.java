@@ -0,0 +1,32 @@
+package com.github.codeboy.api;
+
+/**
+ * A source of canteens that are not (only) served by the OpenMensa api.
+ * Providers are discovered with {@link java.util.ServiceLoader}, so a deployment only pays for
+ * the providers on its classpath. Setting the system property {@code mensa4j.providers} to a
+ * comma separated list of provider names restricts the discovered providers further.
+ * <p>
+ * Providers should be cheap to construct, the canteens themselves are only created by
+ * {@link #createMensa(int, Mensa)} when one of the ids is accessed for the first time.
+ */
+public interface MensaProvider {
+
+    /**
+     * @return the name used to enable this provider in {@code mensa4j.providers}
+     */
+    String getName();
+
+    /**
+     * @return the ids of the canteens owned by this provider
+     */
+    int[] getCanteenIds();
+
+    /**
+     * Create the canteen with the given id.
+     *
+     * @param id       one of {@link #getCanteenIds()}
+     * @param original the canteen with the same id from the OpenMensa directory, or null if there is none
+     * @return the canteen that replaces the original
+     */
+    Mensa createMensa(int id, Mensa original);
+}
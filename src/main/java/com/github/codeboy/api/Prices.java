@@ -1,14 +1,43 @@
 package com.github.codeboy.api;
 
-public class Prices {
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Objects;
+
+/**
+ * The prices of a meal as given by the canteen, with their amounts in cents parsed once.
+ * Prices are immutable and equal if their strings are.
+ */
+@JsonAdapter(PricesTypeAdapter.class)
+public final class Prices {
+    /**
+     * Amount returned by {@link #getCents(Audience)} when there is no price for an audience.
+     */
+    public static final int MISSING = -1;
+
+    /**
+     * The groups of customers a canteen has different prices for.
+     */
+    public enum Audience {
+        STUDENTS, EMPLOYEES, PUPILS, OTHERS
+    }
+
     public Prices(String students, String employees, String pupils, String others) {
         this.students = students;
         this.employees = employees;
         this.pupils = pupils;
         this.others = others;
+        this.studentsCents = parseCents(students);
+        this.employeesCents = parseCents(employees);
+        this.pupilsCents = parseCents(pupils);
+        this.othersCents = parseCents(others);
+        this.hash = Objects.hash(students, employees, pupils, others);
     }
 
-    private String students, employees, pupils, others;
+    private final String students, employees, pupils, others;
+    // fields rather than an array, saving an object per price
+    private final int studentsCents, employeesCents, pupilsCents, othersCents;
+    private final int hash;
 
     public String getStudents() {
         return students;
@@ -25,4 +54,98 @@ public class Prices {
     public String getOthers() {
         return others;
     }
+
+    /**
+     * @return the price for the audience in cents, or {@link #MISSING}
+     */
+    public int getCents(Audience audience) {
+        switch (audience) {
+            case STUDENTS:
+                return studentsCents;
+            case EMPLOYEES:
+                return employeesCents;
+            case PUPILS:
+                return pupilsCents;
+            default:
+                return othersCents;
+        }
+    }
+
+    public boolean hasPrice(Audience audience) {
+        return getCents(audience) != MISSING;
+    }
+
+    public int getStudentsCents() {
+        return studentsCents;
+    }
+
+    public int getEmployeesCents() {
+        return employeesCents;
+    }
+
+    public int getPupilsCents() {
+        return pupilsCents;
+    }
+
+    public int getOthersCents() {
+        return othersCents;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Prices))
+            return false;
+        Prices other = (Prices) o;
+        return hash == other.hash && Objects.equals(students, other.students) && Objects.equals(employees, other.employees)
+                && Objects.equals(pupils, other.pupils) && Objects.equals(others, other.others);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Parse a price like "3.50", "3,5" or "3,50 €" into cents.
+     *
+     * @param price the price in euros
+     * @return the price in cents, or {@link #MISSING} if there is no valid price
+     */
+    public static int parseCents(String price) {
+        if (price == null)
+            return MISSING;
+        long euros = 0;
+        int cents = 0, fractionDigits = -1;
+        boolean digits = false;
+        for (int i = 0; i < price.length(); i++) {
+            char c = price.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (fractionDigits < 0) {
+                    euros = euros * 10 + (c - '0');
+                    if (euros > Integer.MAX_VALUE / 100)
+                        return MISSING;
+                } else if (fractionDigits < 2) {
+                    cents = cents * 10 + (c - '0');
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    // round on the third digit
+                    if (c >= '5')
+                        cents++;
+                    fractionDigits++;
+                }
+            } else if ((c == '.' || c == ',') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c != ' ' && c != '\u00A0' && c != '€') {
+                return MISSING;
+            }
+        }
+        if (!digits)
+            return MISSING;
+        if (fractionDigits == 1)
+            cents *= 10;
+        return (int) (euros * 100 + cents);
+    }
 }
@@ -0,0 +1,77 @@
+package com.github.codeboy.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link Prices} without reflection and interns them, see {@link MealInterner}.
+ * Registered with {@link com.google.gson.annotations.JsonAdapter} on the class itself.
+ */
+final class PricesTypeAdapter extends TypeAdapter<Prices> {
+
+    static final PricesTypeAdapter INSTANCE = new PricesTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Prices prices) throws IOException {
+        if (prices == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("students").value(prices.getStudents());
+        out.name("employees").value(prices.getEmployees());
+        out.name("pupils").value(prices.getPupils());
+        out.name("others").value(prices.getOthers());
+        out.endObject();
+    }
+
+    @Override
+    public Prices read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String students = null, employees = null, pupils = null, others = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "students":
+                    students = readString(in);
+                    break;
+                case "employees":
+                    employees = readString(in);
+                    break;
+                case "pupils":
+                    pupils = readString(in);
+                    break;
+                case "others":
+                    others = readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return MealInterner.intern(new Prices(students, employees, pupils, others));
+    }
+
+    /**
+     * Read a string like gson does for a string field: numbers like the 2.5 of OpenMensa prices keep
+     * their literal text.
+     */
+    static String readString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+}
@@ -3,6 +3,14 @@ package com.github.codeboy.api;
 import com.github.codeboy.OpenMensa;
 import com.github.codeboy.Util;
 import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Events;
+import com.github.codeboy.metrics.FetchEvent;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
+import com.github.codeboy.metrics.ParseEvent;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -11,17 +19,26 @@ import org.jsoup.select.Elements;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.util.Calendar.*;
-
 public class RWTHMensa implements Mensa {
 
     // Mapping of allergen codes to their full descriptions
     private static final Map<String, String> ALLERGEN_MAP = new HashMap<>();
+    public static final String DEFAULT_BASE_URL = "https://www.studierendenwerk-aachen.de";
+    private static volatile String baseUrl = DEFAULT_BASE_URL;
+    private static final DateTimeFormatter HEADLINE_DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final Counter HITS = Metrics.getInstance().counter("provider.rwth.hits");
+    private static final Counter MISSES = Metrics.getInstance().counter("provider.rwth.misses");
+    private static final Counter ERRORS = Metrics.getInstance().counter("provider.rwth.errors");
+    private static final Histogram FETCH = Metrics.getInstance().histogram("provider.rwth.fetch");
+    private static final Histogram PARSE = Metrics.getInstance().histogram("provider.rwth.parse");
 
     static {
         // Additives (numbered)
@@ -67,15 +84,10 @@ public class RWTHMensa implements Mensa {
     }
 
     public static void injectRWTHCanteens(HashMap<Integer, Mensa> canteens) {
-        injectCanteen(canteens, 187, "academica", "academica", "Aachen, Mensa Academica");
-        injectCanteen(canteens, 96, "vita");
-        injectCanteen(canteens, 97, "bayernallee");
-        injectCanteen(canteens, 95, "ahornstrasse");
-        injectCanteen(canteens, 94, "templergraben", "bistro-templergraben");// yes for some reason this has multiple names
-        injectCanteen(canteens, 98, "eupenerstrasse", "eupener-strasse");
-        injectCanteen(canteens, 99, "kmac", "goethestrasse", "Aachen, KMAC");
-        //injectCanteen(canteens, 93, "forum","suedpark");// this getting to complicated. Why do they have a completely different route just for this one???
-        injectCanteen(canteens, 100, "juelich");
+        RWTHMensaProvider provider = new RWTHMensaProvider();
+        for (int id : provider.getCanteenIds()) {
+            canteens.put(id, provider.createMensa(id, canteens.get(id)));// override the original mensa
+        }
     }
 
     public static void main(String[] args) {
@@ -89,20 +101,6 @@ public class RWTHMensa implements Mensa {
         }
     }
 
-    private static void injectCanteen(HashMap<Integer, Mensa> canteens, int id, String webName) {
-        injectCanteen(canteens, id, webName, webName);
-    }
-
-    private static void injectCanteen(HashMap<Integer, Mensa> canteens, int id, String webName, String otherWebName) {
-        injectCanteen(canteens, id, webName, otherWebName, null);
-    }
-
-    private static void injectCanteen(HashMap<Integer, Mensa> canteens, int id, String webName, String otherWebName, String overwriteName) {
-        Mensa original = canteens.get(id);
-        RWTHMensa rwthMensa = new RWTHMensa(original, webName, otherWebName, overwriteName, id);
-        canteens.put(id, rwthMensa);// override the original mensa
-    }
-
     private final Mensa original;
     private final String webName;
     private final String otherWebname;
@@ -118,12 +116,28 @@ public class RWTHMensa implements Mensa {
         this.id = id;
     }
 
+    /**
+     * @return the base url of the Studierendenwerk website the menus are scraped from
+     */
+    public static String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Set the base url of the Studierendenwerk website, for example to replay recorded pages from a local server.
+     *
+     * @param baseUrl the base url without a trailing slash, {@link #DEFAULT_BASE_URL} by default
+     */
+    public static void setBaseUrl(String baseUrl) {
+        RWTHMensa.baseUrl = baseUrl;
+    }
+
     private MensaCacheManager getCacheManager() {
         return OpenMensa.getInstance().getCacheManager();
     }
 
     private void loadOpeningHours() throws IOException {
-        String url = "https://www.studierendenwerk-aachen.de/de/Gastronomie/mensa-" + otherWebname + "-wochenplan.html";
+        String url = baseUrl + "/de/Gastronomie/mensa-" + otherWebname + "-wochenplan.html";
         Document doc = Jsoup.connect(url).get();
         Elements divs = doc.select("div.openings");
 
@@ -200,17 +214,53 @@ public class RWTHMensa implements Mensa {
             //loadOpeningHours();
             loadMeals();
         } catch (IOException | ParseException e) {
+            ERRORS.increment();
             throw new RuntimeException(e);
         }
     }
 
     private void loadMeals() throws IOException, ParseException {
-        String url = "https://www.studierendenwerk-aachen.de/speiseplaene/" + webName + "-w.html";
-        Document doc = Jsoup.connect(url).get();
+        String url = baseUrl + "/speiseplaene/" + webName + "-w.html";
+        FetchEvent fetchEvent = Events.ENABLED ? FetchEvent.start() : null;
+        long start = System.nanoTime();
+        Connection.Response response;
+        try {
+            response = Jsoup.connect(url).execute();
+        } catch (HttpStatusException e) {
+            if (fetchEvent != null)
+                fetchEvent.finish("rwth", url, 0, e.getStatusCode());
+            throw e;
+        }
+        int bytes = response.bodyAsBytes().length;
+        Util.recordDownload(bytes, start);
+        if (fetchEvent != null)
+            fetchEvent.finish("rwth", url, bytes, response.statusCode());
+
+        ParseEvent parseEvent = Events.ENABLED ? ParseEvent.start() : null;
+        long parseStart = System.nanoTime();
+        Document doc = response.parse();
+        Map<String, List<Meal>> mealsByDate = parseWeek(doc);
+        PARSE.recordSince(parseStart);
+        if (parseEvent != null)
+            parseEvent.finish("html", url, bytes);
+
+        // only the days that changed since the last scrape are written
+        getCacheManager().cacheMeals(id, mealsByDate);
+        FETCH.recordSince(start);
+    }
 
+    /**
+     * Parse the meals of a weekly menu page of the Studierendenwerk Aachen.
+     *
+     * @param doc the menu page
+     * @return the meals of every day on the page, by date string (YYYY-MM-DD format)
+     * @throws ParseException if a date headline can't be parsed
+     */
+    public static Map<String, List<Meal>> parseWeek(Document doc) throws ParseException {
         String[] dateStrings = parseDates(doc);
 
         Elements dayPanels = doc.select("div.default-panel, div.active-panel");
+        Map<String, List<Meal>> mealsByDate = new LinkedHashMap<>();
 
         for (int i = 0; i < dayPanels.size(); i++) {
             Element dayPanel = dayPanels.get(i);
@@ -220,25 +270,28 @@ public class RWTHMensa implements Mensa {
 
             parseSideDishes(dayPanel, mealsForDay);
 
-            getCacheManager().cacheMeals(id, dateStrings[i], mealsForDay);
+            mealsByDate.put(dateStrings[i], Collections.unmodifiableList(mealsForDay));
         }
+        return mealsByDate;
     }
 
     /**
      * Extracts and formats the dates from the menu page.
      */
-    private String[] parseDates(Document doc) throws ParseException {
+    private static String[] parseDates(Document doc) throws ParseException {
         Elements dateHeaders = doc.select("h3.default-headline, h3.active-headline");
         String[] dateStrings = new String[dateHeaders.size()];
-        SimpleDateFormat parser = new SimpleDateFormat("dd.MM.yyyy");
 
         for (int i = 0; i < dateHeaders.size(); i++) {
             Element dateHeader = dateHeaders.get(i);
             String dateText = dateHeader.child(0).text();
             // Extract date from format "Montag, 13.10.2025"
             String dateString = dateText.split(" ")[1];
-            Date dateObject = parser.parse(dateString);
-            dateStrings[i] = Util.dateToString(dateObject);
+            try {
+                dateStrings[i] = Util.dateToString(LocalDate.parse(dateString, HEADLINE_DATE_FORMAT));
+            } catch (DateTimeParseException e) {
+                throw new ParseException(e.getMessage(), e.getErrorIndex());
+            }
         }
 
         return dateStrings;
@@ -247,7 +300,7 @@ public class RWTHMensa implements Mensa {
     /**
      * Parses main meals from a day panel.
      */
-    private void parseMainMeals(Element dayPanel, List<Meal> mealsForDay) {
+    private static void parseMainMeals(Element dayPanel, List<Meal> mealsForDay) {
         Element menuesTable = dayPanel.selectFirst("table.menues");
         if (menuesTable == null) {
             return;
@@ -270,7 +323,7 @@ public class RWTHMensa implements Mensa {
     /**
      * Parses a single meal row from the main meals table.
      */
-    private Meal parseMealRow(Element mealRow) {
+    private static Meal parseMealRow(Element mealRow) {
         // Extract dietary tags from CSS classes (e.g., vegan, OLV, Schwein, etc.)
         Set<String> dietaryTags = extractDietaryTags(mealRow);
 
@@ -313,7 +366,7 @@ public class RWTHMensa implements Mensa {
     /**
      * Extracts dietary tags from CSS classes, filtering out non-dietary classes.
      */
-    private Set<String> extractDietaryTags(Element mealRow) {
+    private static Set<String> extractDietaryTags(Element mealRow) {
         Set<String> tags = new HashSet<>(mealRow.classNames());
         // Remove CSS styling classes that are not dietary information
         tags.remove("bg-color");
@@ -326,7 +379,7 @@ public class RWTHMensa implements Mensa {
      * Extracts allergen information from <sup> tags and converts codes to full descriptions.
      * Example: <sup> A,A1,A3,A5</sup> -> ["Gluten", "Weizen", "Gerste", "Dinkel"]
      */
-    private List<String> extractAllergens(Element expandNutr) {
+    private static List<String> extractAllergens(Element expandNutr) {
         List<String> allergens = new ArrayList<>();
         Elements supElements = expandNutr.select("sup");
 
@@ -340,7 +393,6 @@ public class RWTHMensa implements Mensa {
                     if (!trimmedCode.isEmpty()) {
                         // Convert code to full description, fallback to code if not found
                         String allergenName = ALLERGEN_MAP.getOrDefault(trimmedCode, trimmedCode);
-                        System.out.println(trimmedCode + " " + allergenName);
                         allergens.add(allergenName);
                     }
                 }
@@ -351,28 +403,28 @@ public class RWTHMensa implements Mensa {
     }
 
     /**
-     * Extracts price from the menu wrapper element.
+     * Extracts price from the menu wrapper element, or null if the meal has no price.
      */
-    private String extractPrice(Element menueWrapper) {
+    private static String extractPrice(Element menueWrapper) {
         Element priceElement = menueWrapper.selectFirst("span.menue-price");
         if (priceElement == null) {
-            return "0.0";
+            return null;
         }
 
         String priceText = priceElement.text().trim();
         // Extract price before the € symbol and replace comma with dot
         String[] parts = priceText.split(" ");
-        if (parts.length > 0) {
+        if (parts.length > 0 && !parts[0].isEmpty()) {
             return parts[0].replace(",", ".");
         }
 
-        return "0.0";
+        return null;
     }
 
     /**
      * Parses side dishes (Beilagen) from a day panel.
      */
-    private void parseSideDishes(Element dayPanel, List<Meal> mealsForDay) {
+    private static void parseSideDishes(Element dayPanel, List<Meal> mealsForDay) {
         Element extrasTable = dayPanel.selectFirst("table.extras");
         if (extrasTable == null) {
             return;
@@ -411,19 +463,15 @@ public class RWTHMensa implements Mensa {
         loadMeals();
     }
 
-    private OpeningTimes getOpeningTimes(Date date) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
-
-        String day = getDayName(dayOfWeek);
+    private OpeningTimes getOpeningTimes(LocalDate date) {
+        String day = getDayName(date.getDayOfWeek());
         OpeningTimes openingTimes = openingTimesMap.get(day);
         if (openingTimes == null)
             return OpeningTimes.closed;
         return openingTimes;
     }
 
-    String getDayName(int dayOfWeek) {
+    String getDayName(DayOfWeek dayOfWeek) {
         switch (dayOfWeek) {
             case SUNDAY:
                 return "So";
@@ -461,12 +509,15 @@ public class RWTHMensa implements Mensa {
 
     @Override
     public List<Meal> getMeals(String date, boolean bypassCache) {
+        OpenMensa.getInstance().getAccessTracker().recordAccess(id);
         if (!bypassCache) {
             List<Meal> cachedMeals = getCacheManager().getCachedMeals(id, date);
             if (cachedMeals != null) {
+                HITS.increment();
                 return cachedMeals;
             }
         }
+        MISSES.increment();
 
         loadNewMeals();
 
@@ -476,7 +527,7 @@ public class RWTHMensa implements Mensa {
 
     @Override
     public boolean isOpen() {
-        return isOpen(new Date());
+        return isOpen(LocalDate.now());
     }
 
     @Override
@@ -537,12 +588,21 @@ public class RWTHMensa implements Mensa {
 
     @Override
     public float getOpeningTime(Date date) {
-        return getOpeningTimes(date).startTime;
+        return getOpeningTime(Util.toLocalDate(date));
     }
 
+    @Override
+    public float getOpeningTime(LocalDate date) {
+        return getOpeningTimes(date).startTime;
+    }
 
     @Override
     public float getClosingTime(Date date) {
+        return getClosingTime(Util.toLocalDate(date));
+    }
+
+    @Override
+    public float getClosingTime(LocalDate date) {
         return getOpeningTimes(date).endTime;
     }
 }
@@ -0,0 +1,44 @@
+package com.github.codeboy.api;
+
+/**
+ * Provides the canteens of the Studierendenwerk Aachen, which are scraped from their website.
+ */
+public class RWTHMensaProvider implements MensaProvider {
+
+    private static final int[] IDS = {187, 96, 97, 95, 94, 98, 99, 100};
+
+    @Override
+    public String getName() {
+        return "rwth";
+    }
+
+    @Override
+    public int[] getCanteenIds() {
+        return IDS.clone();
+    }
+
+    @Override
+    public Mensa createMensa(int id, Mensa original) {
+        switch (id) {
+            case 187:
+                return new RWTHMensa(original, "academica", "academica", "Aachen, Mensa Academica", id);
+            case 96:
+                return new RWTHMensa(original, "vita", "vita", null, id);
+            case 97:
+                return new RWTHMensa(original, "bayernallee", "bayernallee", null, id);
+            case 95:
+                return new RWTHMensa(original, "ahornstrasse", "ahornstrasse", null, id);
+            case 94:
+                return new RWTHMensa(original, "templergraben", "bistro-templergraben", null, id);// yes for some reason this has multiple names
+            case 98:
+                return new RWTHMensa(original, "eupenerstrasse", "eupener-strasse", null, id);
+            case 99:
+                return new RWTHMensa(original, "kmac", "goethestrasse", "Aachen, KMAC", id);
+            //case 93: "forum","suedpark" this getting to complicated. Why do they have a completely different route just for this one???
+            case 100:
+                return new RWTHMensa(original, "juelich", "juelich", null, id);
+            default:
+                throw new IllegalArgumentException("Not an RWTH canteen: " + id);
+        }
+    }
+}
@@ -3,19 +3,27 @@ package com.github.codeboy.api;
 import com.github.codeboy.OpenMensa;
 import com.github.codeboy.Util;
 import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class ReykjavikMensa implements Mensa {
     
-    private static final String API_URL = "https://prod-198.westeurope.logic.azure.com/workflows/cc7c4c7157b14d5ba688859712303172/triggers/manual/paths/invoke?api-version=2016-06-01&sp=%2Ftriggers%2Fmanual%2Frun&sv=1.0&sig=cRM1huMwILXk-jf6xybnCcTRpnSxjKY53jFwwUGLx14";
-    private static final int REYKJAVIK_MENSA_ID = 999999;
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    public static final String DEFAULT_API_URL = "https://prod-198.westeurope.logic.azure.com/workflows/cc7c4c7157b14d5ba688859712303172/triggers/manual/paths/invoke?api-version=2016-06-01&sp=%2Ftriggers%2Fmanual%2Frun&sv=1.0&sig=cRM1huMwILXk-jf6xybnCcTRpnSxjKY53jFwwUGLx14";
+    static final int REYKJAVIK_MENSA_ID = 999999;
+    private static volatile String apiUrl = DEFAULT_API_URL;
+    private static final Counter HITS = Metrics.getInstance().counter("provider.reykjavik.hits");
+    private static final Counter MISSES = Metrics.getInstance().counter("provider.reykjavik.misses");
+    private static final Counter ERRORS = Metrics.getInstance().counter("provider.reykjavik.errors");
+    private static final Histogram FETCH = Metrics.getInstance().histogram("provider.reykjavik.fetch");
     
     /**
      * Inner class representing the JSON structure from Reykjavik University API
@@ -40,6 +48,22 @@ public class ReykjavikMensa implements Mensa {
     public ReykjavikMensa() {
     }
     
+    /**
+     * @return the url of the feed the menus are read from
+     */
+    public static String getApiUrl() {
+        return apiUrl;
+    }
+
+    /**
+     * Set the url of the menu feed, for example to replay a recorded feed from a local server.
+     *
+     * @param apiUrl the full url of the feed, {@link #DEFAULT_API_URL} by default
+     */
+    public static void setApiUrl(String apiUrl) {
+        ReykjavikMensa.apiUrl = apiUrl;
+    }
+
     private MensaCacheManager getCacheManager() {
         return OpenMensa.getInstance().getCacheManager();
     }
@@ -61,18 +85,22 @@ public class ReykjavikMensa implements Mensa {
     
     @Override
     public List<Meal> getMeals(String dateString, boolean bypassCache) {
+        OpenMensa.getInstance().getAccessTracker().recordAccess(REYKJAVIK_MENSA_ID);
         // Check cache if not bypassing
         if (!bypassCache) {
             List<Meal> cachedMeals = getCacheManager().getCachedMeals(REYKJAVIK_MENSA_ID, dateString);
             if (cachedMeals != null) {
+                HITS.increment();
                 return cachedMeals;
             }
         }
+        MISSES.increment();
         
         // Fetch from network
+        long start = System.nanoTime();
         try {
             Type type = new TypeToken<List<ReykjavikMenuEntry>>() {}.getType();
-            List<ReykjavikMenuEntry> entries = Util.getObject(API_URL, type);
+            List<ReykjavikMenuEntry> entries = Util.getObject(apiUrl, type, "reykjavik");
             
             // Filter entries for the requested date
             List<Meal> meals = new ArrayList<>();
@@ -99,11 +127,14 @@ public class ReykjavikMensa implements Mensa {
                 }
             }
             
-            // Cache the fetched meals
+            // Cache the fetched meals, they are shared with everyone getting them from the cache
+            meals = Collections.unmodifiableList(meals);
             getCacheManager().cacheMeals(REYKJAVIK_MENSA_ID, dateString, meals);
+            FETCH.recordSince(start);
             
             return meals;
         } catch (Exception e) {
+            ERRORS.increment();
             e.printStackTrace();
         }
         return Collections.emptyList();
@@ -158,7 +189,7 @@ public class ReykjavikMensa implements Mensa {
     
     @Override
     public boolean isOpen() {
-        return isOpen(new Date());
+        return isOpen(LocalDate.now());
     }
     
     @Override
@@ -176,19 +207,15 @@ public class ReykjavikMensa implements Mensa {
         
         // Reykjavik mensa is open if there are meals for that date
         try {
-            Date date = DATE_FORMAT.parse(dateString);
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(date);
-            
-            int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
-            // Open Monday to Friday (Calendar.MONDAY = 2, Calendar.FRIDAY = 6)
-            boolean isOpen = (dayOfWeek >= Calendar.MONDAY && dayOfWeek <= Calendar.FRIDAY);
+            DayOfWeek dayOfWeek = LocalDate.parse(dateString).getDayOfWeek();
+            // Open Monday to Friday
+            boolean isOpen = dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY;
             
             // Cache the result
             getCacheManager().cacheOpeningTimes(REYKJAVIK_MENSA_ID, dateString, isOpen);
             
             return isOpen;
-        } catch (ParseException e) {
+        } catch (DateTimeParseException e) {
             e.printStackTrace();
         }
         return false;
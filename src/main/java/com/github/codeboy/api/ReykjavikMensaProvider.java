@@ -0,0 +1,22 @@
+package com.github.codeboy.api;
+
+/**
+ * Provides the canteen of Reykjavik University.
+ */
+public class ReykjavikMensaProvider implements MensaProvider {
+
+    @Override
+    public String getName() {
+        return "reykjavik";
+    }
+
+    @Override
+    public int[] getCanteenIds() {
+        return new int[]{ReykjavikMensa.REYKJAVIK_MENSA_ID};
+    }
+
+    @Override
+    public Mensa createMensa(int id, Mensa original) {
+        return new ReykjavikMensa();
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Mensa;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A single file holding the canteen directory and the cached entries, so that a fresh container can start
+ * with a warm cache by reading one file sequentially instead of downloading the directory and the meals again.
+ * <p>
+ * The bundle is a gzip compressed stream of the canteens, in the format of the {@link CanteenSnapshot},
+ * followed by the key, expiration time, creation time, content hash and JSON of every entry.
+ * The CRC-32 of gzip is checked when the bundle is read, so a damaged bundle is rejected as a whole
+ * instead of loading some of its entries. It is written to a temporary file which is then moved into place.
+ *
+ * @see MensaCacheManager#exportBundle(Path, Collection)
+ * @see MensaCacheManager#importBundle(Path)
+ */
+public class CacheBundle {
+
+    private static final int MAGIC = 0x4D344A42; // "M4JB"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // far above the JSON of a week of meals, so that a damaged length fails instead of allocating gigabytes
+    private static final int MAX_ENTRY_SIZE = 16 * 1024 * 1024;
+
+    private final long creationTime;
+    private final List<Mensa> canteens;
+    private final Map<String, CacheEntry> entries;
+
+    private CacheBundle(long creationTime, List<Mensa> canteens, Map<String, CacheEntry> entries) {
+        this.creationTime = creationTime;
+        this.canteens = canteens;
+        this.entries = entries;
+    }
+
+    /**
+     * Write a bundle, replacing an existing bundle only once the new one is complete.
+     *
+     * @param file     the bundle file
+     * @param canteens the canteen directory
+     * @param entries  the cache entries by key
+     */
+    public static void write(Path file, Collection<? extends Mensa> canteens, Map<String, CacheEntry> entries) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null)
+            Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        Gson gson = new Gson();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                CanteenSnapshot.writeCanteens(out, canteens);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+                    CacheEntry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.getExpirationTime());
+                    out.writeLong(entry.getCreationTime());
+                    out.writeLong(entry.getContentHash());
+                    byte[] json = gson.toJson(entry.getData()).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(json.length);
+                    out.write(json);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read a whole bundle.
+     *
+     * @param file the bundle file
+     * @return the bundle
+     * @throws IOException if the bundle can't be read, has an unknown format or is damaged
+     */
+    public static CacheBundle read(Path file) throws IOException {
+        Gson gson = new Gson();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a cache bundle of this version: " + file);
+            long creationTime = in.readLong();
+            List<Mensa> canteens = CanteenSnapshot.readCanteens(in);
+            int count = in.readInt();
+            Map<String, CacheEntry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long expirationTime = in.readLong();
+                long entryCreationTime = in.readLong();
+                long contentHash = in.readLong();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_ENTRY_SIZE)
+                    throw new IOException("Damaged cache bundle " + file + ": entry of " + length + " bytes");
+                byte[] json = new byte[length];
+                in.readFully(json);
+                // decoded like the entries read from the cache files
+                Object data = gson.fromJson(new String(json, StandardCharsets.UTF_8), Object.class);
+                entries.put(key, new CacheEntry(data, expirationTime, entryCreationTime, contentHash));
+            }
+            // reading to the end makes gzip check the CRC-32 of the whole bundle
+            if (in.read() != -1)
+                throw new IOException("Unexpected data after the entries of " + file);
+            return new CacheBundle(creationTime, canteens, entries);
+        } catch (JsonParseException | IllegalArgumentException e) {
+            throw new IOException("Damaged cache bundle " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the time the bundle was written in milliseconds
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public List<Mensa> getCanteens() {
+        return Collections.unmodifiableList(canteens);
+    }
+
+    public Map<String, CacheEntry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+}
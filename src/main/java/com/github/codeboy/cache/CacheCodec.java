@@ -0,0 +1,271 @@
+package com.github.codeboy.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the stored form of cache entries.
+ * <p>
+ * Compressed content starts with a header of the magic bytes {@code 0x89 'M' '4' 'Z'}, the codec type and,
+ * for dictionary codecs, the id of the dictionary. The header can't be the start of JSON, so {@link #decode(byte[])}
+ * tells compressed content from the plain JSON written without a codec and returns the latter unchanged.
+ * <p>
+ * Deflate with a preset dictionary compresses the short entries of a cache much better than plain deflate,
+ * because the dictionary already holds the JSON keys and the recurring vocabulary of the meals.
+ * {@link #MEALS} uses a built-in dictionary, {@link #train(Collection, int)} builds one from stored entries.
+ * Content written with a trained dictionary can only be read by a codec with the same dictionary.
+ */
+public final class CacheCodec {
+
+    /**
+     * Stores the content unchanged.
+     */
+    public static final CacheCodec NONE = new CacheCodec(Type.NONE, Deflater.NO_COMPRESSION, null);
+    /**
+     * Plain deflate.
+     */
+    public static final CacheCodec DEFLATE = new CacheCodec(Type.DEFLATE, Deflater.DEFAULT_COMPRESSION, null);
+    /**
+     * Deflate with a built-in dictionary of the JSON of cached meals.
+     */
+    public static final CacheCodec MEALS = new CacheCodec(Type.DICTIONARY, Deflater.DEFAULT_COMPRESSION,
+            mealDictionary().getBytes(StandardCharsets.UTF_8));
+
+    private static final byte[] MAGIC = {(byte) 0x89, 'M', '4', 'Z'};
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+
+    private enum Type {
+        NONE, DEFLATE, DICTIONARY
+    }
+
+    private final Type type;
+    private final int level;
+    private final byte[] dictionary;
+    private final int dictionaryId;
+
+    private CacheCodec(Type type, int level, byte[] dictionary) {
+        this.type = type;
+        this.level = level;
+        this.dictionary = dictionary;
+        this.dictionaryId = dictionary == null ? 0 : checksum(dictionary);
+    }
+
+    /**
+     * @param level the deflate level, from 1 (fastest) to 9 (smallest)
+     */
+    public static CacheCodec deflate(int level) {
+        return new CacheCodec(Type.DEFLATE, level, null);
+    }
+
+    /**
+     * @param dictionary the preset dictionary, the most common strings at the end
+     */
+    public static CacheCodec deflate(byte[] dictionary) {
+        return new CacheCodec(Type.DICTIONARY, Deflater.DEFAULT_COMPRESSION, dictionary.clone());
+    }
+
+    /**
+     * Get a codec by name, for the system property {@code mensa4j.cache.codec}.
+     *
+     * @param name none, deflate or meals
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static CacheCodec forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "none":
+                return NONE;
+            case "deflate":
+                return DEFLATE;
+            case "meals":
+                return MEALS;
+            default:
+                throw new IllegalArgumentException("Unknown cache codec '" + name + "'");
+        }
+    }
+
+    /**
+     * Build a dictionary codec from samples of stored content, e.g. the files of a warm cache.
+     * The dictionary is made of the strings that save the most bytes over all samples.
+     *
+     * @param samples        the samples, plain or compressed by another codec
+     * @param dictionarySize the size of the dictionary in bytes, deflate uses at most 32 KB
+     * @return the codec, keep {@link #getDictionary()} to read the content written with it again
+     */
+    public static CacheCodec train(Collection<byte[]> samples, int dictionarySize) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (byte[] sample : samples) {
+            byte[] plain;
+            try {
+                plain = MEALS.decode(sample);
+            } catch (IOException e) {
+                continue;
+            }
+            // every line of the pretty printed JSON is a candidate
+            for (String line : new String(plain, StandardCharsets.UTF_8).split("\n")) {
+                counts.merge(line + "\n", 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(counts.entrySet());
+        // strings seen once don't recur, the others save their length every time they recur
+        ranked.removeIf(e -> e.getValue() < 2);
+        ranked.sort(Comparator.comparingLong(e -> -(long) e.getKey().length() * e.getValue()));
+        List<String> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> e : ranked) {
+            int length = e.getKey().getBytes(StandardCharsets.UTF_8).length;
+            if (size + length > dictionarySize)
+                continue;
+            chosen.add(e.getKey());
+            size += length;
+        }
+        // deflate finds the end of the dictionary fastest and with the shortest distances
+        Collections.reverse(chosen);
+        return deflate(String.join("", chosen).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return a copy of the dictionary, or null if the codec doesn't use one
+     */
+    public byte[] getDictionary() {
+        return dictionary == null ? null : dictionary.clone();
+    }
+
+    /**
+     * Compress content.
+     *
+     * @param content the plain content
+     * @return the content with the header of this codec, or the content itself for {@link #NONE}
+     */
+    public byte[] encode(byte[] content) {
+        if (type == Type.NONE)
+            return content;
+        Deflater deflater = new Deflater(level);
+        try {
+            if (dictionary != null)
+                deflater.setDictionary(dictionary);
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 16);
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(type.ordinal());
+            if (type == Type.DICTIONARY)
+                out.write(ByteBuffer.allocate(Integer.BYTES).putInt(dictionaryId).array(), 0, Integer.BYTES);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress content written by any codec. Content without the header is returned unchanged.
+     *
+     * @param content the stored content
+     * @return the plain content
+     * @throws IOException if the content is damaged or needs a dictionary other than the one of this codec
+     *                     and the built-in one
+     */
+    public byte[] decode(byte[] content) throws IOException {
+        if (!isEncoded(content))
+            return content;
+        int typeIndex = content[MAGIC.length];
+        if (typeIndex < 0 || typeIndex >= Type.values().length)
+            throw new IOException("Unknown cache codec " + typeIndex);
+        Type contentType = Type.values()[typeIndex];
+        int offset = HEADER_SIZE;
+        byte[] contentDictionary = null;
+        if (contentType == Type.DICTIONARY) {
+            if (content.length < offset + Integer.BYTES)
+                throw new IOException("Truncated cache content");
+            int id = ByteBuffer.wrap(content, offset, Integer.BYTES).getInt();
+            // the built-in dictionary is always known, other dictionaries only to their codec
+            if (dictionary != null && id == dictionaryId)
+                contentDictionary = dictionary;
+            else if (id == MEALS.dictionaryId)
+                contentDictionary = MEALS.dictionary;
+            else
+                throw new IOException("Cache content needs the dictionary " + Integer.toHexString(id));
+            offset += Integer.BYTES;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(content, offset, content.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0) {
+                    if (inflater.needsDictionary() && contentDictionary != null) {
+                        inflater.setDictionary(contentDictionary);
+                    } else if (inflater.needsInput() || inflater.needsDictionary()) {
+                        throw new IOException("Truncated cache content");
+                    }
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new IOException("Damaged cache content: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return whether the content starts with the header of a codec
+     */
+    public static boolean isEncoded(byte[] content) {
+        if (content.length < HEADER_SIZE)
+            return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (content[i] != MAGIC[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int checksum(byte[] dictionary) {
+        Adler32 adler = new Adler32();
+        adler.update(dictionary, 0, dictionary.length);
+        return (int) adler.getValue();
+    }
+
+    /**
+     * The pretty printed JSON of a cache entry holding meals, with the notes, categories and words that
+     * recur on the menus. Changing it makes the content written with {@link #MEALS} unreadable.
+     */
+    private static String mealDictionary() {
+        StringBuilder dictionary = new StringBuilder();
+        String[] words = {
+                "Sellerie", "Senf", "Sesamsamen", "Soja", "Lupinen", "Weichtiere", "Krebstiere", "Schalenfrüchte",
+                "Erdnüsse", "Eier", "Fisch", "Milch", "Gluten", "Weizen", "Schwefeldioxid", "Sulfite",
+                "mit Farbstoff", "mit Konservierungsstoff", "mit Antioxidationsmittel", "mit Geschmacksverstärker",
+                "geschwefelt", "geschwärzt", "gewachst", "mit Phosphat", "mit Süßungsmittel", "koffeinhaltig",
+                "Rindfleisch", "Schweinefleisch", "Geflügel", "Lamm", "Wild", "Alkohol", "Knoblauch",
+                "Empfehlung des Tages", "Klassiker", "Wok", "Pasta", "Pizza", "Suppe", "Eintopf", "Dessert",
+                "Hauptbeilagen", "Nebenbeilage", "Beilagen", "Salat", "Tagesgericht", "Aktion", "Grill",
+                "mit Pommes frites", "mit Kartoffeln", "mit Reis", "mit Nudeln", "mit Salat", "mit Gemüse",
+                "Sauce", "Kartoffelpüree", "Salzkartoffeln", "Bratkartoffeln", "Spätzle", "Schnitzel",
+                "Vegetarisch", "Vegan", "vegetarisch", "vegan",
+        };
+        for (String word : words) {
+            dictionary.append("        \"").append(word).append("\",\n");
+        }
+        dictionary.append("{\n  \"data\": [\n    {\n      \"name\": \"\",\n      \"category\": \"Tellergericht\",\n")
+                .append("      \"notes\": [\n        \"\"\n      ],\n      \"prices\": {\n")
+                .append("        \"students\": \"\",\n        \"employees\": \"\",\n        \"pupils\": null,\n")
+                .append("        \"others\": \"\"\n      },\n      \"flags\": 0\n    },\n    {\n")
+                .append("  ],\n  \"expirationTime\": 17,\n  \"creationTime\": 17,\n  \"contentHash\": ");
+        return dictionary.toString();
+    }
+}
@@ -1,44 +1,118 @@
 package com.github.codeboy.cache;
 
+import java.lang.reflect.Type;
+
 /**
  * A wrapper class for cache entries that includes metadata such as expiration time.
  * This class is used internally by cache implementations to track cache entry lifecycle.
  */
 public class CacheEntry {
+    /**
+     * Content hash of entries whose content is unknown. Such entries always count as changed.
+     */
+    public static final long NO_CONTENT_HASH = 0;
+
     private final Object data;
     private final long expirationTime;
     private final long creationTime;
-    
+    private final long contentHash;
+    // the data as last requested with a generic type, so it is converted once rather than on every get
+    private transient volatile Decoded decoded;
+
     public CacheEntry(Object data, long expirationTime) {
+        this(data, expirationTime, NO_CONTENT_HASH);
+    }
+
+    public CacheEntry(Object data, long expirationTime, long contentHash) {
+        this(data, expirationTime, System.currentTimeMillis(), contentHash);
+    }
+
+    CacheEntry(Object data, long expirationTime, long creationTime, long contentHash) {
         this.data = data;
         this.expirationTime = expirationTime;
-        this.creationTime = System.currentTimeMillis();
+        this.creationTime = creationTime;
+        this.contentHash = contentHash;
     }
-    
+
     public Object getData() {
         return data;
     }
-    
+
     public long getExpirationTime() {
         return expirationTime;
     }
-    
+
     public long getCreationTime() {
         return creationTime;
     }
-    
+
+    /**
+     * Get the hash of the content of this entry, used to detect unchanged content on refresh.
+     *
+     * @return the content hash, or {@link #NO_CONTENT_HASH} if unknown
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Check if this entry holds the same content as another entry, based on their content hashes.
+     *
+     * @param other The entry to compare with
+     * @return true if both entries have the same known content hash
+     */
+    public boolean hasSameContent(CacheEntry other) {
+        return other != null && contentHash != NO_CONTENT_HASH && contentHash == other.contentHash;
+    }
+
+    /**
+     * @return the data converted to the type by {@link #setDecoded(Type, Object)}, or null if it was converted
+     * to another type or not at all
+     */
+    Object getDecoded(Type type) {
+        Decoded decoded = this.decoded;
+        return decoded != null && decoded.type.equals(type) ? decoded.value : null;
+    }
+
+    /**
+     * Remember the data converted to a type. The value is handed out to every caller, so it must not be modified.
+     */
+    void setDecoded(Type type, Object value) {
+        decoded = new Decoded(type, value);
+    }
+
+    private static final class Decoded {
+        final Type type;
+        final Object value;
+
+        Decoded(Type type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Create a copy of this entry with a different expiration time.
+     *
+     * @param expirationTime The new expiration time in milliseconds
+     * @return the copy
+     */
+    public CacheEntry withExpirationTime(long expirationTime) {
+        return new CacheEntry(data, expirationTime, creationTime, contentHash);
+    }
+
     /**
      * Check if this cache entry has expired.
-     * 
+     *
      * @return true if the entry has expired, false otherwise
      */
     public boolean isExpired() {
         return System.currentTimeMillis() > expirationTime;
     }
-    
+
     /**
      * Get the remaining time until expiration in milliseconds.
-     * 
+     *
      * @return milliseconds until expiration, or 0 if already expired
      */
     public long getTimeUntilExpiration() {
@@ -0,0 +1,294 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal of the changes of a {@link FilePersistentCache}, see {@link FilePersistentCache#enableJournal(long)}.
+ * <p>
+ * Every record is its length, a CRC32 checksum and the record itself, so a record torn by a crash is recognized
+ * and ignored with everything after it. Threads append records and then wait in {@link #sync(long)} until their
+ * records are on disk. The first waiting thread writes the records of all threads and forces them to disk with
+ * a single fsync, while the others wait for it, so concurrent writers share one fsync per batch.
+ */
+final class CacheJournal implements Closeable {
+
+    /**
+     * The name of the journal in the cache directory. It doesn't end with the cache file extension,
+     * so loading the cache skips it.
+     */
+    static final String FILE_NAME = "cache.journal";
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+    private static final Histogram SYNCS = Metrics.getInstance().histogram("journal.sync");
+    private static final Counter RECORDS = Metrics.getInstance().counter("journal.records");
+
+    private final Path file;
+    private final Object lock = new Object();
+    private FileChannel channel;
+    private List<ByteBuffer> pending = new ArrayList<>();
+    // sequence numbers of the last appended and the last durable record
+    private long appended;
+    private long durable;
+    // the length of the durable records in the file
+    private long size;
+    private boolean writing;
+    private boolean closed;
+    private IOException failure;
+    private long failedFrom;
+    private long failedTo;
+
+    CacheJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = channel.size();
+        channel.position(size);
+    }
+
+    /**
+     * Append a record, which is not durable until {@link #sync(long)} returned for its sequence number.
+     *
+     * @param key     the key of the entry
+     * @param payload the stored form of the entry, or null if the entry was removed
+     * @return the sequence number of the record
+     */
+    long append(String key, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (payload == null ? 0 : payload.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(payload == null ? REMOVE : PUT);
+        out.writeUTF(key);
+        if (payload != null)
+            out.write(payload);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.limit() - RECORD_HEADER_SIZE;
+        if (length > MAX_RECORD_SIZE)
+            throw new IOException("Journal record of " + length + " bytes is too large");
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+        synchronized (lock) {
+            if (closed)
+                throw new IOException("The journal is closed");
+            pending.add(record);
+            return ++appended;
+        }
+    }
+
+    /**
+     * Wait until the record with the sequence number and all records before it are durable.
+     * Writes and forces the records of all threads if no other thread is doing it already.
+     *
+     * @throws IOException if writing the batch holding the record failed
+     */
+    void sync(long sequence) throws IOException {
+        List<ByteBuffer> batch;
+        long first, last;
+        synchronized (lock) {
+            while (true) {
+                if (failure != null && sequence >= failedFrom && sequence <= failedTo)
+                    throw new IOException("Failed to write the journal: " + failure.getMessage(), failure);
+                if (durable >= sequence)
+                    return;
+                if (!writing)
+                    break;
+                awaitWriter();
+            }
+            writing = true;
+            batch = pending;
+            pending = new ArrayList<>();
+            first = durable + 1;
+            last = appended;
+        }
+        long start = System.nanoTime();
+        long written = 0;
+        IOException error = null;
+        try {
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+            for (ByteBuffer buffer : buffers) {
+                written += buffer.remaining();
+            }
+            long remaining = written;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (lock) {
+            writing = false;
+            if (error == null) {
+                size += written;
+                SYNCS.recordSince(start);
+                RECORDS.add(batch.size());
+            } else {
+                failure = error;
+                failedFrom = first;
+                failedTo = last;
+                try {
+                    // drop the part of the batch that was written, the next batch starts after the durable records
+                    channel.truncate(size);
+                    channel.position(size);
+                } catch (IOException ignored) {
+                    // the records after the torn one are ignored on replay anyway
+                }
+            }
+            durable = last;
+            lock.notifyAll();
+        }
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Make all appended records durable.
+     *
+     * @return the length of the durable records, to {@link #discard(long)} them once they are checkpointed
+     */
+    long sync() throws IOException {
+        long sequence;
+        synchronized (lock) {
+            sequence = appended;
+            // records of a failed batch count as handled, their writers were told
+            if (sequence <= durable)
+                return size;
+        }
+        sync(sequence);
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Drop the records before a position returned by {@link #sync()}, keeping the records appended since.
+     */
+    void discard(long position) throws IOException {
+        synchronized (lock) {
+            while (writing) {
+                awaitWriter();
+            }
+            if (closed || position <= 0)
+                return;
+            long tail = size - position;
+            if (tail <= 0) {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                size = 0;
+                return;
+            }
+            // copy the newer records to a new journal, which replaces the old one in a single step
+            ByteBuffer records = ByteBuffer.allocate((int) tail);
+            while (records.hasRemaining()) {
+                if (channel.read(records, position + records.position()) < 0)
+                    throw new EOFException("The journal is shorter than expected");
+            }
+            records.flip();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (records.hasRemaining()) {
+                    out.write(records);
+                }
+                out.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            size = channel.size();
+            channel.position(size);
+        }
+    }
+
+    /**
+     * @return the length of the durable records
+     */
+    long size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    private void awaitWriter() throws IOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        }
+    }
+
+    /**
+     * Close the journal. Records that were appended but not synced are lost.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            while (writing) {
+                awaitWriter();
+            }
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Read the records of a journal, up to the first torn or damaged record.
+     *
+     * @param file     the journal
+     * @param consumer gets the key and the stored form of every record, which is null for a removal
+     * @return the number of records read
+     */
+    static int replay(Path file, BiConsumer<String, byte[]> consumer) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        int count = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + Integer.BYTES);
+            int offset = buffer.position() + RECORD_HEADER_SIZE;
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > content.length - offset)
+                break;
+            CRC32 crc = new CRC32();
+            crc.update(content, offset, length);
+            if ((int) crc.getValue() != checksum)
+                break;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, offset, length));
+            byte type = in.readByte();
+            String key = in.readUTF();
+            byte[] payload = null;
+            if (type == PUT) {
+                payload = new byte[in.available()];
+                in.readFully(payload);
+            } else if (type != REMOVE) {
+                break;
+            }
+            consumer.accept(key, payload);
+            count++;
+            buffer.position(offset + length);
+        }
+        if (buffer.hasRemaining())
+            System.err.println("Warning: Ignoring the last " + buffer.remaining() + " bytes of the cache journal " + file
+                    + ", they were not completely written");
+        return count;
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One tier of a {@link TieredPersistentCache}: a cache and how it takes part in reads and writes.
+ * <p>
+ * The statistics of a tier are also published as the counters {@code cache.tier.<name>.hits}, {@code .misses},
+ * {@code .writes}, {@code .promotions} and {@code .demotions} of the {@link Metrics}.
+ */
+public class CacheTier {
+
+    public enum WritePolicy {
+        /**
+         * Writes go to the tier right away.
+         */
+        THROUGH,
+        /**
+         * Writes are collected and written to the tier in batches, see {@link TieredPersistentCache#flush()}.
+         */
+        BACK,
+        /**
+         * The tier only gets entries by promotion or demotion, writes remove the old entry from it.
+         */
+        NONE
+    }
+
+    private final String name;
+    private final PersistentCache cache;
+    private WritePolicy writePolicy = WritePolicy.THROUGH;
+    private boolean promote = true;
+    private boolean demote;
+    // the entries waiting to be written back
+    final Map<String, CacheEntry> pending = new ConcurrentHashMap<>();
+    final Counter hits;
+    final Counter misses;
+    final Counter writes;
+    final Counter promotions;
+    final Counter demotions;
+
+    /**
+     * @param name  the name of the tier in the statistics, e.g. "heap"
+     * @param cache the cache of the tier
+     */
+    public CacheTier(String name, PersistentCache cache) {
+        this.name = name;
+        this.cache = cache;
+        Metrics metrics = Metrics.getInstance();
+        String prefix = "cache.tier." + name + ".";
+        hits = metrics.counter(prefix + "hits");
+        misses = metrics.counter(prefix + "misses");
+        writes = metrics.counter(prefix + "writes");
+        promotions = metrics.counter(prefix + "promotions");
+        demotions = metrics.counter(prefix + "demotions");
+    }
+
+    /**
+     * @param writePolicy how writes reach this tier, {@link WritePolicy#THROUGH} by default
+     */
+    public CacheTier writePolicy(WritePolicy writePolicy) {
+        this.writePolicy = writePolicy;
+        return this;
+    }
+
+    /**
+     * @param promote whether entries found in a lower tier are copied into this tier, true by default
+     */
+    public CacheTier promote(boolean promote) {
+        this.promote = promote;
+        return this;
+    }
+
+    /**
+     * @param demote whether the entries this tier drops to make room are moved to the next tier, false by default.
+     *               Only caches with a bounded capacity drop entries, like {@link HeapPersistentCache}.
+     */
+    public CacheTier demote(boolean demote) {
+        this.demote = demote;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PersistentCache getCache() {
+        return cache;
+    }
+
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    public boolean isPromote() {
+        return promote;
+    }
+
+    public boolean isDemote() {
+        return demote;
+    }
+
+    /**
+     * @return the number of reads answered by this tier
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of reads that reached this tier and were not answered by it
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries written to this tier, not counting promotions and demotions
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * @return the number of entries copied into this tier from a lower tier
+     */
+    public long getPromotions() {
+        return promotions.get();
+    }
+
+    /**
+     * @return the number of entries moved into this tier from the tier above
+     */
+    public long getDemotions() {
+        return demotions.get();
+    }
+
+    /**
+     * @return the number of entries waiting to be written back
+     */
+    public int getPendingWrites() {
+        return pending.size();
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + cache.getClass().getSimpleName() + ", write " + writePolicy.name().toLowerCase() + ")";
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compact binary snapshot of the canteen directory, so that the canteens are available
+ * right after startup without downloading every page of the OpenMensa API first.
+ * <p>
+ * The snapshot is a gzip compressed stream of the id, name, city, address and coordinates of every canteen.
+ * It is written to a temporary file which is then moved over the old snapshot, so a crash while writing
+ * never leaves a truncated snapshot behind.
+ */
+public class CanteenSnapshot {
+
+    /**
+     * The name of the snapshot file in the cache directory.
+     */
+    public static final String FILE_NAME = "canteens.snapshot";
+
+    private static final int MAGIC = 0x4D344A43; // "M4JC"
+    private static final int VERSION = 1;
+
+    private final long creationTime;
+    private final List<Mensa> canteens;
+
+    private CanteenSnapshot(long creationTime, List<Mensa> canteens) {
+        this.creationTime = creationTime;
+        this.canteens = canteens;
+    }
+
+    /**
+     * @return the time the snapshot was written, in milliseconds since the epoch
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return the canteens of the snapshot
+     */
+    public List<Mensa> getCanteens() {
+        return canteens;
+    }
+
+    /**
+     * Write a snapshot of canteens.
+     *
+     * @param file     the snapshot file
+     * @param canteens the canteens to write
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void write(Path file, Collection<? extends Mensa> canteens) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, FILE_NAME, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                writeCanteens(out, canteens);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read a snapshot of canteens.
+     *
+     * @param file the snapshot file
+     * @return the snapshot, or null if there is no snapshot or it can't be read
+     */
+    public static CanteenSnapshot read(Path file) {
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Warning: Ignoring canteen snapshot of an unknown format: " + file);
+                return null;
+            }
+            long creationTime = in.readLong();
+            return new CanteenSnapshot(creationTime, readCanteens(in));
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to read canteen snapshot " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write canteens in the format of the snapshot, also used by {@link CacheBundle}.
+     */
+    static void writeCanteens(DataOutputStream out, Collection<? extends Mensa> canteens) throws IOException {
+        out.writeInt(canteens.size());
+        for (Mensa mensa : canteens) {
+            out.writeInt(mensa.getId());
+            writeString(out, mensa.getName());
+            writeString(out, mensa.getCity());
+            writeString(out, mensa.getAddress());
+            List<Double> coordinates = mensa.getCoordinates();
+            if (coordinates == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(coordinates.size());
+                for (Double coordinate : coordinates) {
+                    out.writeDouble(coordinate == null ? Double.NaN : coordinate);
+                }
+            }
+        }
+    }
+
+    static List<Mensa> readCanteens(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException("Invalid canteen count " + count);
+        // a damaged count runs into the end of the stream instead of allocating a huge list
+        List<Mensa> canteens = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            String name = readString(in);
+            String city = readString(in);
+            String address = readString(in);
+            int coordinateCount = in.readInt();
+            List<Double> coordinates = null;
+            if (coordinateCount >= 0) {
+                coordinates = new ArrayList<>(Math.min(coordinateCount, 4));
+                for (int j = 0; j < coordinateCount; j++) {
+                    double coordinate = in.readDouble();
+                    coordinates.add(Double.isNaN(coordinate) ? null : coordinate);
+                }
+            }
+            canteens.add(new MensaImpl(id, name, city, address, coordinates));
+        }
+        return canteens;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.codeboy.cache;
+
+import com.google.gson.Gson;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary form of a cache entry used by the stores that keep entries as bytes:
+ * the expiration time, creation time and content hash in front of the JSON of the data.
+ * The metadata can be read without parsing the JSON.
+ */
+final class EncodedEntry {
+
+    static final int HEADER_SIZE = 3 * Long.BYTES;
+
+    private EncodedEntry() {
+    }
+
+    static byte[] encode(Gson gson, CacheEntry entry) {
+        return encode(gson, entry.getData(), entry.getExpirationTime(), entry.getCreationTime(), entry.getContentHash());
+    }
+
+    static byte[] encode(Gson gson, Object data, long expirationTime, long creationTime, long contentHash) {
+        byte[] json = gson.toJson(data).getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(HEADER_SIZE + json.length)
+                .putLong(expirationTime)
+                .putLong(creationTime)
+                .putLong(contentHash)
+                .put(json)
+                .array();
+    }
+
+    /**
+     * Decode the data as generic JSON values, like the entries read from the cache files.
+     */
+    static CacheEntry decode(Gson gson, byte[] value) {
+        Object data = gson.fromJson(getJson(value), Object.class);
+        return new CacheEntry(data, getExpirationTime(value), getCreationTime(value), getContentHash(value));
+    }
+
+    static byte[] withExpirationTime(byte[] value, long expirationTime) {
+        byte[] copy = value.clone();
+        ByteBuffer.wrap(copy).putLong(0, expirationTime);
+        return copy;
+    }
+
+    static long getExpirationTime(byte[] value) {
+        return ByteBuffer.wrap(value).getLong(0);
+    }
+
+    static long getCreationTime(byte[] value) {
+        return ByteBuffer.wrap(value).getLong(Long.BYTES);
+    }
+
+    static long getContentHash(byte[] value) {
+        return ByteBuffer.wrap(value).getLong(2 * Long.BYTES);
+    }
+
+    static boolean isExpired(byte[] value) {
+        return System.currentTimeMillis() > getExpirationTime(value);
+    }
+
+    static String getJson(byte[] value) {
+        return new String(value, HEADER_SIZE, value.length - HEADER_SIZE, StandardCharsets.UTF_8);
+    }
+}
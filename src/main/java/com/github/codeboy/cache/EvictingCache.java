@@ -0,0 +1,15 @@
+package com.github.codeboy.cache;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A cache with a bounded capacity that drops its least recently used entries,
+ * so that a {@link TieredPersistentCache} can demote them to the next tier.
+ */
+interface EvictingCache {
+
+    /**
+     * @param listener called with the key and entry of every entry dropped to make room, not for expired entries
+     */
+    void setEvictionListener(BiConsumer<String, CacheEntry> listener);
+}
@@ -1,5 +1,11 @@
 package com.github.codeboy.cache;
 
+import com.github.codeboy.metrics.CacheEvent;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.DiskEvent;
+import com.github.codeboy.metrics.Events;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
@@ -7,11 +13,24 @@ import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * A file-based cache implementation that persists data to JSON files.
@@ -19,24 +38,71 @@ import java.util.concurrent.ConcurrentHashMap;
  * 
  * The cache stores data in a directory structure with individual JSON files for each cache entry.
  * Each file contains both the data and metadata (expiration time, creation time).
+ * Files are written to a temporary file first and then renamed, so a reader never sees a partly written entry.
+ * <p>
+ * Several processes can share one cache directory in shared mode, see {@link #FilePersistentCache(String, boolean)}.
+ * A single process can write its changes to a journal instead, see {@link #enableJournal(long)}.
  */
-public class FilePersistentCache implements PersistentCache {
+public class FilePersistentCache implements PersistentCache, Closeable {
     
     private static final String CACHE_FILE_EXTENSION = ".cache.json";
     private static final long DEFAULT_EXPIRATION_HOURS = 24;
     private static final long DEFAULT_EXPIRATION_MILLIS = DEFAULT_EXPIRATION_HOURS * 60 * 60 * 1000;
+    private static final Histogram DISK_READS = Metrics.getInstance().histogram("disk.read");
+    private static final Histogram DISK_WRITES = Metrics.getInstance().histogram("disk.write");
+    private static final Counter DISK_ERRORS = Metrics.getInstance().counter("disk.errors");
+    private static final Counter EVICTIONS = Metrics.getInstance().counter("cache.evictions");
+    private static final Counter REFRESHES = Metrics.getInstance().counter("cache.refreshes");
+    private static final Counter CHECKPOINTS = Metrics.getInstance().counter("journal.checkpoints");
+    /**
+     * The time between two checkpoints of the journal if it is enabled with the system property
+     * {@code mensa4j.cache.journal}.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 30_000;
+    // a larger journal is checkpointed right away
+    private static final long MAX_JOURNAL_SIZE = 8 << 20;
+    /**
+     * The file in the cache directory counting the changes of all processes sharing the directory.
+     */
+    public static final String GENERATION_FILE = "cache.generation";
+    private static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 1000;
+    // file locks are held by the whole JVM, so caches of one process must not lock the generation file at once
+    private static final Object GENERATION_LOCK = new Object();
     
     private final Path cacheDirectory;
     private final Gson gson;
     private final Map<String, CacheEntry> memoryCache;
     private boolean diskCache = true;
+    private final boolean shared;
+    // the size and modification time of the files the entries were loaded from, only kept in shared mode
+    private final Map<String, FileStamp> fileStamps = new ConcurrentHashMap<>();
+    private long knownGeneration;
+    private volatile long nextGenerationCheck;
+    private volatile long refreshIntervalMillis = DEFAULT_REFRESH_INTERVAL_MILLIS;
+    private volatile CacheCodec codec;
+    private volatile CacheJournal journal;
+    // the keys changed since the last checkpoint of the journal
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Object checkpointLock = new Object();
+    private ScheduledExecutorService checkpointer;
+    private volatile boolean checkpointScheduled;
+    // compact, the journal is read back by this class only
+    private final Gson journalGson = new Gson();
     
     /**
      * Create a new FilePersistentCache with the default cache directory.
      * The cache directory will be created in the user's home directory under ".mensa4j/cache".
+     * Set the system property {@code mensa4j.cache.shared} to true if several processes use it at the same time,
+     * or {@code mensa4j.cache.journal} to true to write changes to a journal, see {@link #enableJournal(long)}.
      */
     public FilePersistentCache() {
-        this(getDefaultCacheDirectory());
+        this(getDefaultCacheDirectory(), Boolean.getBoolean("mensa4j.cache.shared"));
+        if (Boolean.getBoolean("mensa4j.cache.journal")) {
+            if (shared)
+                System.err.println("Warning: The cache journal can't be used with a shared cache directory, ignoring it");
+            else
+                enableJournal(DEFAULT_CHECKPOINT_INTERVAL_MILLIS);
+        }
     }
     
     /**
@@ -45,7 +111,36 @@ public class FilePersistentCache implements PersistentCache {
      * @param cacheDirectory The directory where cache files will be stored
      */
     public FilePersistentCache(String cacheDirectory) {
+        this(cacheDirectory, false);
+    }
+
+    /**
+     * Create a new FilePersistentCache with a specific cache directory, optionally shared with other processes.
+     * <p>
+     * In shared mode every change increments a counter in the {@value #GENERATION_FILE} file, under a file lock.
+     * Reads check the counter at most once per refresh interval and load the entries the other processes changed,
+     * and a miss looks for a file another process wrote in the meantime, so that processes reuse each other's
+     * fetches.
+     *
+     * @param cacheDirectory The directory where cache files will be stored
+     * @param shared         whether other processes use the directory at the same time
+     */
+    public FilePersistentCache(String cacheDirectory, boolean shared) {
+        this(cacheDirectory, shared, getDefaultCodec());
+    }
+
+    /**
+     * Create a new FilePersistentCache writing its files with a codec, e.g. one with a trained dictionary
+     * that is needed to load the existing files.
+     *
+     * @param cacheDirectory The directory where cache files will be stored
+     * @param shared         whether other processes use the directory at the same time
+     * @param codec          the codec of the cache files, see {@link #setCodec(CacheCodec)}
+     */
+    public FilePersistentCache(String cacheDirectory, boolean shared, CacheCodec codec) {
         this.cacheDirectory = Paths.get(cacheDirectory);
+        this.shared = shared;
+        this.codec = codec;
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
                 .create();
@@ -55,8 +150,13 @@ public class FilePersistentCache implements PersistentCache {
         createCacheDirectory();
         
         // Load existing cache entries from disk
+        if (diskCache && shared)
+            knownGeneration = readGeneration();
         if(diskCache)
             loadExistingCache();
+        // a journal left behind by a crash holds the latest changes
+        if (diskCache && !shared)
+            recoverJournal();
     }
     
     /**
@@ -64,6 +164,11 @@ public class FilePersistentCache implements PersistentCache {
      * On Android, this should be in the app's internal storage.
      * On desktop systems, this will be in the user's home directory.
      */
+    private static CacheCodec getDefaultCodec() {
+        String codec = System.getProperty("mensa4j.cache.codec");
+        return codec == null ? CacheCodec.NONE : CacheCodec.forName(codec);
+    }
+    
     private static String getDefaultCacheDirectory() {
         String userHome = System.getProperty("user.home");
         if (userHome == null) {
@@ -101,19 +206,28 @@ public class FilePersistentCache implements PersistentCache {
     
     private void loadCacheEntryFromFile(Path filePath) {
         try {
-            String content = new String(Files.readAllBytes(filePath));
+            FileStamp stamp = shared ? FileStamp.of(filePath) : null;
+            long start = System.nanoTime();
+            String content = new String(codec.decode(readFile(filePath)), StandardCharsets.UTF_8);
+            DISK_READS.recordSince(start);
             Type type = new TypeToken<CacheEntry>(){}.getType();
             CacheEntry entry = gson.fromJson(content, type);
             
             if (entry != null && !entry.isExpired()) {
                 String key = extractKeyFromFileName(filePath.getFileName().toString());
                 memoryCache.put(key, entry);
+                if (stamp != null)
+                    fileStamps.put(key, stamp);
             } else if (entry != null && entry.isExpired()) {
                 // Remove expired file
-                Files.deleteIfExists(filePath);
+                deleteFile(filePath);
+                evicted(extractKeyFromFileName(filePath.getFileName().toString()));
             }
+        } catch (NoSuchFileException e) {
+            // removed by another process in the meantime
         } catch (IOException | JsonParseException e) {
             System.err.println("Warning: Failed to load cache entry from " + filePath + ": " + e.getMessage());
+            DISK_ERRORS.increment();
             // Delete corrupted file
             try {
                 Files.deleteIfExists(filePath);
@@ -123,6 +237,73 @@ public class FilePersistentCache implements PersistentCache {
         }
     }
     
+    private static byte[] readFile(Path filePath) throws IOException {
+        DiskEvent event = Events.ENABLED ? DiskEvent.start() : null;
+        byte[] content = null;
+        try {
+            content = Files.readAllBytes(filePath);
+            return content;
+        } finally {
+            if (event != null)
+                event.finish(DiskEvent.READ, filePath, content == null ? 0 : content.length, content == null);
+        }
+    }
+
+    private static void writeFile(Path filePath, byte[] content) throws IOException {
+        writeFile(filePath, content, false);
+    }
+
+    /**
+     * @param force whether to force the content to disk before it replaces the file
+     */
+    private static void writeFile(Path filePath, byte[] content, boolean force) throws IOException {
+        DiskEvent event = Events.ENABLED ? DiskEvent.start() : null;
+        boolean failed = true;
+        // the temporary file doesn't end with the cache file extension, so loading the cache skips it
+        Path temp = Files.createTempFile(filePath.getParent(), filePath.getFileName().toString(), ".tmp");
+        try {
+            if (force) {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(content);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+            } else {
+                Files.write(temp, content);
+            }
+            try {
+                Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            failed = false;
+        } finally {
+            Files.deleteIfExists(temp);
+            if (event != null)
+                event.finish(DiskEvent.WRITE, filePath, content.length, failed);
+        }
+    }
+
+    private static void deleteFile(Path filePath) throws IOException {
+        DiskEvent event = Events.ENABLED ? DiskEvent.start() : null;
+        boolean failed = true;
+        try {
+            Files.deleteIfExists(filePath);
+            failed = false;
+        } finally {
+            if (event != null)
+                event.finish(DiskEvent.DELETE, filePath, 0, failed);
+        }
+    }
+
+    private static void evicted(String key) {
+        EVICTIONS.increment();
+        if (Events.ENABLED)
+            CacheEvent.evicted(key);
+    }
+    
     private String extractKeyFromFileName(String fileName) {
         return fileName.substring(0, fileName.length() - CACHE_FILE_EXTENSION.length());
     }
@@ -143,19 +324,135 @@ public class FilePersistentCache implements PersistentCache {
             throw new IllegalArgumentException("Key and value cannot be null");
         }
         
+        CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
         CacheEntry entry = new CacheEntry(value, expirationTimeMillis);
         memoryCache.put(key, entry);
-        
-        // Persist to disk
+        CacheJournal journal = this.journal;
+        if (journal != null)
+            writeToJournal(journal, Collections.singletonMap(key, entry));
+        else
+            writeToDisk(key, entry);
+        if (event != null)
+            event.finish(CacheEvent.PUT, key, false);
+    }
+    
+    private void writeToDisk(String key, CacheEntry entry) {
         try {
+            long start = System.nanoTime();
             Path filePath = getCacheFilePath(key);
             String json = gson.toJson(entry);
-            Files.write(filePath, json.getBytes());
+            writeFile(filePath, codec.encode(json.getBytes(StandardCharsets.UTF_8)));
+            DISK_WRITES.recordSince(start);
+            if (shared) {
+                fileStamps.put(key, FileStamp.of(filePath));
+                incrementGeneration();
+            }
         } catch (IOException e) {
             System.err.println("Warning: Failed to persist cache entry to disk: " + e.getMessage());
+            DISK_ERRORS.increment();
             // Continue operation even if disk write fails - we still have it in memory
         }
     }
+
+    /**
+     * Append the entries to the journal and wait until they are durable, together with the entries other
+     * threads append in the meantime. Writes the files instead if the journal fails.
+     */
+    private void writeToJournal(CacheJournal journal, Map<String, CacheEntry> entries) {
+        try {
+            long sequence = 0;
+            for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+                // marked before the record is appended, so a checkpoint never drops a record of a key it didn't write
+                dirty.add(e.getKey());
+                sequence = journal.append(e.getKey(), journalGson.toJson(e.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            journal.sync(sequence);
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to write cache entries to the journal: " + e.getMessage());
+            DISK_ERRORS.increment();
+            for (Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+                writeToDisk(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        if (journal.size() > MAX_JOURNAL_SIZE)
+            scheduleCheckpoint();
+    }
+    
+    /**
+     * Store several entries at once. Entries with the same content as the stored entry
+     * only get their expiration extended in memory, the changed entries are written to disk
+     * after all entries have been compared.
+     */
+    @Override
+    public Set<String> putAll(Map<String, CacheEntry> entries) {
+        Map<String, CacheEntry> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+            String key = e.getKey();
+            CacheEntry entry = e.getValue();
+            if (key == null || entry == null || entry.getData() == null) {
+                throw new IllegalArgumentException("Key and value cannot be null");
+            }
+            
+            CacheEntry existing = memoryCache.get(key);
+            if (existing != null && !existing.isExpired() && existing.hasSameContent(entry)) {
+                memoryCache.put(key, existing.withExpirationTime(entry.getExpirationTime()));
+            } else {
+                memoryCache.put(key, entry);
+                changed.put(key, entry);
+            }
+        }
+        
+        CacheJournal journal = this.journal;
+        if (journal != null && !changed.isEmpty()) {
+            // the whole batch shares one fsync
+            CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
+            writeToJournal(journal, changed);
+            if (event != null)
+                event.finish(CacheEvent.PUT, changed.keySet().iterator().next(), false);
+            return changed.keySet();
+        }
+        for (Map.Entry<String, CacheEntry> e : changed.entrySet()) {
+            CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
+            writeToDisk(e.getKey(), e.getValue());
+            if (event != null)
+                event.finish(CacheEvent.PUT, e.getKey(), false);
+        }
+        return changed.keySet();
+    }
+    
+    /**
+     * Load entries in bulk. Unless the cache is shared the entries are only kept in memory, the
+     * file they come from is their persistent copy. Expired entries are skipped.
+     */
+    @Override
+    public int importEntries(Map<String, CacheEntry> entries) {
+        Map<String, CacheEntry> imported = new LinkedHashMap<>();
+        for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+            CacheEntry entry = e.getValue();
+            if (e.getKey() == null || entry == null || entry.getData() == null || entry.isExpired())
+                continue;
+            CacheEntry existing = memoryCache.get(e.getKey());
+            if (existing != null && !existing.isExpired() && existing.getCreationTime() > entry.getCreationTime())
+                continue;
+            imported.put(e.getKey(), entry);
+        }
+        if (shared) {
+            // other processes only see what is on disk
+            putAll(imported);
+        } else {
+            memoryCache.putAll(imported);
+        }
+        return imported.size();
+    }
+    
+    @Override
+    public CacheEntry getEntry(String key) {
+        if (key == null)
+            return null;
+        CacheEntry entry = lookup(key);
+        return entry == null || entry.isExpired() ? null : entry;
+    }
     
     @Override
     public <T> void put(String key, T value) {
@@ -164,19 +461,28 @@ public class FilePersistentCache implements PersistentCache {
     }
     
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> clazz) {
+        CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
+        T value = getEntry(key, clazz);
+        if (event != null)
+            event.finish(CacheEvent.GET, key, value != null);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getEntry(String key, Class<T> clazz) {
         if (key == null) {
             return null;
         }
         
-        CacheEntry entry = memoryCache.get(key);
+        CacheEntry entry = lookup(key);
         if (entry == null) {
             return null;
         }
         
         if (entry.isExpired()) {
             remove(key);
+            evicted(key);
             return null;
         }
         
@@ -203,35 +509,75 @@ public class FilePersistentCache implements PersistentCache {
     
     @Override
     public <T> T get(String key, java.lang.reflect.Type type) {
+        CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
+        T value = getEntry(key, type);
+        if (event != null)
+            event.finish(CacheEvent.GET, key, value != null);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getEntry(String key, java.lang.reflect.Type type) {
         if (key == null) {
             return null;
         }
         
-        CacheEntry entry = memoryCache.get(key);
+        CacheEntry entry = lookup(key);
         if (entry == null) {
             return null;
         }
         
         if (entry.isExpired()) {
             remove(key);
+            evicted(key);
             return null;
         }
         
         try {
-            Object data = entry.getData();
-            if (data == null) {
-                return null;
-            }
-            
-            // For generic types, we need to use Gson to properly deserialize
-            String json = gson.toJson(data);
-            return gson.fromJson(json, type);
+            return decode(entry, type);
         } catch (Exception e) {
             System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
             remove(key);
             return null;
         }
     }
+
+    @Override
+    public <T> T peek(String key, java.lang.reflect.Type type) {
+        if (key == null) {
+            return null;
+        }
+        CacheEntry entry = lookup(key);
+        if (entry == null || entry.isExpired()) {
+            return null;
+        }
+        try {
+            return decode(entry, type);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T decode(CacheEntry entry, java.lang.reflect.Type type) {
+        Object data = entry.getData();
+        if (data == null) {
+            return null;
+        }
+        
+        Object decoded = entry.getDecoded(type);
+        if (decoded != null)
+            return (T) decoded;
+        // For generic types, we need to use Gson to properly deserialize
+        String json = gson.toJson(data);
+        T value = gson.fromJson(json, type);
+        // the converted value is shared by all later gets of the entry
+        if (value instanceof List)
+            value = (T) Collections.unmodifiableList((List<?>) value);
+        entry.setDecoded(type, value);
+        return value;
+    }
     
     @Override
     public boolean contains(String key) {
@@ -239,13 +585,14 @@ public class FilePersistentCache implements PersistentCache {
             return false;
         }
         
-        CacheEntry entry = memoryCache.get(key);
+        CacheEntry entry = lookup(key);
         if (entry == null) {
             return false;
         }
         
         if (entry.isExpired()) {
             remove(key);
+            evicted(key);
             return false;
         }
         
@@ -262,8 +609,16 @@ public class FilePersistentCache implements PersistentCache {
         
         // Remove from disk
         try {
+            CacheJournal journal = this.journal;
+            if (journal != null) {
+                // otherwise a record of an earlier put would bring it back after a crash
+                dirty.add(key);
+                journal.sync(journal.append(key, null));
+            }
             Path filePath = getCacheFilePath(key);
-            Files.deleteIfExists(filePath);
+            deleteFile(filePath);
+            if (shared && fileStamps.remove(key) != null)
+                incrementGeneration();
         } catch (IOException e) {
             System.err.println("Warning: Failed to remove cache file: " + e.getMessage());
         }
@@ -284,14 +639,18 @@ public class FilePersistentCache implements PersistentCache {
                 // Remove from disk
                 try {
                     Path filePath = getCacheFilePath(entry.getKey());
-                    Files.deleteIfExists(filePath);
+                    deleteFile(filePath);
                 } catch (IOException e) {
                     System.err.println("Warning: Failed to remove expired cache file: " + e.getMessage());
                 }
                 
                 removedCount++;
+                evicted(entry.getKey());
+                fileStamps.remove(entry.getKey());
             }
         }
+        if (shared && removedCount > 0)
+            incrementGeneration();
         
         return removedCount;
     }
@@ -306,20 +665,27 @@ public class FilePersistentCache implements PersistentCache {
         for (String key : keys) {
             try {
                 Path filePath = getCacheFilePath(key);
-                Files.deleteIfExists(filePath);
+                deleteFile(filePath);
             } catch (IOException e) {
                 System.err.println("Warning: Failed to remove cache file: " + e.getMessage());
             }
         }
+        fileStamps.clear();
+        if (shared && !keys.isEmpty())
+            incrementGeneration();
+        // drops the records of the removed entries from the journal
+        checkpoint();
     }
     
     @Override
     public List<String> getAllKeys() {
+        checkForChanges();
         return new ArrayList<>(memoryCache.keySet());
     }
     
     @Override
     public int size() {
+        checkForChanges();
         return memoryCache.size();
     }
     
@@ -332,6 +698,352 @@ public class FilePersistentCache implements PersistentCache {
         return cacheDirectory;
     }
     
+    /**
+     * Set the codec the cache files are written with, by default the one named by the system property
+     * {@code mensa4j.cache.codec}, or {@link CacheCodec#NONE}. Files written with another codec or without one
+     * stay readable, except for files written with a trained dictionary other than the one of the current codec.
+     * All processes sharing the directory should use the same codec.
+     * 
+     * @param codec The codec for the files written from now on
+     */
+    public void setCodec(CacheCodec codec) {
+        this.codec = codec;
+    }
+    
+    public CacheCodec getCodec() {
+        return codec;
+    }
+    
+    /**
+     * @return whether other processes may use the cache directory at the same time
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Set how often reads check for changes of other processes in shared mode.
+     *
+     * @param refreshIntervalMillis the minimum time between two checks, 0 to check on every read
+     */
+    public void setRefreshInterval(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.nextGenerationCheck = 0;
+    }
+
+    /**
+     * Load the entries other processes changed since this cache last looked, regardless of the refresh interval.
+     * Does nothing unless the cache is shared.
+     *
+     * @return the number of entries that were loaded or dropped
+     */
+    public int refresh() {
+        if (!shared || !diskCache)
+            return 0;
+        long generation = readGeneration();
+        synchronized (this) {
+            knownGeneration = generation;
+        }
+        return rescan();
+    }
+
+    private CacheEntry lookup(String key) {
+        checkForChanges();
+        CacheEntry entry = memoryCache.get(key);
+        if (entry == null && shared && diskCache) {
+            // another process may have written it since the last check
+            Path filePath = getCacheFilePath(key);
+            if (Files.exists(filePath)) {
+                loadCacheEntryFromFile(filePath);
+                entry = memoryCache.get(key);
+            }
+        }
+        return entry;
+    }
+
+    private void checkForChanges() {
+        if (!shared || !diskCache)
+            return;
+        long now = System.currentTimeMillis();
+        if (now < nextGenerationCheck)
+            return;
+        nextGenerationCheck = now + refreshIntervalMillis;
+        long generation = readGeneration();
+        synchronized (this) {
+            if (generation == knownGeneration)
+                return;
+            knownGeneration = generation;
+        }
+        rescan();
+    }
+
+    /**
+     * Load the cache files that changed since they were loaded, and drop the entries whose files are gone.
+     */
+    private synchronized int rescan() {
+        REFRESHES.increment();
+        Set<String> present = new HashSet<>();
+        int changed = 0;
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path filePath : (Iterable<Path>) files::iterator) {
+                String fileName = filePath.getFileName().toString();
+                if (!fileName.endsWith(CACHE_FILE_EXTENSION))
+                    continue;
+                String key = extractKeyFromFileName(fileName);
+                FileStamp stamp;
+                try {
+                    stamp = FileStamp.of(filePath);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                present.add(key);
+                if (!stamp.equals(fileStamps.get(key))) {
+                    loadCacheEntryFromFile(filePath);
+                    changed++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Warning: Failed to check the cache directory for changes: " + e.getMessage());
+            return changed;
+        }
+        for (Iterator<String> it = fileStamps.keySet().iterator(); it.hasNext(); ) {
+            String key = it.next();
+            if (!present.contains(key)) {
+                it.remove();
+                memoryCache.remove(key);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private Path getGenerationFile() {
+        return cacheDirectory.resolve(GENERATION_FILE);
+    }
+
+    private long readGeneration() {
+        synchronized (GENERATION_LOCK) {
+            try (FileChannel channel = FileChannel.open(getGenerationFile(), StandardOpenOption.READ)) {
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                try {
+                    return readGeneration(channel);
+                } finally {
+                    lock.release();
+                }
+            } catch (NoSuchFileException e) {
+                return 0;
+            } catch (IOException e) {
+                System.err.println("Warning: Failed to read the cache generation: " + e.getMessage());
+                DISK_ERRORS.increment();
+                return -1;
+            }
+        }
+    }
+
+    private static long readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0)
+                return 0;
+        }
+        return buffer.getLong(0);
+    }
+
+    /**
+     * Tell the other processes sharing the directory that an entry changed.
+     */
+    private void incrementGeneration() {
+        synchronized (GENERATION_LOCK) {
+            try (FileChannel channel = FileChannel.open(getGenerationFile(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                long generation;
+                try {
+                    generation = readGeneration(channel) + 1;
+                    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, generation);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, buffer.position());
+                    }
+                } finally {
+                    lock.release();
+                }
+                synchronized (this) {
+                    // only skip the next check if no other process changed anything in between
+                    if (generation == knownGeneration + 1)
+                        knownGeneration = generation;
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Failed to update the cache generation: " + e.getMessage());
+                DISK_ERRORS.increment();
+            }
+        }
+    }
+
+    /**
+     * Write changes to a journal in the cache directory instead of replacing the file of every changed entry.
+     * <p>
+     * A put returns once its entry is in the journal and forced to disk, so a crash can't lose it or leave
+     * a partly written entry behind. Puts of several threads at once, and the entries of one {@link #putAll(Map)},
+     * share a single fsync. The changed entries are written to their files and dropped from the journal
+     * by periodic checkpoints, see {@link #checkpoint()}. A journal left behind by a crash is applied when
+     * the cache is created.
+     * <p>
+     * The files lag behind the journal until the next checkpoint, so the journal can't be used in shared mode.
+     *
+     * @param checkpointIntervalMillis the time between two checkpoints
+     * @throws IllegalStateException if the cache is shared
+     */
+    public synchronized void enableJournal(long checkpointIntervalMillis) {
+        if (shared)
+            throw new IllegalStateException("The cache journal can't be used with a shared cache directory");
+        if (journal != null || !diskCache)
+            return;
+        try {
+            journal = new CacheJournal(getJournalFile());
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to open the cache journal, writing cache files directly: " + e.getMessage());
+            DISK_ERRORS.increment();
+            return;
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mensa4j-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, checkpointIntervalMillis, checkpointIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether changes are written to a journal, see {@link #enableJournal(long)}
+     */
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Write the entries changed since the last checkpoint to their files and drop them from the journal.
+     * Does nothing unless the journal is enabled.
+     *
+     * @return the number of files that were written or deleted
+     */
+    public int checkpoint() {
+        CacheJournal journal = this.journal;
+        if (journal == null)
+            return 0;
+        synchronized (checkpointLock) {
+            checkpointScheduled = false;
+            try {
+                // every record before the mark belongs to a key that is dirty by now
+                long mark = journal.sync();
+                int written = writeDirtyEntries();
+                journal.discard(mark);
+                CHECKPOINTS.increment();
+                return written;
+            } catch (IOException e) {
+                System.err.println("Warning: Failed to checkpoint the cache journal: " + e.getMessage());
+                DISK_ERRORS.increment();
+                return 0;
+            }
+        }
+    }
+
+    private void scheduleCheckpoint() {
+        if (checkpointScheduled)
+            return;
+        checkpointScheduled = true;
+        ScheduledExecutorService checkpointer = this.checkpointer;
+        if (checkpointer != null && !checkpointer.isShutdown())
+            checkpointer.execute(this::checkpoint);
+    }
+
+    /**
+     * Write the current entries of the dirty keys to their files, or delete the files of the removed ones,
+     * and force them to disk.
+     */
+    private int writeDirtyEntries() throws IOException {
+        int count = 0;
+        for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+            String key = it.next();
+            it.remove();
+            CacheEntry entry = memoryCache.get(key);
+            Path filePath = getCacheFilePath(key);
+            try {
+                long start = System.nanoTime();
+                if (entry == null) {
+                    deleteFile(filePath);
+                } else {
+                    writeFile(filePath, codec.encode(gson.toJson(entry).getBytes(StandardCharsets.UTF_8)), true);
+                    DISK_WRITES.recordSince(start);
+                }
+            } catch (IOException e) {
+                dirty.add(key);
+                throw e;
+            }
+            count++;
+        }
+        if (count > 0) {
+            // makes the renames durable, not every platform can open a directory
+            try (FileChannel directory = FileChannel.open(cacheDirectory, StandardOpenOption.READ)) {
+                directory.force(true);
+            } catch (IOException ignored) {
+            }
+        }
+        return count;
+    }
+
+    private Path getJournalFile() {
+        return cacheDirectory.resolve(CacheJournal.FILE_NAME);
+    }
+
+    /**
+     * Apply a journal left behind by a crash, write the entries to their files and delete it.
+     */
+    private void recoverJournal() {
+        Path journalFile = getJournalFile();
+        if (!Files.exists(journalFile))
+            return;
+        try {
+            int records = CacheJournal.replay(journalFile, (key, payload) -> {
+                CacheEntry entry = payload == null ? null
+                        : gson.fromJson(new String(payload, StandardCharsets.UTF_8), CacheEntry.class);
+                if (entry == null || entry.isExpired())
+                    memoryCache.remove(key);
+                else
+                    memoryCache.put(key, entry);
+                dirty.add(key);
+            });
+            writeDirtyEntries();
+            Files.delete(journalFile);
+            if (records > 0)
+                System.err.println("Warning: Recovered " + records + " cache changes from the journal " + journalFile);
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Warning: Failed to recover the cache journal " + journalFile + ": " + e.getMessage());
+            DISK_ERRORS.increment();
+        }
+    }
+
+    /**
+     * Checkpoint and close the journal if it is enabled. The cache keeps working without it.
+     */
+    @Override
+    public void close() throws IOException {
+        CacheJournal journal;
+        synchronized (this) {
+            journal = this.journal;
+            if (journal == null)
+                return;
+            checkpointer.shutdown();
+        }
+        synchronized (checkpointLock) {
+            // later puts write their files directly, the earlier ones are dirty by now
+            this.journal = null;
+            journal.close();
+            writeDirtyEntries();
+        }
+        Files.deleteIfExists(getJournalFile());
+    }
+
     /**
      * Perform maintenance operations like clearing expired entries.
      * This method should be called periodically to keep the cache clean.
@@ -341,4 +1053,35 @@ public class FilePersistentCache implements PersistentCache {
     public int performMaintenance() {
         return clearExpired();
     }
+
+    /**
+     * The size and modification time of a cache file, to tell whether another process replaced it.
+     */
+    private static final class FileStamp {
+        private final long modified;
+        private final long size;
+
+        private FileStamp(long modified, long size) {
+            this.modified = modified;
+            this.size = size;
+        }
+
+        static FileStamp of(Path filePath) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), attributes.size());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileStamp))
+                return false;
+            FileStamp other = (FileStamp) o;
+            return modified == other.modified && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(modified) * 31 + Long.hashCode(size);
+        }
+    }
 }
\ No newline at end of file
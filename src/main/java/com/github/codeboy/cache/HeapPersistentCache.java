@@ -0,0 +1,218 @@
+package com.github.codeboy.cache;
+
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache on the heap holding at most a fixed number of entries, dropping the least recently used ones.
+ * Nothing is persisted, it is meant as the first tier of a {@link TieredPersistentCache}.
+ * <p>
+ * Values are handed out as they are stored, without copying, so they must not be modified.
+ * A value read with another type than it was stored with is converted once and kept in that type.
+ */
+public class HeapPersistentCache implements PersistentCache, EvictingCache {
+
+    private static final long DEFAULT_EXPIRATION_MILLIS = 24 * 60 * 60 * 1000; // 24 hours
+
+    private final int maxEntries;
+    // in least recently used order, a lookup moves its entry to the end
+    private final LinkedHashMap<String, Slot> entries = new LinkedHashMap<>();
+    private final Gson gson = new Gson();
+    private volatile BiConsumer<String, CacheEntry> evictionListener;
+
+    /**
+     * @param maxEntries the number of entries to keep
+     */
+    public HeapPersistentCache(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive");
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public void setEvictionListener(BiConsumer<String, CacheEntry> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public <T> void put(String key, T value, long expirationTimeMillis) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        store(Collections.singletonMap(key, new CacheEntry(value, expirationTimeMillis)), false);
+    }
+
+    @Override
+    public <T> void put(String key, T value) {
+        put(key, value, System.currentTimeMillis() + DEFAULT_EXPIRATION_MILLIS);
+    }
+
+    @Override
+    public Set<String> putAll(Map<String, CacheEntry> entries) {
+        for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue().getData() == null) {
+                throw new IllegalArgumentException("Key and value cannot be null");
+            }
+        }
+        return store(entries, false);
+    }
+
+    @Override
+    public int importEntries(Map<String, CacheEntry> entries) {
+        return store(entries, true).size();
+    }
+
+    private Set<String> store(Map<String, CacheEntry> newEntries, boolean keepNewer) {
+        Set<String> changed = new LinkedHashSet<>();
+        Map<String, CacheEntry> evicted = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, CacheEntry> e : newEntries.entrySet()) {
+                CacheEntry entry = e.getValue();
+                if (keepNewer && (e.getKey() == null || entry == null || entry.getData() == null || entry.isExpired()))
+                    continue;
+                Slot existing = entries.get(e.getKey());
+                boolean live = existing != null && !existing.entry.isExpired();
+                if (live && existing.entry.hasSameContent(entry)) {
+                    entries.remove(e.getKey());
+                    entries.put(e.getKey(), new Slot(existing.entry.withExpirationTime(entry.getExpirationTime()), existing.type));
+                    continue;
+                }
+                if (keepNewer && live && existing.entry.getCreationTime() > entry.getCreationTime())
+                    continue;
+                entries.remove(e.getKey());
+                entries.put(e.getKey(), new Slot(entry, entry.getData().getClass()));
+                changed.add(e.getKey());
+            }
+            Iterator<Map.Entry<String, Slot>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                Map.Entry<String, Slot> eldest = iterator.next();
+                iterator.remove();
+                if (!eldest.getValue().entry.isExpired())
+                    evicted.put(eldest.getKey(), eldest.getValue().entry);
+            }
+        }
+        // outside of the lock, the listener may write to a slower tier
+        BiConsumer<String, CacheEntry> listener = evictionListener;
+        if (listener != null) {
+            evicted.forEach(listener);
+        }
+        return changed;
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz) {
+        return get(key, (Type) clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Type type) {
+        Slot slot = getLive(key);
+        return slot == null ? null : convert(key, slot, type);
+    }
+
+    @Override
+    public <T> T peek(String key, Type type) {
+        Slot slot;
+        synchronized (this) {
+            slot = key == null ? null : entries.get(key);
+        }
+        return slot == null || slot.entry.isExpired() ? null : convert(key, slot, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(String key, Slot slot, Type type) {
+        Object data = slot.entry.getData();
+        if (slot.type.equals(type) || type instanceof Class && ((Class<?>) type).isInstance(data)) {
+            return (T) data;
+        }
+        try {
+            T converted = gson.fromJson(gson.toJson(data), type);
+            synchronized (this) {
+                if (entries.get(key) == slot)
+                    entries.put(key, new Slot(new CacheEntry(converted, slot.entry.getExpirationTime(),
+                            slot.entry.getCreationTime(), slot.entry.getContentHash()), type));
+            }
+            return converted;
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public CacheEntry getEntry(String key) {
+        Slot slot = getLive(key);
+        return slot == null ? null : slot.entry;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return getLive(key) != null;
+    }
+
+    private synchronized Slot getLive(String key) {
+        if (key == null) {
+            return null;
+        }
+        Slot slot = entries.remove(key);
+        if (slot == null || slot.entry.isExpired()) {
+            return null;
+        }
+        entries.put(key, slot);
+        return slot;
+    }
+
+    @Override
+    public synchronized boolean remove(String key) {
+        return key != null && entries.remove(key) != null;
+    }
+
+    @Override
+    public synchronized int clearExpired() {
+        int removed = 0;
+        Iterator<Slot> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().entry.isExpired()) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized void clearAll() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized List<String> getAllKeys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * An entry with the type its data has, to hand out the data without converting it again.
+     */
+    private static final class Slot {
+        final CacheEntry entry;
+        final Type type;
+
+        Slot(CacheEntry entry, Type type) {
+            this.entry = entry;
+            this.type = type;
+        }
+    }
+}
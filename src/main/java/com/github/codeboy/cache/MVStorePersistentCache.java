@@ -0,0 +1,397 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.metrics.CacheEvent;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Events;
+import com.github.codeboy.metrics.Metrics;
+import com.google.gson.Gson;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.Closeable;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A cache implementation on an embedded H2 MVStore, keeping every entry in one compressed file
+ * instead of one JSON file per entry.
+ * <p>
+ * The keys are sorted, so {@link #getKeysWithPrefix(String)} is a range scan. Every write is committed right away,
+ * {@link #putAll(Map)} and {@link #importEntries(Map)} commit all their entries at once or none of them.
+ * Reads wait for a running write, so they never see a batch that is only half applied or not committed yet.
+ * Entries are decoded straight into the requested type on every read, nothing is held in memory apart from
+ * the page cache of the store. The store file is locked, so unlike the shared {@link FilePersistentCache}
+ * it can only be used by one process at a time.
+ * <p>
+ * MVStore is not a dependency of this library, add {@code com.h2database:h2-mvstore} to use this class.
+ */
+public class MVStorePersistentCache implements PersistentCache, Closeable {
+
+    private static final String MAP_NAME = "cache";
+    private static final long DEFAULT_EXPIRATION_MILLIS = 24 * 60 * 60 * 1000; // 24 hours
+    private static final int MAX_COMPACT_TIME_MILLIS = 1000;
+    private static final Counter EVICTIONS = Metrics.getInstance().counter("cache.evictions");
+
+    private final Path file;
+    private final MVStore store;
+    private final MVMap<String, byte[]> map;
+    private final Gson gson = new Gson();
+    // the map shows changes before they are committed, reads share the lock and writes hold it alone
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Open or create the store file.
+     *
+     * @param fileName the store file, e.g. {@code ~/.mensa4j/cache.mv.db}
+     */
+    public MVStorePersistentCache(String fileName) {
+        this.file = Paths.get(fileName);
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null)
+                Files.createDirectories(directory);
+        } catch (java.io.IOException e) {
+            System.err.println("Warning: Failed to create cache directory: " + e.getMessage());
+        }
+        this.store = new MVStore.Builder()
+                .fileName(fileName)
+                .compress()
+                .autoCommitDisabled()
+                .open();
+        this.map = store.openMap(MAP_NAME);
+    }
+
+    @Override
+    public <T> void put(String key, T value, long expirationTimeMillis) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
+        byte[] encoded = EncodedEntry.encode(gson, value, expirationTimeMillis, System.currentTimeMillis(), CacheEntry.NO_CONTENT_HASH);
+        lock.writeLock().lock();
+        try {
+            map.put(key, encoded);
+            store.commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (event != null)
+            event.finish(CacheEvent.PUT, key, false);
+    }
+
+    @Override
+    public <T> void put(String key, T value) {
+        put(key, value, System.currentTimeMillis() + DEFAULT_EXPIRATION_MILLIS);
+    }
+
+    /**
+     * Store several entries in one transaction. Entries with the same content as the stored entry
+     * only get their expiration extended.
+     */
+    @Override
+    public Set<String> putAll(Map<String, CacheEntry> entries) {
+        for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue().getData() == null) {
+                throw new IllegalArgumentException("Key and value cannot be null");
+            }
+        }
+        Set<String> changed = new LinkedHashSet<>();
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        lock.writeLock().lock();
+        try {
+            // everything is encoded before the map is changed, so a failure leaves nothing to roll back
+            for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+                String key = e.getKey();
+                CacheEntry entry = e.getValue();
+                byte[] existing = map.get(key);
+                if (existing != null && !EncodedEntry.isExpired(existing) && entry.getContentHash() != CacheEntry.NO_CONTENT_HASH
+                        && EncodedEntry.getContentHash(existing) == entry.getContentHash()) {
+                    writes.put(key, EncodedEntry.withExpirationTime(existing, entry.getExpirationTime()));
+                } else {
+                    writes.put(key, EncodedEntry.encode(gson, entry));
+                    changed.add(key);
+                }
+            }
+            write(writes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return changed;
+    }
+
+    /**
+     * Load entries in one transaction. Expired entries are skipped.
+     */
+    @Override
+    public int importEntries(Map<String, CacheEntry> entries) {
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+                CacheEntry entry = e.getValue();
+                if (e.getKey() == null || entry == null || entry.getData() == null || entry.isExpired())
+                    continue;
+                byte[] existing = map.get(e.getKey());
+                if (existing != null && !EncodedEntry.isExpired(existing) && EncodedEntry.getCreationTime(existing) > entry.getCreationTime())
+                    continue;
+                writes.put(e.getKey(), EncodedEntry.encode(gson, entry));
+            }
+            write(writes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return writes.size();
+    }
+
+    /**
+     * Write encoded entries and commit them, or roll them back if that fails. Needs the write lock.
+     */
+    private void write(Map<String, byte[]> writes) {
+        if (writes.isEmpty())
+            return;
+        try {
+            for (Map.Entry<String, byte[]> e : writes.entrySet()) {
+                map.put(e.getKey(), e.getValue());
+            }
+            store.commit();
+        } catch (RuntimeException e) {
+            store.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz) {
+        return get(key, (Type) clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Type type) {
+        CacheEvent event = Events.ENABLED ? CacheEvent.start() : null;
+        T value = decode(key, type);
+        if (event != null)
+            event.finish(CacheEvent.GET, key, value != null);
+        return value;
+    }
+
+    @Override
+    public <T> T peek(String key, Type type) {
+        if (key == null) {
+            return null;
+        }
+        byte[] value;
+        lock.readLock().lock();
+        try {
+            value = map.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (value == null || EncodedEntry.isExpired(value)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(EncodedEntry.getJson(value), type);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T decode(String key, Type type) {
+        byte[] value = getLive(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return gson.fromJson(EncodedEntry.getJson(value), type);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public CacheEntry getEntry(String key) {
+        byte[] value = getLive(key);
+        if (value == null) {
+            return null;
+        }
+        return EncodedEntry.decode(gson, value);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return getLive(key) != null;
+    }
+
+    /**
+     * Get the encoded entry of a key, removing it if it expired.
+     */
+    private byte[] getLive(String key) {
+        if (key == null) {
+            return null;
+        }
+        byte[] value;
+        lock.readLock().lock();
+        try {
+            value = map.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (value != null && EncodedEntry.isExpired(value)) {
+            removeExpired(key);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Remove an entry if it is still expired, it may have been replaced since it was read.
+     */
+    private void removeExpired(String key) {
+        lock.writeLock().lock();
+        try {
+            byte[] value = map.get(key);
+            if (value == null || !EncodedEntry.isExpired(value))
+                return;
+            map.remove(key);
+            store.commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        evicted(key);
+    }
+
+    @Override
+    public boolean remove(String key) {
+        if (key == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            boolean removed = map.remove(key) != null;
+            if (removed)
+                store.commit();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int clearExpired() {
+        List<String> expired = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, byte[]> entry : map.entrySet()) {
+                if (EncodedEntry.isExpired(entry.getValue())) {
+                    expired.add(entry.getKey());
+                }
+            }
+            for (String key : expired) {
+                map.remove(key);
+            }
+            if (!expired.isEmpty())
+                store.commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        expired.forEach(MVStorePersistentCache::evicted);
+        return expired.size();
+    }
+
+    @Override
+    public void clearAll() {
+        lock.writeLock().lock();
+        try {
+            map.clear();
+            store.commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> getAllKeys() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(map.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> getKeysWithPrefix(String prefix) {
+        List<String> keys = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Iterator<String> iterator = map.keyIterator(prefix);
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                if (!key.startsWith(prefix))
+                    break;
+                keys.add(key);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return keys;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return map.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the store file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Remove the expired entries and compact the store file.
+     *
+     * @return The number of expired entries that were removed
+     */
+    public int performMaintenance() {
+        int removed = clearExpired();
+        lock.writeLock().lock();
+        try {
+            store.compactFile(MAX_COMPACT_TIME_MILLIS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!store.isClosed())
+                store.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void evicted(String key) {
+        EVICTIONS.increment();
+        if (Events.ENABLED)
+            CacheEvent.evicted(key);
+    }
+}
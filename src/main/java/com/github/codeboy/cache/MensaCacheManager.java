@@ -1,10 +1,22 @@
 package com.github.codeboy.cache;
 
+import com.github.codeboy.Util;
 import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.Prices;
+import com.github.codeboy.index.MealSearchIndex;
+import com.github.codeboy.index.PriceStore;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Metrics;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
-import java.util.List;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A cache manager specifically designed for Mensa meal data and opening times.
@@ -17,14 +29,32 @@ public class MensaCacheManager {
     private static final String OPENING_TIMES_KEY_PREFIX = "opening_";
     private static final long MEAL_CACHE_EXPIRATION_HOURS = 24 * 30; // keep cached meals for one month
     private static final long OPENING_TIMES_CACHE_EXPIRATION_HOURS = 24 * 7; // update opening times once a week
+    private static final List<Meal> NO_MEALS = Collections.unmodifiableList(new ArrayList<>());
+    private static final Type MEAL_LIST = new TypeToken<List<Meal>>() {
+    }.getType();
+    private static final Counter MEAL_HITS = Metrics.getInstance().counter("cache.meals.hits");
+    private static final Counter MEAL_MISSES = Metrics.getInstance().counter("cache.meals.misses");
+    private static final Counter OPENING_HITS = Metrics.getInstance().counter("cache.opening.hits");
+    private static final Counter OPENING_MISSES = Metrics.getInstance().counter("cache.opening.misses");
     
     private final PersistentCache cache;
+    private final List<MenuChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final MealSearchIndex mealIndex = new MealSearchIndex();
+    private final PriceStore priceStore = new PriceStore();
+    // entries loaded by the cache itself are indexed on the first search
+    private volatile boolean mealIndexLoaded;
     
     /**
-     * Create a new MensaCacheManager with the default cache implementation.
+     * Create a new MensaCacheManager with the default cache implementation, or the tiered cache
+     * specified by the system property {@code mensa4j.cache.tiers}, see {@link TieredPersistentCache#fromSpec(String)}.
      */
     public MensaCacheManager() {
-        this(new FilePersistentCache());
+        this(createDefaultCache());
+    }
+    
+    private static PersistentCache createDefaultCache() {
+        String tiers = System.getProperty("mensa4j.cache.tiers");
+        return tiers == null || tiers.trim().isEmpty() ? new FilePersistentCache() : TieredPersistentCache.fromSpec(tiers);
     }
     
     /**
@@ -38,15 +68,107 @@ public class MensaCacheManager {
     
     /**
      * Cache meals for a specific mensa and date.
+     * If the meals are the same as the cached ones, only the expiration of the cached entry is extended.
      * 
      * @param mensaId The ID of the mensa
      * @param date The date string (YYYY-MM-DD format)
      * @param meals The list of meals to cache
+     * @return true if the meals differ from the previously cached ones
      */
-    public void cacheMeals(int mensaId, String date, List<Meal> meals) {
-        String key = MEALS_KEY_PREFIX + mensaId + "_" + date;
+    public boolean cacheMeals(int mensaId, String date, List<Meal> meals) {
+        return !cacheMeals(mensaId, Collections.singletonMap(date, meals)).isEmpty();
+    }
+    
+    /**
+     * Cache the meals of several days of a mensa at once.
+     * Days whose meals did not change are not written again, the changed days are persisted in one batch.
+     * 
+     * @param mensaId The ID of the mensa
+     * @param mealsByDate The lists of meals to cache, by date string (YYYY-MM-DD format).
+     *                    The lists may be handed out by the cache as they are, so they should be unmodifiable
+     * @return the dates whose meals differ from the previously cached ones
+     */
+    public Set<String> cacheMeals(int mensaId, Map<String, List<Meal>> mealsByDate) {
         long expirationTime = System.currentTimeMillis() + (MEAL_CACHE_EXPIRATION_HOURS * 60 * 60 * 1000);
-        cache.put(key, meals, expirationTime);
+        Map<String, CacheEntry> entries = new LinkedHashMap<>();
+        Map<String, String> datesByKey = new HashMap<>();
+        for (Map.Entry<String, List<Meal>> e : mealsByDate.entrySet()) {
+            String key = MEALS_KEY_PREFIX + mensaId + "_" + e.getKey();
+            // Gson 2.8 can't serialize Collections.emptyList() on Java 17, it has no accessible constructor
+            List<Meal> meals = e.getValue().isEmpty() ? NO_MEALS : e.getValue();
+            entries.put(key, new CacheEntry(meals, expirationTime, hashMeals(meals)));
+            datesByKey.put(key, e.getKey());
+        }
+        
+        Set<String> changedDates = new LinkedHashSet<>();
+        for (String key : cache.putAll(entries)) {
+            String date = datesByKey.get(key);
+            changedDates.add(date);
+            indexMeals(mensaId, date, mealsByDate.get(date));
+            for (MenuChangeListener listener : listeners) {
+                listener.onMenuChanged(mensaId, date, mealsByDate.get(date));
+            }
+        }
+        return changedDates;
+    }
+    
+    /**
+     * Compute a 64 bit FNV-1a hash over the content of a list of meals.
+     */
+    static long hashMeals(List<Meal> meals) {
+        long hash = 0xcbf29ce484222325L;
+        for (Meal meal : meals) {
+            hash = hash(hash, meal.getName());
+            hash = hash(hash, meal.getCategory());
+            List<String> notes = meal.getNotes();
+            if (notes != null) {
+                for (String note : notes) {
+                    hash = hash(hash, note);
+                }
+            }
+            Prices prices = meal.getPrices();
+            if (prices != null) {
+                hash = hash(hash, prices.getStudents());
+                hash = hash(hash, prices.getEmployees());
+                hash = hash(hash, prices.getPupils());
+                hash = hash(hash, prices.getOthers());
+            }
+            hash = hash(hash, (char) 0);
+        }
+        return hash == CacheEntry.NO_CONTENT_HASH ? 1 : hash;
+    }
+    
+    private static long hash(long hash, String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                hash = hash(hash, s.charAt(i));
+            }
+        }
+        // separate the fields, so that "ab","c" and "a","bc" differ
+        return hash(hash, (char) 1);
+    }
+    
+    private static long hash(long hash, char c) {
+        hash ^= c;
+        return hash * 0x100000001b3L;
+    }
+    
+    /**
+     * Register a listener that is notified whenever the cached meals of a day change.
+     * 
+     * @param listener The listener to add
+     */
+    public void addMenuChangeListener(MenuChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a previously registered listener.
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeMenuChangeListener(MenuChangeListener listener) {
+        listeners.remove(listener);
     }
     
     /**
@@ -60,15 +182,50 @@ public class MensaCacheManager {
         String key = MEALS_KEY_PREFIX + mensaId + "_" + date;
         
         try {
-            // Use TypeToken to properly handle generic List<Meal> deserialization
-            Type listType = new TypeToken<List<Meal>>(){}.getType();
-            return cache.get(key, listType);
+            List<Meal> meals = cache.get(key, MEAL_LIST);
+            (meals != null ? MEAL_HITS : MEAL_MISSES).increment();
+            return meals;
         } catch (Exception e) {
             System.err.println("Warning: Failed to retrieve cached meals: " + e.getMessage());
+            MEAL_MISSES.increment();
             return null;
         }
     }
     
+    /**
+     * Retrieve cached meals for a specific mensa and date.
+     * 
+     * @param mensaId The ID of the mensa
+     * @param date The date
+     * @return The cached list of meals, or null if not found or expired
+     */
+    public List<Meal> getCachedMeals(int mensaId, LocalDate date) {
+        return getCachedMeals(mensaId, Util.dateToString(date));
+    }
+    
+    /**
+     * Cache meals for a specific mensa and date.
+     * 
+     * @param mensaId The ID of the mensa
+     * @param date The date
+     * @param meals The list of meals to cache
+     * @return true if the meals differ from the previously cached ones
+     */
+    public boolean cacheMeals(int mensaId, LocalDate date, List<Meal> meals) {
+        return cacheMeals(mensaId, Util.dateToString(date), meals);
+    }
+    
+    /**
+     * Check if meals are cached for a specific mensa and date.
+     * 
+     * @param mensaId The ID of the mensa
+     * @param date The date
+     * @return true if meals are cached and not expired, false otherwise
+     */
+    public boolean hasCachedMeals(int mensaId, LocalDate date) {
+        return hasCachedMeals(mensaId, Util.dateToString(date));
+    }
+    
     /**
      * Check if meals are cached for a specific mensa and date.
      * 
@@ -103,7 +260,9 @@ public class MensaCacheManager {
      */
     public Boolean getCachedOpeningTimes(int mensaId, String date) {
         String key = OPENING_TIMES_KEY_PREFIX + mensaId + "_" + date;
-        return cache.get(key, Boolean.class);
+        Boolean isOpen = cache.get(key, Boolean.class);
+        (isOpen != null ? OPENING_HITS : OPENING_MISSES).increment();
+        return isOpen;
     }
     
     /**
@@ -127,6 +286,7 @@ public class MensaCacheManager {
      */
     public boolean removeCachedMeals(int mensaId, String date) {
         String key = MEALS_KEY_PREFIX + mensaId + "_" + date;
+        unindexMeals(mensaId, date);
         return cache.remove(key);
     }
     
@@ -151,11 +311,12 @@ public class MensaCacheManager {
         String mealsPrefix = MEALS_KEY_PREFIX + mensaId + "_";
         String openingPrefix = OPENING_TIMES_KEY_PREFIX + mensaId + "_";
         
-        List<String> allKeys = cache.getAllKeys();
-        for (String key : allKeys) {
-            if (key.startsWith(mealsPrefix) || key.startsWith(openingPrefix)) {
-                cache.remove(key);
-            }
+        for (String key : cache.getKeysWithPrefix(mealsPrefix)) {
+            cache.remove(key);
+            unindexMeals(mensaId, key.substring(mealsPrefix.length()));
+        }
+        for (String key : cache.getKeysWithPrefix(openingPrefix)) {
+            cache.remove(key);
         }
     }
     
@@ -165,7 +326,12 @@ public class MensaCacheManager {
      * @return The number of expired entries that were removed
      */
     public int clearExpired() {
-        return cache.clearExpired();
+        int removed = cache.clearExpired();
+        if (removed > 0) {
+            // the cache doesn't tell which entries expired, so index the remaining ones again
+            mealIndexLoaded = false;
+        }
+        return removed;
     }
     
     /**
@@ -173,6 +339,142 @@ public class MensaCacheManager {
      */
     public void clearAll() {
         cache.clearAll();
+        mealIndex.clear();
+        priceStore.clear();
+        mealIndexLoaded = true;
+    }
+    
+    /**
+     * Write the canteen directory and every live cache entry into one compressed bundle,
+     * to be loaded with {@link #importBundle(Path)}, for example when building a container image.
+     * 
+     * @param file The bundle file
+     * @param canteens The canteen directory to include
+     * @return the number of exported entries
+     * @throws UnsupportedOperationException if the cache can't return its entries
+     */
+    public int exportBundle(Path file, Collection<? extends Mensa> canteens) throws IOException {
+        Map<String, CacheEntry> entries = new LinkedHashMap<>();
+        for (String key : cache.getAllKeys()) {
+            CacheEntry entry = cache.getEntry(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        CacheBundle.write(file, canteens, entries);
+        return entries.size();
+    }
+    
+    /**
+     * Load a bundle written by {@link #exportBundle(Path, Collection)} into the cache.
+     * Entries that expired since the export are skipped, cached entries that are newer than the bundle are kept.
+     * 
+     * @param file The bundle file
+     * @return the bundle, whose canteens still have to be loaded, see {@code OpenMensa#importCacheBundle(Path)}
+     * @throws IOException if the bundle can't be read or is damaged, the cache is unchanged then
+     */
+    public CacheBundle importBundle(Path file) throws IOException {
+        CacheBundle bundle = CacheBundle.read(file);
+        if (cache.importEntries(bundle.getEntries()) > 0) {
+            mealIndexLoaded = false;
+        }
+        return bundle;
+    }
+    
+    /**
+     * Find the cached days with a meal whose name, category or notes contain every word of the query.
+     * 
+     * @param query The words to search for, e.g. "schnitzel"
+     * @return the matching days with the positions of their matching meals, ordered by date and mensa
+     */
+    public List<MealSearchIndex.Hit> searchMeals(String query) {
+        return getMealIndex().search(query);
+    }
+    
+    /**
+     * Find the cached days of some mensas within a date range with a meal matching every word of the query.
+     * 
+     * @param query The words to search for, e.g. "schnitzel"
+     * @param mensaIds The IDs of the mensas to search, or null for all
+     * @param from The first date to search
+     * @param to The last date to search
+     * @return the matching days with the positions of their matching meals, ordered by date and mensa
+     */
+    public List<MealSearchIndex.Hit> searchMeals(String query, Collection<Integer> mensaIds, LocalDate from, LocalDate to) {
+        return getMealIndex().search(query, mensaIds, from.toEpochDay(), to.toEpochDay());
+    }
+    
+    /**
+     * Get the index over the cached meals, which is kept up to date as meals are cached.
+     * 
+     * @return the meal index
+     */
+    public MealSearchIndex getMealIndex() {
+        if (!mealIndexLoaded) {
+            loadMealIndex();
+        }
+        return mealIndex;
+    }
+    
+    /**
+     * Get the prices of the cached meals in cents, e.g. to find the cheapest meal of a day
+     * or the price trend of a mensa. The store is kept up to date as meals are cached.
+     * 
+     * @return the price store
+     */
+    public PriceStore getPriceStore() {
+        if (!mealIndexLoaded) {
+            loadMealIndex();
+        }
+        return priceStore;
+    }
+    
+    private synchronized void loadMealIndex() {
+        if (mealIndexLoaded) {
+            return;
+        }
+        mealIndex.clear();
+        priceStore.clear();
+        for (String key : cache.getKeysWithPrefix(MEALS_KEY_PREFIX)) {
+            int separator = key.indexOf('_', MEALS_KEY_PREFIX.length());
+            if (separator < 0) {
+                continue;
+            }
+            try {
+                int mensaId = Integer.parseInt(key.substring(MEALS_KEY_PREFIX.length(), separator));
+                String date = key.substring(separator + 1);
+                // not a lookup of a user, so it must not count as a hit, promote the day or change what is evicted
+                List<Meal> meals = cache.peek(key, MEAL_LIST);
+                if (meals != null) {
+                    indexMeals(mensaId, date, meals);
+                }
+            } catch (NumberFormatException e) {
+                // not a key written by this class
+            } catch (Exception e) {
+                System.err.println("Warning: Failed to index cached meals: " + e.getMessage());
+            }
+        }
+        mealIndexLoaded = true;
+    }
+    
+    private void indexMeals(int mensaId, String date, List<Meal> meals) {
+        try {
+            long epochDay = LocalDate.parse(date).toEpochDay();
+            mealIndex.index(mensaId, epochDay, meals);
+            priceStore.record(mensaId, epochDay, meals);
+        } catch (DateTimeParseException e) {
+            System.err.println("Warning: Not indexing meals with invalid date '" + date + "'");
+        }
+    }
+    
+    private void unindexMeals(int mensaId, String date) {
+        try {
+            long epochDay = LocalDate.parse(date).toEpochDay();
+            mealIndex.remove(mensaId, epochDay);
+            priceStore.remove(mensaId, epochDay);
+        } catch (DateTimeParseException e) {
+            // never indexed
+        }
     }
     
     /**
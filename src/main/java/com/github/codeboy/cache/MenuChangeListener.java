@@ -0,0 +1,21 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Meal;
+
+import java.util.List;
+
+/**
+ * Listener that is notified when the cached menu of a mensa changes.
+ * Refreshing a day with the same meals as before does not notify the listener.
+ */
+public interface MenuChangeListener {
+
+    /**
+     * Called after the meals of a day were cached with a content different from the previous one.
+     *
+     * @param mensaId The ID of the mensa
+     * @param date The date string (YYYY-MM-DD format)
+     * @param meals The new list of meals
+     */
+    void onMenuChanged(int mensaId, String date, List<Meal> meals);
+}
@@ -0,0 +1,245 @@
+package com.github.codeboy.cache;
+
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache keeping its entries encoded in direct buffers outside of the heap, up to a number of bytes,
+ * dropping the least recently used entries. Nothing is persisted, it is meant as a tier of a
+ * {@link TieredPersistentCache} between the heap and the disk: it holds many more entries than the heap
+ * without adding to the garbage collection work, but decodes them on every read.
+ * <p>
+ * The memory of dropped entries is returned once their buffers are collected.
+ */
+public class OffHeapPersistentCache implements PersistentCache, EvictingCache {
+
+    private static final long DEFAULT_EXPIRATION_MILLIS = 24 * 60 * 60 * 1000; // 24 hours
+
+    private final long maxBytes;
+    // in least recently used order, a lookup moves its entry to the end
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>();
+    private final Gson gson = new Gson();
+    private long bytes;
+    private volatile BiConsumer<String, CacheEntry> evictionListener;
+
+    /**
+     * @param maxBytes the size of the encoded entries to keep
+     */
+    public OffHeapPersistentCache(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void setEvictionListener(BiConsumer<String, CacheEntry> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public <T> void put(String key, T value, long expirationTimeMillis) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        store(Collections.singletonMap(key, new CacheEntry(value, expirationTimeMillis)), false);
+    }
+
+    @Override
+    public <T> void put(String key, T value) {
+        put(key, value, System.currentTimeMillis() + DEFAULT_EXPIRATION_MILLIS);
+    }
+
+    @Override
+    public Set<String> putAll(Map<String, CacheEntry> entries) {
+        for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue().getData() == null) {
+                throw new IllegalArgumentException("Key and value cannot be null");
+            }
+        }
+        return store(entries, false);
+    }
+
+    @Override
+    public int importEntries(Map<String, CacheEntry> entries) {
+        return store(entries, true).size();
+    }
+
+    private Set<String> store(Map<String, CacheEntry> newEntries, boolean keepNewer) {
+        Set<String> changed = new LinkedHashSet<>();
+        Map<String, ByteBuffer> evicted = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, CacheEntry> e : newEntries.entrySet()) {
+                CacheEntry entry = e.getValue();
+                if (keepNewer && (e.getKey() == null || entry == null || entry.getData() == null || entry.isExpired()))
+                    continue;
+                byte[] existing = read(entries.get(e.getKey()));
+                boolean live = existing != null && !EncodedEntry.isExpired(existing);
+                byte[] value;
+                if (live && entry.getContentHash() != CacheEntry.NO_CONTENT_HASH
+                        && EncodedEntry.getContentHash(existing) == entry.getContentHash()) {
+                    value = EncodedEntry.withExpirationTime(existing, entry.getExpirationTime());
+                } else if (keepNewer && live && EncodedEntry.getCreationTime(existing) > entry.getCreationTime()) {
+                    continue;
+                } else {
+                    value = EncodedEntry.encode(gson, entry);
+                    changed.add(e.getKey());
+                }
+                if (value.length > maxBytes) {
+                    // the value doesn't fit, so it can't be cached, but the previous one is outdated now
+                    ByteBuffer removed = entries.remove(e.getKey());
+                    if (removed != null)
+                        bytes -= removed.capacity();
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.allocateDirect(value.length);
+                buffer.put(value).flip();
+                ByteBuffer replaced = entries.remove(e.getKey());
+                entries.put(e.getKey(), buffer);
+                bytes += value.length - (replaced == null ? 0 : replaced.capacity());
+            }
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, ByteBuffer> eldest = iterator.next();
+                iterator.remove();
+                bytes -= eldest.getValue().capacity();
+                evicted.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+        // outside of the lock, the listener may write to a slower tier
+        BiConsumer<String, CacheEntry> listener = evictionListener;
+        if (listener != null) {
+            for (Map.Entry<String, ByteBuffer> e : evicted.entrySet()) {
+                byte[] value = read(e.getValue());
+                if (!EncodedEntry.isExpired(value))
+                    listener.accept(e.getKey(), EncodedEntry.decode(gson, value));
+            }
+        }
+        return changed;
+    }
+
+    private static byte[] read(ByteBuffer buffer) {
+        if (buffer == null)
+            return null;
+        byte[] value = new byte[buffer.remaining()];
+        buffer.duplicate().get(value);
+        return value;
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz) {
+        return get(key, (Type) clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Type type) {
+        byte[] value = getLive(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return gson.fromJson(EncodedEntry.getJson(value), type);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public <T> T peek(String key, Type type) {
+        byte[] value;
+        synchronized (this) {
+            value = key == null ? null : read(entries.get(key));
+        }
+        if (value == null || EncodedEntry.isExpired(value)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(EncodedEntry.getJson(value), type);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public CacheEntry getEntry(String key) {
+        byte[] value = getLive(key);
+        return value == null ? null : EncodedEntry.decode(gson, value);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return getLive(key) != null;
+    }
+
+    private synchronized byte[] getLive(String key) {
+        if (key == null) {
+            return null;
+        }
+        ByteBuffer buffer = entries.remove(key);
+        if (buffer == null)
+            return null;
+        byte[] value = read(buffer);
+        if (EncodedEntry.isExpired(value)) {
+            bytes -= buffer.capacity();
+            return null;
+        }
+        entries.put(key, buffer);
+        return value;
+    }
+
+    @Override
+    public synchronized boolean remove(String key) {
+        ByteBuffer removed = key == null ? null : entries.remove(key);
+        if (removed != null)
+            bytes -= removed.capacity();
+        return removed != null;
+    }
+
+    @Override
+    public synchronized int clearExpired() {
+        int removed = 0;
+        Iterator<ByteBuffer> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            ByteBuffer buffer = iterator.next();
+            if (buffer.getLong(0) < System.currentTimeMillis()) {
+                iterator.remove();
+                bytes -= buffer.capacity();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized void clearAll() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized List<String> getAllKeys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the size of the encoded entries in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -1,6 +1,10 @@
 package com.github.codeboy.cache;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A generic cache interface for persisting data with expiration support.
@@ -26,6 +30,21 @@ public interface PersistentCache {
      */
     <T> void put(String key, T value);
     
+    /**
+     * Store several entries at once.
+     * Implementations may skip entries whose content hash equals the hash of the entry
+     * that is already stored and only extend the expiration of the stored entry.
+     * 
+     * @param entries The entries to store, by key
+     * @return the keys whose content changed and was written
+     */
+    default Set<String> putAll(Map<String, CacheEntry> entries) {
+        for (Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue().getData(), entry.getValue().getExpirationTime());
+        }
+        return new LinkedHashSet<>(entries.keySet());
+    }
+    
     /**
      * Retrieve an object from the cache.
      * 
@@ -44,6 +63,20 @@ public interface PersistentCache {
      */
     <T> T get(String key, java.lang.reflect.Type type);
     
+    /**
+     * Retrieve an object without the side effects of a lookup: it isn't counted as a hit or miss, doesn't emit
+     * a cache event, doesn't change which entries are evicted first and doesn't remove an expired entry.
+     * Meant for scans over all entries, e.g. to build an index. Implementations that have no such side effects
+     * may keep this default, which calls {@link #get(String, java.lang.reflect.Type)}.
+     * 
+     * @param key The key used to store the object
+     * @param type The Type token for the object
+     * @return The cached object, or null if not found or expired
+     */
+    default <T> T peek(String key, java.lang.reflect.Type type) {
+        return get(key, type);
+    }
+    
     /**
      * Check if a cache entry exists and is not expired.
      * 
@@ -79,6 +112,46 @@ public interface PersistentCache {
      */
     List<String> getAllKeys();
     
+    /**
+     * Get the keys starting with a prefix (including expired ones), e.g. every meal key of one mensa.
+     * Implementations with sorted keys answer this with a range scan instead of looking at every key.
+     * 
+     * @param prefix The prefix of the keys
+     * @return List of the matching cache keys
+     */
+    default List<String> getKeysWithPrefix(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : getAllKeys()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * Get an entry with its metadata, for example to export it.
+     * 
+     * @param key The cache key
+     * @return the entry, or null if there is no live entry for the key
+     * @throws UnsupportedOperationException if the cache can't return its entries
+     */
+    default CacheEntry getEntry(String key) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't return its entries");
+    }
+    
+    /**
+     * Load entries in bulk, for example from a {@link CacheBundle}. Unlike {@link #putAll(Map)} the entries
+     * are not compared with the stored ones, and an implementation may keep them without persisting each of them.
+     * An entry doesn't replace a stored entry that was created later.
+     * 
+     * @param entries The entries by key
+     * @return the number of entries that were loaded
+     */
+    default int importEntries(Map<String, CacheEntry> entries) {
+        return putAll(entries).size();
+    }
+    
     /**
      * Get the size of the cache (number of entries).
      * 
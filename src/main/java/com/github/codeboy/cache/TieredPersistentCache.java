@@ -0,0 +1,461 @@
+package com.github.codeboy.cache;
+
+import com.google.gson.Gson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache stacking several caches as tiers, from the fastest to the slowest, for example a bounded
+ * {@link HeapPersistentCache}, an {@link OffHeapPersistentCache}, a {@link FilePersistentCache} and a shared
+ * {@link FilePersistentCache} on a network volume.
+ * <p>
+ * Reads go through the tiers in order. An entry found in a lower tier is promoted into the tiers above that
+ * have promotion enabled. Writes reach every tier according to its {@link CacheTier.WritePolicy}: right away,
+ * in batches written back every flush interval, or not at all. A bounded tier can demote the entries it drops
+ * to the next tier. See {@link CacheTier} for the statistics of each tier.
+ * <p>
+ * The tiers can be configured without code changes with the system property {@code mensa4j.cache.tiers},
+ * see {@link #fromSpec(String)}.
+ */
+public class TieredPersistentCache implements PersistentCache, Closeable {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final long DEFAULT_EXPIRATION_MILLIS = 24 * 60 * 60 * 1000; // 24 hours
+
+    private final List<CacheTier> tiers;
+    private final Gson gson = new Gson();
+    private final ScheduledExecutorService flusher;
+
+    public TieredPersistentCache(List<CacheTier> tiers) {
+        this(tiers, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param tiers                the tiers, from the fastest to the slowest
+     * @param flushIntervalMillis  how often the entries of write-back tiers are written
+     */
+    public TieredPersistentCache(List<CacheTier> tiers, long flushIntervalMillis) {
+        if (tiers.isEmpty())
+            throw new IllegalArgumentException("A tiered cache needs at least one tier");
+        Set<String> names = new HashSet<>();
+        for (CacheTier tier : tiers) {
+            if (!names.add(tier.getName()))
+                throw new IllegalArgumentException("Duplicate tier name " + tier.getName());
+        }
+        this.tiers = Collections.unmodifiableList(new ArrayList<>(tiers));
+        for (int i = 0; i < tiers.size() - 1; i++) {
+            CacheTier tier = tiers.get(i);
+            if (tier.isDemote() && tier.getCache() instanceof EvictingCache) {
+                CacheTier next = tiers.get(i + 1);
+                ((EvictingCache) tier.getCache()).setEvictionListener((key, entry) -> demote(next, key, entry));
+            }
+        }
+        boolean writeBack = false;
+        for (CacheTier tier : tiers) {
+            writeBack |= tier.getWritePolicy() == CacheTier.WritePolicy.BACK;
+        }
+        if (writeBack) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "mensa4j-cache-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    // the entries stay pending and are written with the next flush
+                    System.err.println("Warning: Failed to write back cache entries: " + e);
+                }
+            }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Create a tiered cache from a specification like
+     * {@code heap:2000,demote=true; offheap:64m; disk:/var/cache/mensa4j,write=back; shared:/mnt/mensa4j}.
+     * <p>
+     * Tiers are separated by semicolons, from the fastest to the slowest. Each tier is a type with an optional
+     * argument after a colon, followed by options separated by commas:
+     * <ul>
+     *     <li>{@code heap:<entries>} a {@link HeapPersistentCache}, 1000 entries by default</li>
+     *     <li>{@code offheap:<bytes>} an {@link OffHeapPersistentCache}, with an optional k, m or g suffix,
+     *     64m by default</li>
+     *     <li>{@code disk[:<directory>]} a {@link FilePersistentCache}, in the default directory without an argument</li>
+     *     <li>{@code shared:<directory>} a {@link FilePersistentCache} shared with other processes</li>
+     *     <li>{@code mvstore:<file>} an {@link MVStorePersistentCache}, which needs H2 MVStore on the classpath</li>
+     * </ul>
+     * The options are {@code write=through|back|none}, {@code promote=true|false} and {@code demote=true|false},
+     * see {@link CacheTier}, and {@code journal=true} for a disk tier, see {@link FilePersistentCache#enableJournal(long)}.
+     * A tier is named after its type, or its type and position if the type is used twice.
+     *
+     * @param spec the specification
+     * @return the cache
+     * @throws IllegalArgumentException if the specification is invalid
+     */
+    public static TieredPersistentCache fromSpec(String spec) {
+        String[] parts = spec.trim().split("\\s*;\\s*");
+        List<CacheTier> tiers = new ArrayList<>();
+        Set<String> types = new HashSet<>();
+        for (int i = 0; i < parts.length; i++) {
+            String[] options = parts[i].split("\\s*,\\s*");
+            int colon = options[0].indexOf(':');
+            String type = colon < 0 ? options[0] : options[0].substring(0, colon);
+            String argument = colon < 0 ? null : options[0].substring(colon + 1);
+            String name = types.add(type) ? type : type + (i + 1);
+            CacheTier tier = new CacheTier(name, createCache(type, argument));
+            for (int j = 1; j < options.length; j++) {
+                String[] option = options[j].split("\\s*=\\s*", 2);
+                String value = option.length > 1 ? option[1].toLowerCase() : "true";
+                switch (option[0]) {
+                    case "write":
+                        tier.writePolicy(CacheTier.WritePolicy.valueOf(value.toUpperCase()));
+                        break;
+                    case "promote":
+                        tier.promote(Boolean.parseBoolean(value));
+                        break;
+                    case "demote":
+                        tier.demote(Boolean.parseBoolean(value));
+                        break;
+                    case "journal":
+                        if (!(tier.getCache() instanceof FilePersistentCache))
+                            throw new IllegalArgumentException("Only disk cache tiers can have a journal");
+                        if (Boolean.parseBoolean(value))
+                            ((FilePersistentCache) tier.getCache()).enableJournal(FilePersistentCache.DEFAULT_CHECKPOINT_INTERVAL_MILLIS);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option '" + options[j] + "' of cache tier " + name);
+                }
+            }
+            tiers.add(tier);
+        }
+        return new TieredPersistentCache(tiers);
+    }
+
+    private static PersistentCache createCache(String type, String argument) {
+        switch (type) {
+            case "heap":
+                return new HeapPersistentCache(argument == null ? 1000 : Integer.parseInt(argument));
+            case "offheap":
+                return new OffHeapPersistentCache(argument == null ? 64 << 20 : parseBytes(argument));
+            case "disk":
+                return argument == null ? new FilePersistentCache() : new FilePersistentCache(argument);
+            case "shared":
+                if (argument == null)
+                    throw new IllegalArgumentException("The shared cache tier needs a directory");
+                return new FilePersistentCache(argument, true);
+            case "mvstore":
+                if (argument == null)
+                    throw new IllegalArgumentException("The mvstore cache tier needs a file");
+                return new MVStorePersistentCache(argument);
+            default:
+                throw new IllegalArgumentException("Unknown cache tier type '" + type + "'");
+        }
+    }
+
+    private static long parseBytes(String size) {
+        String lower = size.toLowerCase();
+        char unit = lower.charAt(lower.length() - 1);
+        int shift = unit == 'k' ? 10 : unit == 'm' ? 20 : unit == 'g' ? 30 : 0;
+        String number = shift == 0 ? lower : lower.substring(0, lower.length() - 1);
+        return Long.parseLong(number) << shift;
+    }
+
+    public List<CacheTier> getTiers() {
+        return tiers;
+    }
+
+    /**
+     * Get the cache of the first tier of a type, e.g. to find the directory of the disk tier.
+     *
+     * @return the cache, or null if no tier has a cache of the type
+     */
+    public <C extends PersistentCache> C getCache(Class<C> type) {
+        for (CacheTier tier : tiers) {
+            if (type.isInstance(tier.getCache()))
+                return type.cast(tier.getCache());
+        }
+        return null;
+    }
+
+    @Override
+    public <T> void put(String key, T value, long expirationTimeMillis) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        putAll(Collections.singletonMap(key, new CacheEntry(value, expirationTimeMillis)));
+    }
+
+    @Override
+    public <T> void put(String key, T value) {
+        put(key, value, System.currentTimeMillis() + DEFAULT_EXPIRATION_MILLIS);
+    }
+
+    /**
+     * Write the entries to every tier according to its write policy.
+     *
+     * @return the keys the lowest tier written right away reports as changed,
+     * all keys if every tier is written back
+     */
+    @Override
+    public Set<String> putAll(Map<String, CacheEntry> entries) {
+        for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue().getData() == null) {
+                throw new IllegalArgumentException("Key and value cannot be null");
+            }
+        }
+        Set<String> changed = null;
+        for (CacheTier tier : tiers) {
+            switch (tier.getWritePolicy()) {
+                case THROUGH:
+                    changed = tier.getCache().putAll(entries);
+                    tier.writes.add(entries.size());
+                    break;
+                case BACK:
+                    tier.pending.putAll(entries);
+                    break;
+                case NONE:
+                    for (String key : entries.keySet()) {
+                        tier.getCache().remove(key);
+                    }
+                    break;
+            }
+        }
+        return changed != null ? changed : new LinkedHashSet<>(entries.keySet());
+    }
+
+    /**
+     * Write the pending entries of the write-back tiers.
+     */
+    public void flush() {
+        for (CacheTier tier : tiers) {
+            if (tier.pending.isEmpty())
+                continue;
+            Map<String, CacheEntry> batch = new LinkedHashMap<>(tier.pending);
+            tier.getCache().putAll(batch);
+            tier.writes.add(batch.size());
+            for (Map.Entry<String, CacheEntry> e : batch.entrySet()) {
+                // entries written again in the meantime stay pending
+                tier.pending.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Load the entries into every tier that is written to, skipping the write-back queues.
+     *
+     * @return the largest number of entries loaded into a tier
+     */
+    @Override
+    public int importEntries(Map<String, CacheEntry> entries) {
+        int imported = 0;
+        for (CacheTier tier : tiers) {
+            if (tier.getWritePolicy() != CacheTier.WritePolicy.NONE)
+                imported = Math.max(imported, tier.getCache().importEntries(entries));
+        }
+        return imported;
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz) {
+        return get(key, (Type) clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Type type) {
+        return get(key, type, true);
+    }
+
+    /**
+     * Read a value from the first tier that has it without promoting it, without counting hits and misses and
+     * without the lookup side effects of the tiers, see {@link PersistentCache#peek(String, Type)}.
+     */
+    @Override
+    public <T> T peek(String key, Type type) {
+        return get(key, type, false);
+    }
+
+    private <T> T get(String key, Type type, boolean promote) {
+        if (key == null) {
+            return null;
+        }
+        for (int i = 0; i < tiers.size(); i++) {
+            CacheTier tier = tiers.get(i);
+            CacheEntry pending = getPending(tier, key);
+            T value = pending != null ? convert(key, pending.getData(), type)
+                    : promote ? tier.getCache().get(key, type) : tier.getCache().peek(key, type);
+            if (value != null) {
+                if (promote) {
+                    tier.hits.increment();
+                    promote(i, key, value, pending);
+                }
+                return value;
+            }
+            if (promote)
+                tier.misses.increment();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(String key, Object data, Type type) {
+        if (type instanceof Class && ((Class<?>) type).isInstance(data)) {
+            return (T) data;
+        }
+        try {
+            return gson.fromJson(gson.toJson(data), type);
+        } catch (Exception e) {
+            System.err.println("Warning: Failed to deserialize cache entry for key '" + key + "' with type '" + type + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static CacheEntry getPending(CacheTier tier, String key) {
+        CacheEntry entry = tier.pending.get(key);
+        return entry == null || entry.isExpired() ? null : entry;
+    }
+
+    /**
+     * Copy a value found in a tier into the tiers above it that take promoted entries. The value is imported,
+     * so it doesn't replace a newer value that was put into a tier since it was read.
+     */
+    private void promote(int found, String key, Object value, CacheEntry pending) {
+        CacheEntry entry = null;
+        for (int i = 0; i < found; i++) {
+            CacheTier tier = tiers.get(i);
+            if (!tier.isPromote())
+                continue;
+            if (entry == null) {
+                CacheEntry stored = pending;
+                try {
+                    if (stored == null)
+                        stored = tiers.get(found).getCache().getEntry(key);
+                } catch (UnsupportedOperationException e) {
+                    // without the expiration time the entry can't be promoted
+                }
+                if (stored == null)
+                    return;
+                entry = new CacheEntry(value, stored.getExpirationTime(), stored.getCreationTime(), stored.getContentHash());
+            }
+            if (tier.getCache().importEntries(Collections.singletonMap(key, entry)) > 0)
+                tier.promotions.increment();
+        }
+    }
+
+    /**
+     * Move an entry dropped by a tier into the next tier, unless it has the entry already.
+     */
+    private void demote(CacheTier next, String key, CacheEntry entry) {
+        if (next.pending.containsKey(key) || next.getCache().contains(key))
+            return;
+        next.getCache().putAll(Collections.singletonMap(key, entry));
+        next.demotions.increment();
+    }
+
+    @Override
+    public CacheEntry getEntry(String key) {
+        for (CacheTier tier : tiers) {
+            CacheEntry entry = getPending(tier, key);
+            if (entry == null) {
+                try {
+                    entry = tier.getCache().getEntry(key);
+                } catch (UnsupportedOperationException e) {
+                    continue;
+                }
+            }
+            if (entry != null)
+                return entry;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        for (CacheTier tier : tiers) {
+            if (getPending(tier, key) != null || tier.getCache().contains(key))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        boolean removed = false;
+        for (CacheTier tier : tiers) {
+            removed |= tier.pending.remove(key) != null;
+            removed |= tier.getCache().remove(key);
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of expired entries removed from all tiers together
+     */
+    @Override
+    public int clearExpired() {
+        int removed = 0;
+        for (CacheTier tier : tiers) {
+            tier.pending.values().removeIf(CacheEntry::isExpired);
+            removed += tier.getCache().clearExpired();
+        }
+        return removed;
+    }
+
+    @Override
+    public void clearAll() {
+        for (CacheTier tier : tiers) {
+            tier.pending.clear();
+            tier.getCache().clearAll();
+        }
+    }
+
+    @Override
+    public List<String> getAllKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (CacheTier tier : tiers) {
+            keys.addAll(tier.pending.keySet());
+            keys.addAll(tier.getCache().getAllKeys());
+        }
+        return new ArrayList<>(keys);
+    }
+
+    @Override
+    public List<String> getKeysWithPrefix(String prefix) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (CacheTier tier : tiers) {
+            for (String key : tier.pending.keySet()) {
+                if (key.startsWith(prefix))
+                    keys.add(key);
+            }
+            keys.addAll(tier.getCache().getKeysWithPrefix(prefix));
+        }
+        return new ArrayList<>(keys);
+    }
+
+    @Override
+    public int size() {
+        return getAllKeys().size();
+    }
+
+    /**
+     * Write the pending entries and close the tiers that hold resources.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null)
+            flusher.shutdown();
+        flush();
+        for (CacheTier tier : tiers) {
+            if (tier.getCache() instanceof Closeable)
+                ((Closeable) tier.getCache()).close();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Mensa;
+
+import java.util.*;
+
+/**
+ * An immutable trigram index over the normalized name, city and address of canteens.
+ * <p>
+ * A query is normalized once, the posting lists of its trigrams are intersected and only the
+ * remaining candidates are compared with the query. Queries shorter than three characters scan
+ * the precomputed normalized fields, which still avoids lower casing every canteen per call.
+ * <p>
+ * {@link #withMensa(Mensa)} returns an updated copy that shares every posting list the new canteen
+ * does not touch, so single canteens can be added without rebuilding the whole index.
+ */
+public class CanteenSearchIndex {
+
+    private static final int[] NO_DOCS = new int[0];
+
+    // ranks of the different kinds of matches, lower is better
+    private static final int NAME_PREFIX = 0;
+    private static final int NAME_WORD_PREFIX = 1;
+    private static final int NAME_CONTAINS = 2;
+    private static final int CITY_CONTAINS = 3;
+    private static final int ADDRESS_CONTAINS = 4;
+
+    private final Mensa[] docs;
+    private final String[] names, cities, addresses;
+    private final boolean[] removed;
+    private final int removedCount;
+    private final Map<Integer, Integer> docsById;
+    private final Map<Long, int[]> postings;
+
+    private CanteenSearchIndex(Mensa[] docs, String[] names, String[] cities, String[] addresses, boolean[] removed,
+                               int removedCount, Map<Integer, Integer> docsById, Map<Long, int[]> postings) {
+        this.docs = docs;
+        this.names = names;
+        this.cities = cities;
+        this.addresses = addresses;
+        this.removed = removed;
+        this.removedCount = removedCount;
+        this.docsById = docsById;
+        this.postings = postings;
+    }
+
+    /**
+     * Build an index over the given canteens.
+     *
+     * @param canteens the canteens to index
+     * @return the index
+     */
+    public static CanteenSearchIndex build(Collection<Mensa> canteens) {
+        int size = canteens.size();
+        Mensa[] docs = new Mensa[size];
+        String[] names = new String[size], cities = new String[size], addresses = new String[size];
+        Map<Integer, Integer> docsById = new HashMap<>();
+        Map<Long, IntList> lists = new HashMap<>();
+
+        int doc = 0;
+        for (Mensa mensa : canteens) {
+            docs[doc] = mensa;
+            names[doc] = normalize(mensa.getName());
+            cities[doc] = normalize(mensa.getCity());
+            addresses[doc] = normalize(mensa.getAddress());
+            docsById.put(mensa.getId(), doc);
+            for (long trigram : trigrams(names[doc], cities[doc], addresses[doc])) {
+                lists.computeIfAbsent(trigram, t -> new IntList()).add(doc);
+            }
+            doc++;
+        }
+
+        Map<Long, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, IntList> e : lists.entrySet()) {
+            postings.put(e.getKey(), e.getValue().toArray());
+        }
+        return new CanteenSearchIndex(docs, names, cities, addresses, new boolean[size], 0, docsById, postings);
+    }
+
+    /**
+     * Create a copy of this index that contains the given canteen, replacing a canteen with the same id.
+     *
+     * @param mensa the canteen to add
+     * @return the updated index
+     */
+    public CanteenSearchIndex withMensa(Mensa mensa) {
+        boolean replaces = docsById.containsKey(mensa.getId());
+        if (replaces && removedCount + 1 > docs.length / 2) {
+            // too many stale documents, start over
+            List<Mensa> canteens = new ArrayList<>(getCanteens());
+            canteens.removeIf(m -> m.getId() == mensa.getId());
+            canteens.add(mensa);
+            return build(canteens);
+        }
+
+        int doc = docs.length;
+        Mensa[] newDocs = Arrays.copyOf(docs, doc + 1);
+        String[] newNames = Arrays.copyOf(names, doc + 1);
+        String[] newCities = Arrays.copyOf(cities, doc + 1);
+        String[] newAddresses = Arrays.copyOf(addresses, doc + 1);
+        boolean[] newRemoved = Arrays.copyOf(removed, doc + 1);
+        Map<Integer, Integer> newDocsById = new HashMap<>(docsById);
+
+        if (replaces)
+            newRemoved[docsById.get(mensa.getId())] = true;
+        newDocs[doc] = mensa;
+        newNames[doc] = normalize(mensa.getName());
+        newCities[doc] = normalize(mensa.getCity());
+        newAddresses[doc] = normalize(mensa.getAddress());
+        newDocsById.put(mensa.getId(), doc);
+
+        Map<Long, int[]> newPostings = new HashMap<>(postings);
+        for (long trigram : trigrams(newNames[doc], newCities[doc], newAddresses[doc])) {
+            int[] list = newPostings.getOrDefault(trigram, NO_DOCS);
+            int[] extended = Arrays.copyOf(list, list.length + 1);
+            extended[list.length] = doc;
+            newPostings.put(trigram, extended);
+        }
+        return new CanteenSearchIndex(newDocs, newNames, newCities, newAddresses, newRemoved,
+                removedCount + (replaces ? 1 : 0), newDocsById, newPostings);
+    }
+
+    /**
+     * Search for canteens whose name, city or address contains the query, ignoring case and accents.
+     * Results are ranked: name prefix matches first, then matches at the start of a word of the name,
+     * then other name matches, then city and finally address matches. Shorter names rank first within a rank.
+     *
+     * @param query the search string
+     * @param limit the maximum number of results
+     * @return the matching canteens, best match first
+     */
+    public List<Mensa> search(String query, int limit) {
+        if (query == null || limit <= 0)
+            return Collections.emptyList();
+        String q = normalize(query).trim();
+        if (q.isEmpty())
+            return Collections.emptyList();
+
+        int[] candidates = q.length() < 3 ? null : candidates(q);
+        int count = candidates == null ? docs.length : candidates.length;
+
+        // score, name length and document packed into one long, so that sorting needs no objects
+        long[] hits = new long[count];
+        int hitCount = 0;
+        for (int i = 0; i < count; i++) {
+            int doc = candidates == null ? i : candidates[i];
+            if (removed[doc])
+                continue;
+            int rank = rank(doc, q);
+            if (rank >= 0)
+                hits[hitCount++] = ((long) rank << 52) | ((long) Math.min(names[doc].length(), 0xFFFFF) << 32) | doc;
+        }
+        Arrays.sort(hits, 0, hitCount);
+
+        int resultCount = Math.min(hitCount, limit);
+        List<Mensa> result = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            result.add(docs[(int) hits[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of canteens in this index
+     */
+    public int size() {
+        return docs.length - removedCount;
+    }
+
+    private List<Mensa> getCanteens() {
+        List<Mensa> canteens = new ArrayList<>(size());
+        for (int doc = 0; doc < docs.length; doc++) {
+            if (!removed[doc])
+                canteens.add(docs[doc]);
+        }
+        return canteens;
+    }
+
+    private int rank(int doc, String q) {
+        String name = names[doc];
+        int index = name.indexOf(q);
+        if (index == 0)
+            return NAME_PREFIX;
+        if (index > 0) {
+            // look for an occurrence at the start of a word
+            for (int i = index; i >= 0; i = name.indexOf(q, i + 1)) {
+                if (!Character.isLetterOrDigit(name.charAt(i - 1)))
+                    return NAME_WORD_PREFIX;
+            }
+            return NAME_CONTAINS;
+        }
+        if (cities[doc].contains(q))
+            return CITY_CONTAINS;
+        if (addresses[doc].contains(q))
+            return ADDRESS_CONTAINS;
+        return -1;
+    }
+
+    private int[] candidates(String q) {
+        int[][] lists = new int[q.length() - 2][];
+        for (int i = 0; i < lists.length; i++) {
+            int[] list = postings.get(trigram(q, i));
+            if (list == null)
+                return NO_DOCS;
+            lists[i] = list;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        int[] result = lists[0];
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = intersect(result, lists[i]);
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+
+    private static Set<Long> trigrams(String... fields) {
+        Set<Long> trigrams = new HashSet<>();
+        for (String field : fields) {
+            for (int i = 0; i + 3 <= field.length(); i++) {
+                trigrams.add(trigram(field, i));
+            }
+        }
+        return trigrams;
+    }
+
+    private static long trigram(String s, int index) {
+        return ((long) s.charAt(index) << 32) | ((long) s.charAt(index + 1) << 16) | s.charAt(index + 2);
+    }
+
+    /**
+     * Normalize a string for searching: lower case, without accents and with "ß" spelled as "ss".
+     *
+     * @param s the string, may be null
+     * @return the normalized string, empty for null
+     */
+    public static String normalize(String s) {
+        return TextNormalizer.normalize(s);
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Mensa;
+
+import java.util.*;
+
+/**
+ * An immutable KD-tree over the coordinates of canteens.
+ * <p>
+ * Coordinates are stored as points on the unit sphere in primitive arrays. The straight line
+ * distance between two such points grows monotonically with their great circle distance, so the tree
+ * can prune with plain euclidean bounds and still return results ordered by distance on the earth.
+ * Canteens without coordinates, or with the placeholder (0, 0), are not indexed.
+ */
+public class CanteenSpatialIndex {
+
+    /**
+     * Mean radius of the earth in kilometers.
+     */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final Mensa[] docs;
+    // the tree is implicit: the median of [lo, hi) is the node, its children are the halves
+    private final double[] x, y, z;
+    private final byte[] axes;
+
+    private CanteenSpatialIndex(Mensa[] docs, double[] x, double[] y, double[] z, byte[] axes) {
+        this.docs = docs;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.axes = axes;
+    }
+
+    /**
+     * Build an index over the given canteens.
+     *
+     * @param canteens the canteens to index
+     * @return the index
+     */
+    public static CanteenSpatialIndex build(Collection<Mensa> canteens) {
+        List<Mensa> located = new ArrayList<>(canteens.size());
+        List<double[]> points = new ArrayList<>(canteens.size());
+        for (Mensa mensa : canteens) {
+            double[] point = toPoint(mensa.getCoordinates());
+            if (point != null) {
+                located.add(mensa);
+                points.add(point);
+            }
+        }
+
+        int size = located.size();
+        int[] order = new int[size];
+        double[][] coordinates = new double[3][size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            double[] point = points.get(i);
+            coordinates[0][i] = point[0];
+            coordinates[1][i] = point[1];
+            coordinates[2][i] = point[2];
+        }
+        byte[] axes = new byte[size];
+        buildTree(order, coordinates, axes, 0, size);
+
+        Mensa[] docs = new Mensa[size];
+        double[] x = new double[size], y = new double[size], z = new double[size];
+        for (int i = 0; i < size; i++) {
+            docs[i] = located.get(order[i]);
+            x[i] = coordinates[0][order[i]];
+            y[i] = coordinates[1][order[i]];
+            z[i] = coordinates[2][order[i]];
+        }
+        return new CanteenSpatialIndex(docs, x, y, z, axes);
+    }
+
+    private static void buildTree(int[] order, double[][] coordinates, byte[] axes, int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        // split along the axis with the largest spread
+        int axis = 0;
+        double bestSpread = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double value = coordinates[a][order[i]];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > bestSpread) {
+                bestSpread = max - min;
+                axis = a;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(order, coordinates[axis], lo, hi - 1, mid);
+        axes[mid] = (byte) axis;
+        buildTree(order, coordinates, axes, lo, mid);
+        buildTree(order, coordinates, axes, mid + 1, hi);
+    }
+
+    // quickselect: moves the k-th smallest value of [lo, hi] to k
+    private static void select(int[] order, double[] values, int lo, int hi, int k) {
+        while (hi > lo) {
+            double pivot = values[order[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (values[order[i]] < pivot) i++;
+                while (values[order[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find the canteens closest to a location.
+     *
+     * @param lat latitude in degrees
+     * @param lon longitude in degrees
+     * @param k   the maximum number of canteens
+     * @return up to k canteens, closest first
+     */
+    public List<Mensa> findNearest(double lat, double lon, int k) {
+        if (k <= 0 || docs.length == 0)
+            return Collections.emptyList();
+        double[] point = toPoint(lat, lon);
+        Neighbours neighbours = new Neighbours(Math.min(k, docs.length));
+        nearest(point[0], point[1], point[2], 0, docs.length, neighbours);
+        return neighbours.toList(docs);
+    }
+
+    private void nearest(double px, double py, double pz, int lo, int hi, Neighbours neighbours) {
+        if (lo >= hi)
+            return;
+        int mid = (lo + hi) >>> 1;
+        neighbours.offer(mid, squaredDistance(mid, px, py, pz));
+        if (hi - lo == 1)
+            return;
+
+        double diff = axisValue(axes[mid], px, py, pz) - axisValue(axes[mid], x[mid], y[mid], z[mid]);
+        if (diff < 0) {
+            nearest(px, py, pz, lo, mid, neighbours);
+            if (diff * diff < neighbours.bound())
+                nearest(px, py, pz, mid + 1, hi, neighbours);
+        } else {
+            nearest(px, py, pz, mid + 1, hi, neighbours);
+            if (diff * diff < neighbours.bound())
+                nearest(px, py, pz, lo, mid, neighbours);
+        }
+    }
+
+    /**
+     * Find all canteens within a distance of a location.
+     *
+     * @param lat      latitude in degrees
+     * @param lon      longitude in degrees
+     * @param radiusKm the great circle distance in kilometers
+     * @return the canteens within the distance, closest first
+     */
+    public List<Mensa> findWithin(double lat, double lon, double radiusKm) {
+        if (radiusKm < 0 || docs.length == 0)
+            return Collections.emptyList();
+        double[] point = toPoint(lat, lon);
+        double angle = Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        // a tiny tolerance keeps canteens that are exactly on the border
+        double maxSquared = chord * chord * (1 + 1e-12);
+
+        int[] hits = new int[16];
+        double[] distances = new double[16];
+        int count = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = docs.length;
+        while (top > 0) {
+            int hi = stack[--top];
+            int lo = stack[--top];
+            if (lo >= hi)
+                continue;
+            int mid = (lo + hi) >>> 1;
+            double distance = squaredDistance(mid, point[0], point[1], point[2]);
+            if (distance <= maxSquared) {
+                if (count == hits.length) {
+                    hits = Arrays.copyOf(hits, count * 2);
+                    distances = Arrays.copyOf(distances, count * 2);
+                }
+                hits[count] = mid;
+                distances[count] = distance;
+                count++;
+            }
+            double diff = axisValue(axes[mid], point[0], point[1], point[2]) - axisValue(axes[mid], x[mid], y[mid], z[mid]);
+            if (top + 4 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            if (diff <= 0 || diff * diff <= maxSquared) {
+                stack[top++] = lo;
+                stack[top++] = mid;
+            }
+            if (diff >= 0 || diff * diff <= maxSquared) {
+                stack[top++] = mid + 1;
+                stack[top++] = hi;
+            }
+        }
+
+        // the bits of a non negative float sort like the float, so distance and hit fit into one long
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = ((long) Float.floatToIntBits((float) distances[i]) << 32) | i;
+        }
+        Arrays.sort(sorted);
+        List<Mensa> result = new ArrayList<>(count);
+        for (long entry : sorted) {
+            result.add(docs[hits[(int) entry]]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of canteens with coordinates in this index
+     */
+    public int size() {
+        return docs.length;
+    }
+
+    /**
+     * Compute the great circle distance between two locations with the haversine formula.
+     *
+     * @return the distance in kilometers
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private double squaredDistance(int doc, double px, double py, double pz) {
+        double dx = x[doc] - px, dy = y[doc] - py, dz = z[doc] - pz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double axisValue(int axis, double x, double y, double z) {
+        return axis == 0 ? x : axis == 1 ? y : z;
+    }
+
+    private static double[] toPoint(List<Double> coordinates) {
+        if (coordinates == null || coordinates.size() < 2)
+            return null;
+        Double lat = coordinates.get(0), lon = coordinates.get(1);
+        if (lat == null || lon == null || lat.isNaN() || lon.isNaN() || (lat == 0 && lon == 0))
+            return null;
+        return toPoint(lat, lon);
+    }
+
+    private static double[] toPoint(double lat, double lon) {
+        double phi = Math.toRadians(lat), lambda = Math.toRadians(lon);
+        double cosPhi = Math.cos(phi);
+        return new double[]{cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    /**
+     * A bounded max heap of the closest documents found so far.
+     */
+    private static class Neighbours {
+        private final int[] docs;
+        private final double[] distances;
+        private int size;
+
+        Neighbours(int capacity) {
+            docs = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        double bound() {
+            return size < docs.length ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int doc, double distance) {
+            if (size < docs.length) {
+                docs[size] = doc;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                docs[0] = doc;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i])
+                    return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i, left = 2 * i + 1, right = left + 1;
+                if (left < size && distances[left] > distances[largest])
+                    largest = left;
+                if (right < size && distances[right] > distances[largest])
+                    largest = right;
+                if (largest == i)
+                    return;
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int doc = docs[i];
+            docs[i] = docs[j];
+            docs[j] = doc;
+            double distance = distances[i];
+            distances[i] = distances[j];
+            distances[j] = distance;
+        }
+
+        List<Mensa> toList(Mensa[] all) {
+            // popping the max heap yields the farthest first
+            Mensa[] result = new Mensa[size];
+            while (size > 0) {
+                result[size - 1] = all[docs[0]];
+                swap(0, --size);
+                siftDown(0);
+            }
+            return Arrays.asList(result);
+        }
+    }
+}
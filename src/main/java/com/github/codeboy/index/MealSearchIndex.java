@@ -0,0 +1,409 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Meal;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index over the names, categories and notes of the meals of cached days.
+ * <p>
+ * Postings are keyed by canteen id and epoch day, packed into one {@code long}, and every day keeps which of
+ * its meals contain each word, so a query only matches a day if one meal contains all of its words. Indexing
+ * a day replaces whatever was indexed for that day before. A query word matches every indexed word that
+ * contains it, so "schnitzel" also finds "Jägerschnitzel". The indexed words are found through their
+ * bigrams and trigrams, never by scanning the vocabulary or the cached meals themselves.
+ */
+public class MealSearchIndex {
+
+    private static final long BIGRAM = 1L << 48;
+
+    private final Map<String, LongSet> postings = new HashMap<>();
+    // the indexed words by the bigrams and trigrams they contain
+    private final Map<Long, Set<String>> grams = new HashMap<>();
+    // the meals of a day containing each of its words, by the position of the meal in the day
+    private final Map<Long, Map<String, BitSet>> mealsByDay = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index the meals of a day, replacing the previously indexed meals of that day.
+     *
+     * @param mensaId  the id of the canteen
+     * @param epochDay the day, see {@link LocalDate#toEpochDay()}
+     * @param meals    the meals of the day
+     */
+    public void index(int mensaId, long epochDay, List<Meal> meals) {
+        Map<String, BitSet> tokens = new HashMap<>();
+        List<String> buffer = new ArrayList<>();
+        for (int i = 0; i < meals.size(); i++) {
+            Meal meal = meals.get(i);
+            buffer.clear();
+            TextNormalizer.tokenize(TextNormalizer.normalize(meal.getName()), buffer);
+            TextNormalizer.tokenize(TextNormalizer.normalize(meal.getCategory()), buffer);
+            if (meal.getNotes() != null) {
+                for (String note : meal.getNotes()) {
+                    TextNormalizer.tokenize(TextNormalizer.normalize(note), buffer);
+                }
+            }
+            for (String token : buffer) {
+                tokens.computeIfAbsent(token, t -> new BitSet()).set(i);
+            }
+        }
+
+        long key = key(mensaId, epochDay);
+        lock.writeLock().lock();
+        try {
+            removeKey(key);
+            for (String token : tokens.keySet()) {
+                LongSet days = postings.get(token);
+                if (days == null) {
+                    days = new LongSet();
+                    postings.put(token, days);
+                    for (long gram : grams(token)) {
+                        grams.computeIfAbsent(gram, g -> new HashSet<>()).add(token);
+                    }
+                }
+                days.add(key);
+            }
+            mealsByDay.put(key, tokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the meals of a day from the index.
+     *
+     * @param mensaId  the id of the canteen
+     * @param epochDay the day, see {@link LocalDate#toEpochDay()}
+     */
+    public void remove(int mensaId, long epochDay) {
+        lock.writeLock().lock();
+        try {
+            removeKey(key(mensaId, epochDay));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove everything from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            grams.clear();
+            mealsByDay.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeKey(long key) {
+        Map<String, BitSet> tokens = mealsByDay.remove(key);
+        if (tokens == null)
+            return;
+        for (String token : tokens.keySet()) {
+            LongSet days = postings.get(token);
+            if (days != null && days.remove(key) && days.isEmpty()) {
+                postings.remove(token);
+                for (long gram : grams(token)) {
+                    Set<String> words = grams.get(gram);
+                    if (words != null && words.remove(token) && words.isEmpty())
+                        grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find all indexed days with a meal matching every word of the query.
+     *
+     * @param query the words to search for
+     * @return the matching days, ordered by date and canteen id
+     */
+    public List<Hit> search(String query) {
+        return search(query, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Find the indexed days with a meal matching every word of the query.
+     *
+     * @param query        the words to search for
+     * @param mensaIds     the canteens to search in, or null for all
+     * @param fromEpochDay the first day to search, inclusive
+     * @param toEpochDay   the last day to search, inclusive
+     * @return the matching days, ordered by date and canteen id
+     */
+    public List<Hit> search(String query, Collection<Integer> mensaIds, long fromEpochDay, long toEpochDay) {
+        List<String> terms = TextNormalizer.tokenize(TextNormalizer.normalize(query));
+        if (terms.isEmpty())
+            return Collections.emptyList();
+
+        Set<Integer> ids = mensaIds == null ? null : new HashSet<>(mensaIds);
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Set<String>> words = new ArrayList<>(terms.size());
+            LongSet result = null;
+            for (String term : terms) {
+                Set<String> matching = wordsContaining(term);
+                if (matching.isEmpty())
+                    return Collections.emptyList();
+                words.add(matching);
+                LongSet days = new LongSet();
+                for (String word : matching) {
+                    days.addAll(postings.get(word));
+                }
+                result = result == null ? days : result.retainAll(days);
+                if (result.isEmpty())
+                    return Collections.emptyList();
+            }
+
+            for (long key : result.toArray()) {
+                int mensaId = (int) (key >>> 32);
+                long epochDay = (int) key;
+                if (epochDay < fromEpochDay || epochDay > toEpochDay || (ids != null && !ids.contains(mensaId)))
+                    continue;
+                // the words may be spread over several meals of the day, only a meal with all of them matches
+                BitSet meals = null;
+                for (Set<String> matching : words) {
+                    BitSet termMeals = new BitSet();
+                    for (Map.Entry<String, BitSet> e : mealsByDay.get(key).entrySet()) {
+                        if (matching.contains(e.getKey()))
+                            termMeals.or(e.getValue());
+                    }
+                    if (meals == null) {
+                        meals = termMeals;
+                    } else {
+                        meals.and(termMeals);
+                    }
+                    if (meals.isEmpty())
+                        break;
+                }
+                if (!meals.isEmpty())
+                    hits.add(new Hit(mensaId, epochDay, meals.stream().toArray()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingLong(Hit::getEpochDay).thenComparingInt(Hit::getMensaId));
+        return hits;
+    }
+
+    /**
+     * Find the indexed words containing a term by intersecting the words of its trigrams,
+     * or taking the words of its bigram if it has only two letters.
+     */
+    private Set<String> wordsContaining(String term) {
+        List<Set<String>> lists = new ArrayList<>();
+        if (term.length() == 2) {
+            Set<String> words = grams.get(bigram(term, 0));
+            if (words == null)
+                return Collections.emptySet();
+            lists.add(words);
+        } else {
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                Set<String> words = grams.get(trigram(term, i));
+                if (words == null)
+                    return Collections.emptySet();
+                lists.add(words);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+        }
+        Set<String> result = new HashSet<>();
+        // the trigrams may occur in a word without forming the term, so the candidates are checked
+        for (String word : lists.get(0)) {
+            if (word.contains(term))
+                result.add(word);
+        }
+        return result;
+    }
+
+    private static Set<Long> grams(String word) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 2 <= word.length(); i++) {
+            grams.add(bigram(word, i));
+            if (i + 3 <= word.length())
+                grams.add(trigram(word, i));
+        }
+        return grams;
+    }
+
+    private static long bigram(String s, int index) {
+        return BIGRAM | ((long) s.charAt(index) << 16) | s.charAt(index + 1);
+    }
+
+    private static long trigram(String s, int index) {
+        return ((long) s.charAt(index) << 32) | ((long) s.charAt(index + 1) << 16) | s.charAt(index + 2);
+    }
+
+    /**
+     * @return the number of indexed days
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return mealsByDay.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long key(int mensaId, long epochDay) {
+        return ((long) mensaId << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A day of a canteen with at least one matching meal.
+     */
+    public static final class Hit {
+        private final int mensaId;
+        private final long epochDay;
+        private final int[] meals;
+
+        private Hit(int mensaId, long epochDay, int[] meals) {
+            this.mensaId = mensaId;
+            this.epochDay = epochDay;
+            this.meals = meals;
+        }
+
+        public int getMensaId() {
+            return mensaId;
+        }
+
+        public long getEpochDay() {
+            return epochDay;
+        }
+
+        public LocalDate getDate() {
+            return LocalDate.ofEpochDay(epochDay);
+        }
+
+        /**
+         * @return the positions of the matching meals in the indexed meals of the day, in ascending order
+         */
+        public int[] getMealIndexes() {
+            return meals.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Hit))
+                return false;
+            Hit hit = (Hit) o;
+            return mensaId == hit.mensaId && epochDay == hit.epochDay && Arrays.equals(meals, hit.meals);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(key(mensaId, epochDay)) + Arrays.hashCode(meals);
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{" +
+                    "mensaId=" + mensaId +
+                    ", date=" + getDate() +
+                    '}';
+        }
+    }
+
+    /**
+     * A minimal open addressing set of longs, avoiding a boxed object per posting.
+     */
+    private static final class LongSet {
+        private static final long FREE = Long.MIN_VALUE;
+
+        private long[] table = newTable(8);
+        private int size;
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, FREE);
+            return table;
+        }
+
+        private int slot(long value, long[] table) {
+            int mask = table.length - 1;
+            int i = Long.hashCode(value * 0x9E3779B97F4A7C15L) & mask;
+            while (table[i] != FREE && table[i] != value) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        boolean add(long value) {
+            if ((size + 1) * 2 > table.length)
+                rehash(table.length * 2);
+            int i = slot(value, table);
+            if (table[i] == value)
+                return false;
+            table[i] = value;
+            size++;
+            return true;
+        }
+
+        void addAll(LongSet other) {
+            for (long value : other.table) {
+                if (value != FREE)
+                    add(value);
+            }
+        }
+
+        boolean contains(long value) {
+            return table[slot(value, table)] == value;
+        }
+
+        boolean remove(long value) {
+            int i = slot(value, table);
+            if (table[i] != value)
+                return false;
+            table[i] = FREE;
+            size--;
+            // reinsert the rest of the cluster, so that lookups do not stop early
+            int mask = table.length - 1;
+            for (int j = (i + 1) & mask; table[j] != FREE; j = (j + 1) & mask) {
+                long moved = table[j];
+                table[j] = FREE;
+                table[slot(moved, table)] = moved;
+            }
+            return true;
+        }
+
+        LongSet retainAll(LongSet other) {
+            LongSet result = new LongSet();
+            for (long value : table) {
+                if (value != FREE && other.contains(value))
+                    result.add(value);
+            }
+            return result;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] toArray() {
+            long[] values = new long[size];
+            int n = 0;
+            for (long value : table) {
+                if (value != FREE)
+                    values[n++] = value;
+            }
+            return values;
+        }
+
+        private void rehash(int capacity) {
+            long[] newTable = newTable(capacity);
+            for (long value : table) {
+                if (value != FREE)
+                    newTable[slot(value, newTable)] = value;
+            }
+            table = newTable;
+        }
+    }
+}
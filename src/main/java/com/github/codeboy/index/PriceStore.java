@@ -0,0 +1,309 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Prices;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A columnar store of the prices of cached meals, per canteen and day.
+ * <p>
+ * The prices of a canteen live in one immutable column: the sorted days, the offset of every day into
+ * the price arrays and one {@code int[]} of cents per {@link Prices.Audience}. Updating a day replaces the
+ * column of its canteen, so readers never lock and aggregations over months run over primitive arrays.
+ * Meals without a price for an audience are stored as {@link Prices#MISSING} and skipped by aggregations.
+ */
+public class PriceStore {
+
+    private final Map<Integer, Column> columns = new ConcurrentHashMap<>();
+
+    /**
+     * Store the prices of the meals of a day, replacing the previously stored prices of that day.
+     *
+     * @param mensaId  the id of the canteen
+     * @param epochDay the day, see {@link LocalDate#toEpochDay()}
+     * @param meals    the meals of the day
+     */
+    public void record(int mensaId, long epochDay, List<Meal> meals) {
+        int[][] cents = new int[Prices.Audience.values().length][meals.size()];
+        for (int i = 0; i < meals.size(); i++) {
+            Prices prices = meals.get(i).getPrices();
+            for (Prices.Audience audience : Prices.Audience.values()) {
+                cents[audience.ordinal()][i] = prices == null ? Prices.MISSING : prices.getCents(audience);
+            }
+        }
+        int day = toDay(epochDay);
+        columns.compute(mensaId, (id, column) -> (column == null ? Column.EMPTY : column).with(day, cents));
+    }
+
+    /**
+     * Remove the prices of a day.
+     *
+     * @param mensaId  the id of the canteen
+     * @param epochDay the day, see {@link LocalDate#toEpochDay()}
+     */
+    public void remove(int mensaId, long epochDay) {
+        int day = toDay(epochDay);
+        columns.computeIfPresent(mensaId, (id, column) -> {
+            Column updated = column.without(day);
+            return updated.days.length == 0 ? null : updated;
+        });
+    }
+
+    /**
+     * Remove all stored prices.
+     */
+    public void clear() {
+        columns.clear();
+    }
+
+    /**
+     * Get the prices of the meals of a day, in the order of the meals.
+     *
+     * @return the prices in cents, {@link Prices#MISSING} for meals without a price, or an empty array
+     */
+    public int[] getPrices(int mensaId, long epochDay, Prices.Audience audience) {
+        Column column = columns.get(mensaId);
+        if (column == null)
+            return new int[0];
+        int index = Arrays.binarySearch(column.days, toDay(epochDay));
+        if (index < 0)
+            return new int[0];
+        return Arrays.copyOfRange(column.cents[audience.ordinal()], column.offsets[index], column.offsets[index + 1]);
+    }
+
+    /**
+     * @return the lowest price of the meals of a day in cents, or {@link Prices#MISSING}
+     */
+    public int getMinPrice(int mensaId, long epochDay, Prices.Audience audience) {
+        Column column = columns.get(mensaId);
+        if (column == null)
+            return Prices.MISSING;
+        int index = Arrays.binarySearch(column.days, toDay(epochDay));
+        if (index < 0)
+            return Prices.MISSING;
+        int[] cents = column.cents[audience.ordinal()];
+        int min = Prices.MISSING;
+        for (int i = column.offsets[index]; i < column.offsets[index + 1]; i++) {
+            if (cents[i] != Prices.MISSING && (min == Prices.MISSING || cents[i] < min))
+                min = cents[i];
+        }
+        return min;
+    }
+
+    /**
+     * @return the average price of all meals with a price within the days, in cents, or NaN if there are none
+     */
+    public double getAveragePrice(int mensaId, long fromEpochDay, long toEpochDay, Prices.Audience audience) {
+        Column column = columns.get(mensaId);
+        if (column == null)
+            return Double.NaN;
+        int[] range = column.range(fromEpochDay, toEpochDay);
+        int[] cents = column.cents[audience.ordinal()];
+        long sum = 0;
+        int count = 0;
+        for (int i = column.offsets[range[0]]; i < column.offsets[range[1]]; i++) {
+            if (cents[i] != Prices.MISSING) {
+                sum += cents[i];
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * Get the average price of every day within a range, e.g. to show the price trend of a canteen.
+     *
+     * @return one average in cents per day from the first to the last day, NaN for days without prices
+     */
+    public double[] getDailyAverages(int mensaId, long fromEpochDay, long toEpochDay, Prices.Audience audience) {
+        double[] averages = new double[(int) Math.max(0, toEpochDay - fromEpochDay + 1)];
+        Arrays.fill(averages, Double.NaN);
+        Column column = columns.get(mensaId);
+        if (column == null)
+            return averages;
+        int[] range = column.range(fromEpochDay, toEpochDay);
+        int[] cents = column.cents[audience.ordinal()];
+        for (int d = range[0]; d < range[1]; d++) {
+            long sum = 0;
+            int count = 0;
+            for (int i = column.offsets[d]; i < column.offsets[d + 1]; i++) {
+                if (cents[i] != Prices.MISSING) {
+                    sum += cents[i];
+                    count++;
+                }
+            }
+            if (count > 0)
+                averages[(int) (column.days[d] - fromEpochDay)] = (double) sum / count;
+        }
+        return averages;
+    }
+
+    /**
+     * Find the cheapest meal of a day among some canteens.
+     *
+     * @param mensaIds the canteens to compare
+     * @param epochDay the day, see {@link LocalDate#toEpochDay()}
+     * @param audience the audience whose prices are compared
+     * @return the cheapest meal, or null if none of the canteens has a price for that day
+     */
+    public Cheapest findCheapest(Collection<Integer> mensaIds, long epochDay, Prices.Audience audience) {
+        int day = toDay(epochDay);
+        Cheapest cheapest = null;
+        for (int mensaId : mensaIds) {
+            Column column = columns.get(mensaId);
+            if (column == null)
+                continue;
+            int index = Arrays.binarySearch(column.days, day);
+            if (index < 0)
+                continue;
+            int[] cents = column.cents[audience.ordinal()];
+            for (int i = column.offsets[index]; i < column.offsets[index + 1]; i++) {
+                if (cents[i] != Prices.MISSING && (cheapest == null || cents[i] < cheapest.cents))
+                    cheapest = new Cheapest(mensaId, epochDay, i - column.offsets[index], cents[i]);
+            }
+        }
+        return cheapest;
+    }
+
+    /**
+     * @return the ids of the canteens with stored prices
+     */
+    public Set<Integer> getMensaIds() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    private static int toDay(long epochDay) {
+        return Math.toIntExact(epochDay);
+    }
+
+    /**
+     * The cheapest meal found by {@link #findCheapest(Collection, long, Prices.Audience)}.
+     */
+    public static final class Cheapest {
+        private final int mensaId;
+        private final long epochDay;
+        private final int mealIndex;
+        private final int cents;
+
+        private Cheapest(int mensaId, long epochDay, int mealIndex, int cents) {
+            this.mensaId = mensaId;
+            this.epochDay = epochDay;
+            this.mealIndex = mealIndex;
+            this.cents = cents;
+        }
+
+        public int getMensaId() {
+            return mensaId;
+        }
+
+        public LocalDate getDate() {
+            return LocalDate.ofEpochDay(epochDay);
+        }
+
+        /**
+         * @return the position of the meal in the cached meals of the day
+         */
+        public int getMealIndex() {
+            return mealIndex;
+        }
+
+        public int getCents() {
+            return cents;
+        }
+
+        @Override
+        public String toString() {
+            return "Cheapest{" +
+                    "mensaId=" + mensaId +
+                    ", date=" + getDate() +
+                    ", mealIndex=" + mealIndex +
+                    ", cents=" + cents +
+                    '}';
+        }
+    }
+
+    /**
+     * The immutable prices of one canteen.
+     */
+    private static final class Column {
+        static final Column EMPTY = new Column(new int[0], new int[1], new int[Prices.Audience.values().length][0]);
+
+        final int[] days;
+        // the prices of days[i] are at [offsets[i], offsets[i + 1])
+        final int[] offsets;
+        final int[][] cents;
+
+        Column(int[] days, int[] offsets, int[][] cents) {
+            this.days = days;
+            this.offsets = offsets;
+            this.cents = cents;
+        }
+
+        Column with(int day, int[][] dayCents) {
+            int index = Arrays.binarySearch(days, day);
+            boolean replace = index >= 0;
+            int position = replace ? index : -index - 1;
+            int removedLength = replace ? offsets[position + 1] - offsets[position] : 0;
+            int addedLength = dayCents[0].length;
+
+            int[] newDays = replace ? days.clone() : new int[days.length + 1];
+            int[] newOffsets = new int[newDays.length + 1];
+            if (!replace) {
+                System.arraycopy(days, 0, newDays, 0, position);
+                newDays[position] = day;
+                System.arraycopy(days, position, newDays, position + 1, days.length - position);
+            }
+            System.arraycopy(offsets, 0, newOffsets, 0, position + 1);
+            int shift = addedLength - removedLength;
+            int oldNext = replace ? position + 1 : position;
+            for (int i = position + 1; i < newOffsets.length; i++, oldNext++) {
+                newOffsets[i] = offsets[oldNext] + shift;
+            }
+
+            int start = offsets[position];
+            int oldEnd = start + removedLength;
+            int[][] newCents = new int[cents.length][];
+            for (int a = 0; a < cents.length; a++) {
+                int[] column = new int[cents[a].length + shift];
+                System.arraycopy(cents[a], 0, column, 0, start);
+                System.arraycopy(dayCents[a], 0, column, start, addedLength);
+                System.arraycopy(cents[a], oldEnd, column, start + addedLength, cents[a].length - oldEnd);
+                newCents[a] = column;
+            }
+            return new Column(newDays, newOffsets, newCents);
+        }
+
+        Column without(int day) {
+            int index = Arrays.binarySearch(days, day);
+            if (index < 0)
+                return this;
+            Column emptied = with(day, new int[cents.length][0]);
+            int[] newDays = new int[days.length - 1];
+            int[] newOffsets = new int[days.length];
+            System.arraycopy(emptied.days, 0, newDays, 0, index);
+            System.arraycopy(emptied.days, index + 1, newDays, index, newDays.length - index);
+            System.arraycopy(emptied.offsets, 0, newOffsets, 0, index + 1);
+            System.arraycopy(emptied.offsets, index + 2, newOffsets, index + 1, newOffsets.length - index - 1);
+            return new Column(newDays, newOffsets, emptied.cents);
+        }
+
+        // the indexes of the first day within the range and of the first day after it
+        int[] range(long fromEpochDay, long toEpochDay) {
+            int from = lowerBound(fromEpochDay);
+            int to = toEpochDay == Long.MAX_VALUE ? days.length : lowerBound(toEpochDay + 1);
+            return new int[]{from, Math.max(from, to)};
+        }
+
+        private int lowerBound(long epochDay) {
+            if (epochDay <= Integer.MIN_VALUE)
+                return 0;
+            if (epochDay > Integer.MAX_VALUE)
+                return days.length;
+            int index = Arrays.binarySearch(days, (int) epochDay);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.codeboy.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalization of text shared by the indexes, so that queries and indexed text are compared the same way.
+ */
+final class TextNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Normalize a string for searching: lower case, without accents and with "ß" spelled as "ss".
+     *
+     * @param s the string, may be null
+     * @return the normalized string, empty for null
+     */
+    static String normalize(String s) {
+        if (s == null)
+            return "";
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).replace("ß", "ss");
+    }
+
+    /**
+     * Split normalized text into words of at least two letters or digits.
+     *
+     * @param normalized the normalized text
+     * @param tokens     the list the words are added to
+     */
+    static void tokenize(String normalized, List<String> tokens) {
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= 2)
+                    tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    static List<String> tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(normalized, tokens);
+        return tokens;
+    }
+}
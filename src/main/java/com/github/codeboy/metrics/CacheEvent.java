@@ -0,0 +1,58 @@
+package com.github.codeboy.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * A lookup, store or eviction of a cache entry. Only create it if {@link Events#ENABLED} is true.
+ */
+@Name("com.github.codeboy.Cache")
+@Label("Mensa Cache")
+@Category({"Mensa4J", "Cache"})
+@StackTrace(false)
+public final class CacheEvent extends Event {
+
+    public static final String GET = "get";
+    public static final String PUT = "put";
+    public static final String EVICT = "evict";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    String key;
+
+    @Label("Hit")
+    @Description("Whether a get found a live entry")
+    boolean hit;
+
+    public static CacheEvent start() {
+        CacheEvent event = new CacheEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the operation and record it, if a recording asks for it.
+     */
+    public void finish(String operation, String key, boolean hit) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.key = key;
+            this.hit = hit;
+            commit();
+        }
+    }
+
+    /**
+     * Record an eviction of an expired entry, if a recording asks for it.
+     */
+    public static void evicted(String key) {
+        CacheEvent event = new CacheEvent();
+        if (event.shouldCommit()) {
+            event.operation = EVICT;
+            event.key = key;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.codeboy.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter that many threads can increment without contending on a single memory location.
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+}
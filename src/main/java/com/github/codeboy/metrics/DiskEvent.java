@@ -0,0 +1,50 @@
+package com.github.codeboy.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * A read, write or delete of a cache file. Only create it if {@link Events#ENABLED} is true.
+ */
+@Name("com.github.codeboy.Disk")
+@Label("Mensa Cache File")
+@Category({"Mensa4J", "Cache"})
+@StackTrace(false)
+public final class DiskEvent extends Event {
+
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    public static final String DELETE = "delete";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Failed")
+    boolean failed;
+
+    public static DiskEvent start() {
+        DiskEvent event = new DiskEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the operation and record it, if a recording asks for it.
+     */
+    public void finish(String operation, Object path, long bytes, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.path = String.valueOf(path);
+            this.bytes = bytes;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
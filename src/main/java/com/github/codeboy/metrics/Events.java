@@ -0,0 +1,34 @@
+package com.github.codeboy.metrics;
+
+/**
+ * Guards the JDK Flight Recorder events of this library.
+ * <p>
+ * The event classes extend {@code jdk.jfr.Event}, which doesn't exist on every platform, so callers only create
+ * them if {@link #ENABLED} is true:
+ * <pre>{@code
+ * FetchEvent event = Events.ENABLED ? FetchEvent.start() : null;
+ * ...
+ * if (event != null)
+ *     event.finish("openmensa", url, bytes, status);
+ * }</pre>
+ * While no recording is running an event costs a null check and an allocation the JIT removes, fields are only
+ * filled in for events that are actually recorded. Set {@code -Dmensa4j.jfr=false} to never create them.
+ */
+public final class Events {
+
+    public static final boolean ENABLED = isAvailable();
+
+    private Events() {
+    }
+
+    private static boolean isAvailable() {
+        if ("false".equals(System.getProperty("mensa4j.jfr")))
+            return false;
+        try {
+            Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.codeboy.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * A download of a menu, a canteen page or a feed. Only create it if {@link Events#ENABLED} is true.
+ */
+@Name("com.github.codeboy.Fetch")
+@Label("Mensa Fetch")
+@Category({"Mensa4J", "Network"})
+@Description("A download from OpenMensa or one of the provider sites")
+@StackTrace(false)
+public final class FetchEvent extends Event {
+
+    @Label("Provider")
+    String provider;
+
+    @Label("URL")
+    String url;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Status")
+    @Description("The HTTP status, 0 if no response was received")
+    int status;
+
+    public static FetchEvent start() {
+        FetchEvent event = new FetchEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the fetch and record it, if a recording asks for it.
+     */
+    public void finish(String provider, String url, long bytes, int status) {
+        end();
+        if (shouldCommit()) {
+            this.provider = provider;
+            this.url = url;
+            this.bytes = bytes;
+            this.status = status;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.codeboy.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with one bucket per power of two nanoseconds.
+ * <p>
+ * Recording is two additions on striped counters, so it can stay enabled on hot paths.
+ * Percentiles are accurate to a factor of two, which is plenty to tell a memory hit from a disk read
+ * from a download.
+ */
+public final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    // bucket i counts the values v with 2^(i-1) <= v < 2^i, bucket 0 counts 0
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param nanos the duration to record, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Record the time since a start time.
+     *
+     * @param startNanos the start time, taken from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(name, counts, sum.sum(), max.get());
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * The state of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(String name, long[] counts, long sum, long max) {
+            this.name = name;
+            this.counts = counts;
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of all recorded values, in nanoseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return the largest recorded value, in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the mean of the recorded values in nanoseconds, 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Get an upper bound of a percentile, accurate to a factor of two.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper bound in nanoseconds, 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0)
+                return 0;
+            long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0)
+                    return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{count=" + count +
+                    ", mean=" + format(getMean()) +
+                    ", p50=" + format(getPercentile(50)) +
+                    ", p99=" + format(getPercentile(99)) +
+                    ", max=" + format(max) +
+                    '}';
+        }
+
+        private static String format(double nanos) {
+            return String.format(java.util.Locale.ROOT, "%.3fms", nanos / TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.codeboy.metrics;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Publishes {@link Metrics} over JMX. Kept in its own class, so that platforms without JMX never load it.
+ */
+final class JmxMetrics implements MetricsMXBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Metrics metrics;
+
+    private JmxMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    static void register(Metrics metrics) {
+        try {
+            ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new JmxMetrics(metrics), name);
+        } catch (Exception | LinkageError e) {
+            // no JMX on this platform, the metrics are still available through Metrics.snapshot()
+            System.err.println("Warning: Failed to register the metrics MBean: " + e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return metrics.snapshot().getCounters();
+    }
+
+    @Override
+    public Map<String, Double> getLatencies() {
+        Map<String, Double> latencies = new TreeMap<>();
+        for (Histogram.Snapshot histogram : metrics.snapshot().getHistograms().values()) {
+            String name = histogram.getName();
+            latencies.put(name + ".count", (double) histogram.getCount());
+            latencies.put(name + ".mean", histogram.getMean() / NANOS_PER_MILLI);
+            latencies.put(name + ".p50", histogram.getPercentile(50) / NANOS_PER_MILLI);
+            latencies.put(name + ".p99", histogram.getPercentile(99) / NANOS_PER_MILLI);
+            latencies.put(name + ".max", histogram.getMax() / NANOS_PER_MILLI);
+        }
+        return latencies;
+    }
+
+    @Override
+    public double getMealCacheHitRatio() {
+        return metrics.snapshot().getHitRatio("cache.meals");
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.codeboy.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of all counters and latency histograms of Mensa4J.
+ * <p>
+ * Counters and histograms are created on first use and live as long as the registry, so callers
+ * look them up once and keep them in a static field. The metrics are published as the JMX MBean
+ * {@value #OBJECT_NAME}, unless the system property {@code mensa4j.jmx} is "false" or the platform
+ * has no JMX, like Android.
+ * <p>
+ * Names used by this library:
+ * <ul>
+ *     <li>{@code cache.meals.hits/misses}, {@code cache.opening.hits/misses}, {@code cache.evictions},
+ *     {@code cache.refreshes}</li>
+ *     <li>{@code provider.<name>.hits/misses/errors}, {@code provider.<name>.fetch}, {@code provider.rwth.parse}
+ *     for the providers openmensa, rwth and reykjavik</li>
+ *     <li>{@code http.requests/errors/bytes}, {@code http.fetch}, {@code json.decode}</li>
+ *     <li>{@code disk.read}, {@code disk.write}, {@code disk.errors}</li>
+ *     <li>{@code prefetch.fetches}, {@code prefetch.throttled}</li>
+ *     <li>{@code server.requests/errors}, {@code server.request}</li>
+ * </ul>
+ * Histograms record nanoseconds.
+ */
+public final class Metrics {
+
+    /**
+     * The name of the JMX MBean the metrics are published as.
+     */
+    public static final String OBJECT_NAME = "com.github.codeboy:type=Metrics";
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    static {
+        if (!"false".equals(System.getProperty("mensa4j.jmx")))
+            JmxMetrics.register(INSTANCE);
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the counter with the name, created if it doesn't exist
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * @return the histogram with the name, created if it doesn't exist
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    /**
+     * @return the current values of all metrics
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Counter counter : counters.values()) {
+            counterValues.put(counter.getName(), counter.get());
+        }
+        Map<String, Histogram.Snapshot> histogramValues = new TreeMap<>();
+        for (Histogram histogram : histograms.values()) {
+            histogramValues.put(histogram.getName(), histogram.snapshot());
+        }
+        return new MetricsSnapshot(counterValues, histogramValues);
+    }
+
+    /**
+     * Set all metrics back to zero.
+     */
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.codeboy.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link Metrics}.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return the counters by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return count, mean, p50, p99 and max of every histogram, e.g. "http.fetch.p99", durations in milliseconds
+     */
+    Map<String, Double> getLatencies();
+
+    /**
+     * @return the hit ratio of the meal cache, NaN before the first lookup
+     */
+    double getMealCacheHitRatio();
+
+    /**
+     * Set all metrics back to zero.
+     */
+    void reset();
+}
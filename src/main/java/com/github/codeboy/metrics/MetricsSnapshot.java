@@ -0,0 +1,70 @@
+package com.github.codeboy.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The values of all metrics at one point in time.
+ */
+public final class MetricsSnapshot {
+
+    private final Map<String, Long> counters;
+    private final Map<String, Histogram.Snapshot> histograms;
+
+    MetricsSnapshot(Map<String, Long> counters, Map<String, Histogram.Snapshot> histograms) {
+        this.counters = Collections.unmodifiableMap(counters);
+        this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * @return the counters by name, sorted by name
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return the histograms by name, sorted by name
+     */
+    public Map<String, Histogram.Snapshot> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @return the value of a counter, 0 if it doesn't exist
+     */
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    /**
+     * @return the snapshot of a histogram, or null if it doesn't exist
+     */
+    public Histogram.Snapshot getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * Get the hit ratio of a cache, e.g. {@code getHitRatio("cache.meals")} or {@code getHitRatio("provider.rwth")}.
+     *
+     * @param prefix the name of the counters without ".hits" and ".misses"
+     * @return the ratio of hits to all lookups, NaN if there were no lookups
+     */
+    public double getHitRatio(String prefix) {
+        long hits = getCounter(prefix + ".hits");
+        long lookups = hits + getCounter(prefix + ".misses");
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            builder.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        for (Histogram.Snapshot histogram : histograms.values()) {
+            builder.append(histogram).append('\n');
+        }
+        return builder.toString();
+    }
+}
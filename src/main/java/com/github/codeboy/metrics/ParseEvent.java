@@ -0,0 +1,44 @@
+package com.github.codeboy.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Decoding of a downloaded document, a JSON response or a scraped HTML page.
+ * Only create it if {@link Events#ENABLED} is true.
+ */
+@Name("com.github.codeboy.Parse")
+@Label("Mensa Parse")
+@Category({"Mensa4J", "Parsing"})
+@StackTrace(false)
+public final class ParseEvent extends Event {
+
+    @Label("Format")
+    @Description("json or html")
+    String format;
+
+    @Label("Source")
+    String source;
+
+    @Label("Input Length")
+    @Description("Characters of a JSON response, bytes of an HTML page")
+    long length;
+
+    public static ParseEvent start() {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the parse and record it, if a recording asks for it.
+     */
+    public void finish(String format, String source, long length) {
+        end();
+        if (shouldCommit()) {
+            this.format = format;
+            this.source = source;
+            this.length = length;
+            commit();
+        }
+    }
+}
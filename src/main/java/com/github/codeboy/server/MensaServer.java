@@ -0,0 +1,301 @@
+package com.github.codeboy.server;
+
+import com.github.codeboy.OpenMensa;
+import com.github.codeboy.Util;
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.cache.MensaCacheManager;
+import com.github.codeboy.metrics.Counter;
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the canteens and meals of an {@link OpenMensa} instance in the shape of the OpenMensa API,
+ * so that several processes can share one warm cache.
+ * <p>
+ * The server answers {@code /canteens?page=N}, {@code /canteens/{id}}, {@code /canteens/{id}/days/{date}} and
+ * {@code /canteens/{id}/days/{date}/meals} below {@link #API_PATH}, including the RWTH and Reykjavik canteens.
+ * Meals are read through the cache of the instance, concurrent requests for the same uncached day share one fetch.
+ * Days whose meals or opening state couldn't be fetched are answered with 404, like openmensa.org does for days
+ * without data, so that clients don't cache a failed fetch as an empty menu or a closed canteen.
+ * Other instances use it with {@code OpenMensa.getInstance().setBaseUrl(server.getBaseUrl())}.
+ * The canteens have to be loaded into the served instance, for example with {@link OpenMensa#initCanteens()}.
+ * <p>
+ * Requests run on virtual threads where the JVM has them (Java 21 and later), on a thread pool otherwise.
+ */
+public class MensaServer implements AutoCloseable {
+
+    public static final String API_PATH = "/api/v2";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final Pattern CANTEEN = Pattern.compile("/canteens/(\\d+)/?");
+    private static final Pattern DAY = Pattern.compile("/canteens/(\\d+)/days/([^/]+)/?");
+    private static final Pattern MEALS = Pattern.compile("/canteens/(\\d+)/days/([^/]+)/meals/?");
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("(?:^|&)(page|limit|per_page)=(\\d+)");
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final Counter REQUESTS = Metrics.getInstance().counter("server.requests");
+    private static final Counter ERRORS = Metrics.getInstance().counter("server.errors");
+    private static final Histogram LATENCY = Metrics.getInstance().histogram("server.request");
+
+    private final OpenMensa openMensa;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Gson gson = new Gson();
+    private final Map<String, CompletableFuture<List<Meal>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Start a server on all interfaces.
+     *
+     * @param openMensa the instance to serve
+     * @param port      the port, 0 for any free port
+     */
+    public MensaServer(OpenMensa openMensa, int port) throws IOException {
+        this(openMensa, new InetSocketAddress(port));
+    }
+
+    public MensaServer(OpenMensa openMensa, InetSocketAddress address) throws IOException {
+        this.openMensa = openMensa;
+        this.executor = createExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(API_PATH, this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        OpenMensa openMensa = OpenMensa.getInstance();
+        // serve the snapshot right away, the directory is refreshed in the background
+        openMensa.initCanteens();
+        MensaServer server = new MensaServer(openMensa, args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+        System.out.println("Serving " + server.getBaseUrl());
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor() only exists from Java 21 on
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "mensa4j-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return the url to use as the base url of other OpenMensa instances
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        String host = address.getAddress().isAnyLocalAddress() ? "localhost" : address.getHostString();
+        return "http://" + host + ":" + address.getPort() + API_PATH;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        REQUESTS.increment();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"method not allowed\"}");
+                return;
+            }
+            route(exchange);
+        } catch (RuntimeException e) {
+            ERRORS.increment();
+            System.err.println("Warning: Failed to answer " + exchange.getRequestURI() + ": " + e);
+            respond(exchange, 500, "{\"error\":\"internal error\"}");
+        } finally {
+            exchange.close();
+            LATENCY.recordSince(start);
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        String path = uri.getPath().substring(API_PATH.length());
+        Matcher matcher;
+        if (path.equals("/canteens") || path.equals("/canteens/")) {
+            sendCanteens(exchange, uri.getRawQuery());
+        } else if ((matcher = CANTEEN.matcher(path)).matches()) {
+            Mensa mensa = getMensa(matcher.group(1));
+            if (mensa == null)
+                respond(exchange, 404, "{\"error\":\"unknown canteen\"}");
+            else
+                respond(exchange, 200, gson.toJson(toJson(mensa)));
+        } else if ((matcher = MEALS.matcher(path)).matches() || (matcher = DAY.matcher(path)).matches()) {
+            boolean meals = matcher.pattern() == MEALS;
+            Mensa mensa = getMensa(matcher.group(1));
+            LocalDate date = parseDate(matcher.group(2));
+            if (mensa == null) {
+                respond(exchange, 404, "{\"error\":\"unknown canteen\"}");
+            } else if (date == null) {
+                respond(exchange, 400, "{\"error\":\"invalid date\"}");
+            } else if (meals) {
+                List<Meal> result = getMeals(mensa, date);
+                if (result == null)
+                    respond(exchange, 404, "{\"error\":\"no meals for this day\"}");
+                else
+                    respond(exchange, 200, gson.toJson(result));
+            } else {
+                Boolean open = isOpen(mensa, date);
+                if (open == null) {
+                    respond(exchange, 404, "{\"error\":\"no data for this day\"}");
+                } else {
+                    JsonObject day = new JsonObject();
+                    day.addProperty("date", date.toString());
+                    day.addProperty("closed", !open);
+                    respond(exchange, 200, gson.toJson(day));
+                }
+            }
+        } else {
+            respond(exchange, 404, "{\"error\":\"not found\"}");
+        }
+    }
+
+    private void sendCanteens(HttpExchange exchange, String query) throws IOException {
+        int page = 1, pageSize = DEFAULT_PAGE_SIZE;
+        if (query != null) {
+            Matcher matcher = PAGE_PARAMETER.matcher(query);
+            while (matcher.find()) {
+                int value = Integer.parseInt(matcher.group(2));
+                if (matcher.group(1).equals("page"))
+                    page = Math.max(1, value);
+                else
+                    pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, value));
+            }
+        }
+        List<Mensa> canteens = new ArrayList<>(openMensa.getAllCanteens());
+        int totalPages = (canteens.size() + pageSize - 1) / pageSize;
+        JsonArray json = new JsonArray();
+        // pages past the end are empty, which ends the paging of the OpenMensa client
+        long from = (long) (page - 1) * pageSize;
+        for (long i = from; i < canteens.size() && i < from + pageSize; i++) {
+            json.add(toJson(canteens.get((int) i)));
+        }
+        exchange.getResponseHeaders().set("X-Current-Page", String.valueOf(page));
+        exchange.getResponseHeaders().set("X-Per-Page", String.valueOf(pageSize));
+        exchange.getResponseHeaders().set("X-Total-Pages", String.valueOf(totalPages));
+        exchange.getResponseHeaders().set("X-Total-Count", String.valueOf(canteens.size()));
+        respond(exchange, 200, gson.toJson(json));
+    }
+
+    private Mensa getMensa(String id) {
+        try {
+            return openMensa.getMensa(Integer.parseInt(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the meals through the cache, with one fetch for all concurrent requests of an uncached day.
+     * The providers return an empty list when a fetch fails and only cache the meals they really got,
+     * so a day that isn't cached after the fetch failed.
+     *
+     * @return the meals, or null if they couldn't be fetched
+     */
+    private List<Meal> getMeals(Mensa mensa, LocalDate date) {
+        if (openMensa.getCacheManager().hasCachedMeals(mensa.getId(), date))
+            return mensa.getMeals(date);
+        String key = mensa.getId() + "/" + date;
+        CompletableFuture<List<Meal>> future = new CompletableFuture<>();
+        CompletableFuture<List<Meal>> running = inFlight.putIfAbsent(key, future);
+        if (running != null)
+            return running.join();
+        try {
+            List<Meal> meals = mensa.getMeals(date);
+            if (!openMensa.getCacheManager().hasCachedMeals(mensa.getId(), date))
+                meals = null;
+            future.complete(meals);
+            return meals;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * The providers answer false when a fetch fails, so a closed day only counts if the closing or an empty menu
+     * was cached.
+     *
+     * @return whether the canteen is open, or null if that couldn't be fetched
+     */
+    private Boolean isOpen(Mensa mensa, LocalDate date) {
+        if (mensa.isOpen(date))
+            return true;
+        MensaCacheManager cacheManager = openMensa.getCacheManager();
+        String day = Util.dateToString(date);
+        if (Boolean.FALSE.equals(cacheManager.getCachedOpeningTimes(mensa.getId(), day)))
+            return false;
+        List<Meal> meals = cacheManager.getCachedMeals(mensa.getId(), day);
+        return meals != null && meals.isEmpty() ? Boolean.FALSE : null;
+    }
+
+    private static JsonObject toJson(Mensa mensa) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", mensa.getId());
+        json.addProperty("name", mensa.getName());
+        json.addProperty("city", mensa.getCity());
+        json.addProperty("address", mensa.getAddress());
+        List<Double> coordinates = mensa.getCoordinates();
+        if (coordinates != null) {
+            JsonArray array = new JsonArray();
+            for (Double coordinate : coordinates) {
+                array.add(coordinate);
+            }
+            json.add("coordinates", array);
+        }
+        return json;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
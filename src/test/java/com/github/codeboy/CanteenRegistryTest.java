@@ -0,0 +1,62 @@
+package com.github.codeboy;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+class CanteenRegistryTest {
+
+    private static Mensa mensa(int id, String name) {
+        return new MensaImpl(id, name, "Aachen", "", Arrays.asList(50.78, 6.08));
+    }
+
+    @Test
+    public void testIntObjectMap() {
+        Random random = new Random(42);
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assertions.assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        Assertions.assertEquals(expected.size(), map.size());
+        for (int key = -1_000; key < 1_000; key++) {
+            Assertions.assertEquals(expected.get(key), map.get(key));
+        }
+        int[] keys = expected.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Assertions.assertArrayEquals(keys, map.keys());
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        CanteenRegistry registry = CanteenRegistry.of(Arrays.asList(mensa(5, "Mensa Vita"), mensa(1, "Mensa Academica")),
+                Collections.emptyMap());
+        Assertions.assertEquals(1, registry.getSearchIndex().search("vita", 10).size());
+
+        CanteenRegistry updated = registry.withMensa(mensa(3, "Bistro Templergraben"));
+        Assertions.assertEquals(Arrays.asList(1, 5), ids(registry.getCanteens()));
+        Assertions.assertEquals(Arrays.asList(1, 3, 5), ids(updated.getCanteens()));
+        Assertions.assertNull(registry.get(3));
+        Assertions.assertEquals("Bistro Templergraben", updated.get(3).getName());
+        // the search index of the old registry was carried over
+        Assertions.assertEquals(1, updated.getSearchIndex().search("bistro", 10).size());
+        Assertions.assertEquals(0, registry.getSearchIndex().search("bistro", 10).size());
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> updated.getCanteens().clear());
+    }
+
+    private static List<Integer> ids(Collection<Mensa> canteens) {
+        List<Integer> ids = new ArrayList<>();
+        for (Mensa mensa : canteens) {
+            ids.add(mensa.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.codeboy;
+
+import com.github.codeboy.api.DailyMenu;
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Flow;
+
+class MenuPublisherTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 10, 13);
+
+    @TempDir
+    Path cacheDirectory;
+
+    private final List<Runnable> fetches = new ArrayList<>();
+    private MensaCacheManager cacheManager;
+
+    private MenuPublisher publisher(int maxConcurrentFetches) {
+        cacheManager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        Map<Integer, Mensa> canteens = new HashMap<>();
+        for (int id = 1; id <= 3; id++) {
+            canteens.put(id, new MensaImpl(id, "Mensa " + id, "Aachen", "", null) {
+                @Override
+                public List<Meal> getMeals(String date, boolean bypassCache) {
+                    List<Meal> meals = Collections.singletonList(new Meal("Eintopf " + getId(), "Suppe", null, null));
+                    cacheManager.cacheMeals(getId(), date, meals);
+                    return meals;
+                }
+            });
+        }
+        cacheManager.cacheMeals(1, MONDAY, Collections.emptyList());
+        // fetches run when the test runs them
+        return new MenuPublisher(new AccessTracker(), canteens::get, () -> cacheManager, Arrays.asList(1, 2, 3),
+                MONDAY, MONDAY.plusDays(1), maxConcurrentFetches, fetches::add);
+    }
+
+    @Test
+    public void testBackpressure() {
+        Recorder recorder = new Recorder();
+        publisher(2).subscribe(recorder);
+        Assertions.assertTrue(recorder.items.isEmpty());
+
+        // the cached day comes right away, nothing is fetched without demand
+        recorder.subscription.request(1);
+        Assertions.assertEquals(Collections.singletonList("1 2025-10-13 0"), recorder.items);
+        Assertions.assertTrue(fetches.isEmpty());
+
+        // at most two fetches at once, emitted in the order they complete
+        recorder.subscription.request(10);
+        Assertions.assertEquals(2, fetches.size());
+        fetches.remove(1).run();
+        Assertions.assertEquals("3 2025-10-13 1", recorder.items.get(1));
+        Assertions.assertEquals(2, fetches.size());
+        while (!fetches.isEmpty()) {
+            fetches.remove(0).run();
+        }
+        Assertions.assertEquals(6, recorder.items.size());
+        Assertions.assertTrue(recorder.completed);
+
+        // the second subscriber finds everything in the cache
+        Recorder second = new Recorder();
+        publisher(2).subscribe(second);
+        second.subscription.request(Long.MAX_VALUE);
+        Assertions.assertTrue(fetches.isEmpty());
+        Assertions.assertEquals(6, second.items.size());
+        Assertions.assertTrue(second.completed);
+    }
+
+    @Test
+    public void testCancel() {
+        Recorder recorder = new Recorder();
+        publisher(1).subscribe(recorder);
+        recorder.subscription.request(3);
+        Assertions.assertEquals(1, fetches.size());
+        recorder.subscription.cancel();
+        fetches.remove(0).run();
+        Assertions.assertTrue(fetches.isEmpty());
+        Assertions.assertEquals(1, recorder.items.size());
+        Assertions.assertFalse(recorder.completed);
+
+        Recorder invalid = new Recorder();
+        publisher(1).subscribe(invalid);
+        invalid.subscription.request(0);
+        Assertions.assertTrue(invalid.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testSharedFetchLimit() {
+        MenuPublisher publisher = publisher(1);
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        first.subscription.request(2);
+        second.subscription.request(2);
+        // both subscribers want canteen 2, but only one fetch runs at a time
+        Assertions.assertEquals(1, fetches.size());
+        fetches.remove(0).run();
+        Assertions.assertEquals(Arrays.asList("1 2025-10-13 0", "2 2025-10-13 1"), first.items);
+        // the completed fetch wakes up the second subscriber, which finds the day cached now
+        Assertions.assertEquals(Arrays.asList("1 2025-10-13 0", "2 2025-10-13 1"), second.items);
+        Assertions.assertTrue(fetches.isEmpty());
+    }
+
+    private static final class Recorder implements Flow.Subscriber<DailyMenu> {
+        final List<String> items = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DailyMenu item) {
+            items.add(item.getMensaId() + " " + item.getDate() + " " + item.getMeals().size());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.codeboy;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+class PrefetcherTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testDecay() {
+        AccessTracker tracker = new AccessTracker(HOUR);
+        for (int i = 0; i < 8; i++) {
+            tracker.recordAccess(1, 0);
+        }
+        tracker.recordAccess(2, 3 * HOUR);
+        tracker.recordAccess(2, 3 * HOUR);
+        // 8 requests three half-lives ago count as much as 1 request now
+        Assertions.assertEquals(1.0, tracker.getScore(1, 3 * HOUR), 1e-9);
+        Assertions.assertEquals(Arrays.asList(2, 1), tracker.getTopCanteens(5, 3 * HOUR));
+        Assertions.assertEquals(Collections.singletonList(2), tracker.getTopCanteens(1, 3 * HOUR));
+
+        AccessTracker.untracked(() -> tracker.recordAccess(3, 3 * HOUR));
+        Assertions.assertEquals(0.0, tracker.getScore(3, 3 * HOUR));
+    }
+
+    @Test
+    public void testTokenBucket() {
+        long nanosPerHour = HOUR * 1_000_000;
+        TokenBucket bucket = new TokenBucket(2, 0);
+        Assertions.assertTrue(bucket.tryAcquire(0));
+        Assertions.assertTrue(bucket.tryAcquire(0));
+        Assertions.assertFalse(bucket.tryAcquire(0));
+        Assertions.assertTrue(bucket.tryAcquire(nanosPerHour / 2));
+        Assertions.assertFalse(bucket.tryAcquire(nanosPerHour / 2));
+        // the burst is capped at the hourly budget
+        Assertions.assertTrue(bucket.tryAcquire(10 * nanosPerHour));
+        Assertions.assertTrue(bucket.tryAcquire(10 * nanosPerHour));
+        Assertions.assertFalse(bucket.tryAcquire(10 * nanosPerHour));
+    }
+
+    @Test
+    public void testPrefetch() {
+        MensaCacheManager cacheManager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        List<String> fetches = new ArrayList<>();
+        Map<Integer, Mensa> canteens = new HashMap<>();
+        for (int id = 1; id <= 3; id++) {
+            canteens.put(id, new MensaImpl(id, "Mensa " + id, "Aachen", "", null) {
+                @Override
+                public List<Meal> getMeals(String date, boolean bypassCache) {
+                    fetches.add(getId() + " " + date);
+                    cacheManager.cacheMeals(getId(), date, Collections.emptyList());
+                    return Collections.emptyList();
+                }
+            });
+        }
+        AccessTracker tracker = new AccessTracker();
+        tracker.recordAccess(3);
+        tracker.recordAccess(3);
+        tracker.recordAccess(1);
+        LocalDate today = LocalDate.now();
+        cacheManager.cacheMeals(1, today, Collections.emptyList());
+
+        Prefetcher prefetcher = new Prefetcher(tracker, canteens::get, () -> cacheManager, 2, 2, new TokenBucket(2));
+        Assertions.assertEquals(2, prefetcher.prefetch());
+        // today first, the cached day is skipped, canteen 2 was never requested
+        Assertions.assertEquals(Arrays.asList("3 " + today, "3 " + today.plusDays(1)), fetches);
+        // the budget is used up
+        Assertions.assertEquals(0, prefetcher.prefetch());
+        Assertions.assertEquals(0.0, tracker.getScore(2));
+    }
+
+    @Test
+    public void testFailedFetchesAreSkipped() {
+        MensaCacheManager cacheManager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        List<String> fetches = new ArrayList<>();
+        // a closed canteen, every fetch fails and nothing is cached
+        Mensa closed = new MensaImpl(1, "Mensa 1", "Aachen", "", null) {
+            @Override
+            public List<Meal> getMeals(String date, boolean bypassCache) {
+                fetches.add(date);
+                return Collections.emptyList();
+            }
+        };
+        AccessTracker tracker = new AccessTracker();
+        tracker.recordAccess(1);
+        Prefetcher prefetcher = new Prefetcher(tracker, id -> closed, () -> cacheManager, 1, 2, new TokenBucket(100));
+        Assertions.assertEquals(2, prefetcher.prefetch(0));
+        Assertions.assertEquals(0, prefetcher.prefetch(HOUR));
+        Assertions.assertEquals(2, fetches.size());
+        // retried once the failures expired
+        Assertions.assertEquals(2, prefetcher.prefetch(Prefetcher.FAILURE_RETRY_MINUTES * 60 * 1000L));
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.codeboy;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+class UtilTest {
+
+    @Test
+    public void testDateToString() {
+        LocalDate date = LocalDate.of(2025, 10, 13);
+        Assertions.assertEquals("2025-10-13", Util.dateToString(date));
+        // days sharing a slot of the rendered dates
+        Assertions.assertEquals("2028-08-02", Util.dateToString(date.plusDays(1024)));
+        Assertions.assertEquals("2025-10-13", Util.dateToString(date.toEpochDay()));
+        Assertions.assertEquals("1969-12-31", Util.dateToString(-1));
+
+        Date lateEvening = Date.from(date.atTime(23, 59).atZone(ZoneId.systemDefault()).toInstant());
+        Assertions.assertEquals("2025-10-13", Util.dateToString(lateEvening));
+        Assertions.assertEquals(date, Util.toLocalDate(lateEvening));
+    }
+}
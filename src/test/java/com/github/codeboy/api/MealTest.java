@@ -0,0 +1,101 @@
+package com.github.codeboy.api;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class MealTest {
+
+    @Test
+    public void testFlags() {
+        Meal meal = new Meal("Gemüsecurry", "Vegan", Arrays.asList("vegan", "Gluten", "Weizen", "Sellerie"), null);
+        Assertions.assertTrue(meal.hasFlag(DietaryFlag.VEGAN));
+        Assertions.assertTrue(meal.hasFlag(DietaryFlag.VEGETARIAN));
+        Assertions.assertTrue(meal.hasFlag(DietaryFlag.GLUTEN));
+        Assertions.assertTrue(meal.hasFlag(DietaryFlag.WHEAT));
+        Assertions.assertFalse(meal.hasFlag(DietaryFlag.PORK));
+    }
+
+    @Test
+    public void testMatches() {
+        long vegan = DietaryFlag.maskOf(DietaryFlag.VEGAN);
+        long nuts = DietaryFlag.maskOf(DietaryFlag.NUTS, DietaryFlag.PEANUTS);
+
+        Meal curry = new Meal("Curry", "Vegan", Arrays.asList("vegan", "Erdnüsse"), null);
+        Meal salad = new Meal("Salat", "Vegan", Collections.singletonList("Vegan"), null);
+        Meal schnitzel = new Meal("Schnitzel", "Klassiker", Collections.singletonList("Schwein"), null);
+
+        Assertions.assertFalse(curry.matches(vegan, nuts));
+        Assertions.assertTrue(salad.matches(vegan, nuts));
+        Assertions.assertFalse(schnitzel.matches(vegan, nuts));
+        Assertions.assertTrue(schnitzel.matches(0, nuts));
+    }
+
+    @Test
+    public void testAbsenceNotes() {
+        Meal meal = new Meal("Reis", "Beilage", Arrays.asList("glutenfrei", "laktosefrei", "gluten-free", "free of milk"), null);
+        Assertions.assertEquals(0, meal.getFlags());
+
+        // "frei" in a word that doesn't negate the keyword
+        Meal omelette = new Meal("Omelette", "Tellergericht", Arrays.asList("Freilandeier", "glutenfrei"), null);
+        Assertions.assertEquals(DietaryFlag.EGGS.mask(), omelette.getFlags());
+        Assertions.assertFalse(omelette.matches(0, DietaryFlag.EGGS.mask()));
+        Assertions.assertTrue(new Meal("Rührei", "Frühstück", Collections.singletonList("free-range eggs"), null)
+                .hasFlag(DietaryFlag.EGGS));
+        Assertions.assertEquals(DietaryFlag.EGGS.mask(),
+                new Meal("Pasta", "Tellergericht", Collections.singletonList("glutenfrei, enthält Eier"), null).getFlags());
+    }
+
+    @Test
+    public void testInterning() {
+        Meal first = new Meal(new String("Currywurst"), "Tellergericht", Arrays.asList("Schweinefleisch", "Senf"),
+                new Prices("3.23", "4.83", null, "5.63"));
+        String json = new Gson().toJson(Collections.singletonList(first));
+        List<Meal> decoded = new Gson().fromJson(json, new TypeToken<List<Meal>>() {
+        }.getType());
+        Meal second = decoded.get(0);
+
+        Assertions.assertSame(first.getName(), second.getName());
+        Assertions.assertSame(first.getNotes(), second.getNotes());
+        Assertions.assertSame(first.getPrices(), second.getPrices());
+        Assertions.assertEquals(323, second.getPrices().getStudentsCents());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> second.getNotes().add("Gluten"));
+    }
+
+    @Test
+    public void testValueSemantics() {
+        List<String> notes = new ArrayList<>(Arrays.asList("vegan", "Gluten"));
+        Meal meal = new Meal("Falafel", "Vegan", notes, new Prices("2.5", null, null, "4"));
+        notes.add("Sesamsamen");
+        Assertions.assertEquals(2, meal.getNotes().size());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> meal.getNotes().clear());
+
+        // OpenMensa payloads have ids and numeric prices
+        String json = "{\"id\": 7, \"name\": \"Falafel\", \"category\": \"Vegan\", \"notes\": [\"vegan\", \"Gluten\"],"
+                + " \"prices\": {\"students\": 2.5, \"employees\": null, \"pupils\": null, \"others\": 4}}";
+        Meal decoded = new Gson().fromJson(json, Meal.class);
+        Assertions.assertEquals(meal, decoded);
+        Assertions.assertEquals(meal.hashCode(), decoded.hashCode());
+        Assertions.assertTrue(decoded.hasFlag(DietaryFlag.VEGAN));
+        Assertions.assertEquals(250, decoded.getPrices().getStudentsCents());
+        Assertions.assertEquals(decoded, new Gson().fromJson(new Gson().toJson(decoded), Meal.class));
+        Assertions.assertNotEquals(meal, new Meal("Falafel", "Vegan", notes, meal.getPrices()));
+    }
+
+    @Test
+    public void testFlagsNotStored() {
+        Meal meal = new Meal("Salat", "Vegan", Collections.singletonList("vegan"), null);
+        Assertions.assertFalse(new Gson().toJson(meal).contains("flags"));
+
+        // flags stored by an earlier version are derived again from the notes
+        Meal cached = new Gson().fromJson("{\"name\": \"Salat\", \"category\": \"Vegan\", \"notes\": [\"vegan\"], \"flags\": 4096}", Meal.class);
+        Assertions.assertEquals(meal.getFlags(), cached.getFlags());
+        Assertions.assertEquals(meal, cached);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.MensaImpl;
+import com.github.codeboy.api.Prices;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class CacheBundleTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        MensaCacheManager source = new MensaCacheManager(new FilePersistentCache(directory.resolve("source").toString()));
+        source.cacheMeals(187, "2025-10-13", Collections.singletonList(
+                new Meal("Käsespätzle", "Tellergericht", Collections.singletonList("vegetarisch"), new Prices("3.50", null, null, null))));
+        source.cacheOpeningTimes(187, "2025-10-13", true);
+        Path file = directory.resolve("warm.bundle");
+        Assertions.assertEquals(2, source.exportBundle(file, Collections.singletonList(
+                new MensaImpl(187, "Mensa Academica", "Aachen", "Pontwall 3, 52062 Aachen", Arrays.asList(50.78, 6.08)))));
+
+        MensaCacheManager target = new MensaCacheManager(new FilePersistentCache(directory.resolve("target").toString()));
+        CacheBundle bundle = target.importBundle(file);
+        Assertions.assertEquals(1, bundle.getCanteens().size());
+        Assertions.assertEquals("Mensa Academica", bundle.getCanteens().get(0).getName());
+
+        List<Meal> meals = target.getCachedMeals(187, "2025-10-13");
+        Assertions.assertNotNull(meals);
+        Assertions.assertEquals("Käsespätzle", meals.get(0).getName());
+        Assertions.assertEquals(Boolean.TRUE, target.getCachedOpeningTimes(187, "2025-10-13"));
+        Assertions.assertEquals(1, target.searchMeals("spätzle").size());
+    }
+
+    @Test
+    public void testDamagedBundle() throws Exception {
+        MensaCacheManager source = new MensaCacheManager(new FilePersistentCache(directory.resolve("source").toString()));
+        for (int i = 0; i < 50; i++) {
+            source.cacheOpeningTimes(187, "2025-10-" + (10 + i), i % 2 == 0);
+        }
+        Path file = directory.resolve("warm.bundle");
+        source.exportBundle(file, Collections.emptyList());
+
+        byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 0x55;
+        Files.write(file, content);
+
+        MensaCacheManager target = new MensaCacheManager(new FilePersistentCache(directory.resolve("target").toString()));
+        Assertions.assertThrows(IOException.class, () -> target.importBundle(file));
+        Assertions.assertEquals(0, target.getCacheSize());
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Prices;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+class CacheCodecTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    private static List<Meal> meals(int day) {
+        return Arrays.asList(
+                new Meal("Currywurst mit Pommes frites", "Tellergericht", Arrays.asList("Schweinefleisch", "Senf"),
+                        new Prices("3.23", "4.83", null, "5.63")),
+                new Meal("Gemüselasagne mit Tomatensauce " + day, "Vegetarisch", Arrays.asList("vegetarisch", "Gluten", "Milch"),
+                        new Prices("3.73", "5.33", null, "6.13")));
+    }
+
+    @Test
+    public void testCodecs() throws Exception {
+        byte[] json = "{\n  \"data\": \"Käsespätzle\"\n}".getBytes(StandardCharsets.UTF_8);
+        for (CacheCodec codec : Arrays.asList(CacheCodec.NONE, CacheCodec.DEFLATE, CacheCodec.deflate(9), CacheCodec.MEALS)) {
+            byte[] encoded = codec.encode(json);
+            Assertions.assertEquals(codec != CacheCodec.NONE, CacheCodec.isEncoded(encoded));
+            Assertions.assertArrayEquals(json, codec.decode(encoded));
+            // every codec reads the content of the others
+            Assertions.assertArrayEquals(json, CacheCodec.NONE.decode(encoded));
+        }
+
+        byte[] damaged = CacheCodec.DEFLATE.encode(json);
+        Assertions.assertThrows(IOException.class, () -> CacheCodec.DEFLATE.decode(Arrays.copyOf(damaged, damaged.length - 4)));
+
+        CacheCodec trained = CacheCodec.train(Arrays.asList(json, json), 1024);
+        byte[] encoded = trained.encode(json);
+        Assertions.assertThrows(IOException.class, () -> CacheCodec.MEALS.decode(encoded));
+        Assertions.assertArrayEquals(json, CacheCodec.deflate(trained.getDictionary()).decode(encoded));
+    }
+
+    @Test
+    public void testCompressedFiles() throws Exception {
+        FilePersistentCache plain = new FilePersistentCache(cacheDirectory.resolve("plain").toString());
+        FilePersistentCache compressed = new FilePersistentCache(cacheDirectory.resolve("meals").toString(), false, CacheCodec.MEALS);
+        MensaCacheManager plainManager = new MensaCacheManager(plain);
+        MensaCacheManager compressedManager = new MensaCacheManager(compressed);
+        for (int day = 10; day < 20; day++) {
+            plainManager.cacheMeals(187, "2025-10-" + day, meals(day));
+            compressedManager.cacheMeals(187, "2025-10-" + day, meals(day));
+        }
+        long plainBytes = size(plain.getCacheDirectory());
+        long compressedBytes = size(compressed.getCacheDirectory());
+        Assertions.assertTrue(compressedBytes * 3 < plainBytes, compressedBytes + " of " + plainBytes + " bytes");
+
+        // plain files stay readable with a codec, compressed ones without
+        Files.copy(plain.getCacheDirectory().resolve("meals_187_2025-10-10.cache.json"),
+                compressed.getCacheDirectory().resolve("meals_187_2025-10-01.cache.json"));
+        MensaCacheManager reopened = new MensaCacheManager(new FilePersistentCache(compressed.getCacheDirectory().toString()));
+        Assertions.assertEquals(11, reopened.getCacheSize());
+        Assertions.assertEquals("Currywurst mit Pommes frites", reopened.getCachedMeals(187, "2025-10-01").get(0).getName());
+        Assertions.assertEquals("Gemüselasagne mit Tomatensauce 15", reopened.getCachedMeals(187, "2025-10-15").get(1).getName());
+    }
+
+    private static long size(Path directory) throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.cache.json")) {
+            for (Path file : files) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+class CanteenSnapshotTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path file = cacheDirectory.resolve(CanteenSnapshot.FILE_NAME);
+        Assertions.assertNull(CanteenSnapshot.read(file));
+
+        CanteenSnapshot.write(file, Arrays.asList(
+                new MensaImpl(187, "Mensa Academica", "Aachen", "Pontwall 3, 52062 Aachen", Arrays.asList(50.78, 6.08)),
+                new MensaImpl(1, "Mensa ohne Adresse", null, null, null)));
+        CanteenSnapshot snapshot = CanteenSnapshot.read(file);
+        Assertions.assertNotNull(snapshot);
+
+        List<Mensa> canteens = snapshot.getCanteens();
+        Assertions.assertEquals(2, canteens.size());
+        Assertions.assertEquals(187, canteens.get(0).getId());
+        Assertions.assertEquals("Mensa Academica", canteens.get(0).getName());
+        Assertions.assertEquals("Pontwall 3, 52062 Aachen", canteens.get(0).getAddress());
+        Assertions.assertEquals(Arrays.asList(50.78, 6.08), canteens.get(0).getCoordinates());
+        Assertions.assertNull(canteens.get(1).getCity());
+        Assertions.assertNull(canteens.get(1).getCoordinates());
+
+        // only the snapshot itself is left behind
+        Assertions.assertEquals(1, Files.list(cacheDirectory).count());
+    }
+
+    @Test
+    public void testCorruptSnapshot() throws Exception {
+        Path file = cacheDirectory.resolve(CanteenSnapshot.FILE_NAME);
+        Files.write(file, new byte[]{1, 2, 3});
+        Assertions.assertNull(CanteenSnapshot.read(file));
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.metrics.Histogram;
+import com.github.codeboy.metrics.Metrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class FilePersistentCacheTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testSharedDirectory() throws Exception {
+        FilePersistentCache first = new FilePersistentCache(cacheDirectory.toString(), true);
+        FilePersistentCache second = new FilePersistentCache(cacheDirectory.toString(), true);
+        FilePersistentCache unshared = new FilePersistentCache(cacheDirectory.toString());
+        second.setRefreshInterval(0);
+
+        // a miss finds the entry the other process wrote
+        first.put("meals_187_2025-10-13", "Curry");
+        Assertions.assertEquals("Curry", second.get("meals_187_2025-10-13", String.class));
+        Assertions.assertNull(unshared.get("meals_187_2025-10-13", String.class));
+
+        // a changed entry is reloaded
+        first.put("meals_187_2025-10-13", "Gemüsecurry mit Reis");
+        Assertions.assertEquals("Gemüsecurry mit Reis", second.get("meals_187_2025-10-13", String.class));
+
+        first.remove("meals_187_2025-10-13");
+        Assertions.assertFalse(second.contains("meals_187_2025-10-13"));
+        Assertions.assertEquals(0, second.size());
+
+        // only the entries and the generation are left behind, no temporary files
+        first.put("meals_187_2025-10-14", "Schnitzel");
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            Assertions.assertEquals("[cache.generation, meals_187_2025-10-14.cache.json]",
+                    files.map(f -> f.getFileName().toString()).sorted().collect(Collectors.toList()).toString());
+        }
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        Path journalFile = cacheDirectory.resolve(CacheJournal.FILE_NAME);
+        Histogram syncs = Metrics.getInstance().histogram("journal.sync");
+        FilePersistentCache cache = new FilePersistentCache(cacheDirectory.toString());
+        cache.enableJournal(Long.MAX_VALUE);
+
+        // a week is written with a single fsync and no cache file until the checkpoint
+        long before = syncs.snapshot().getCount();
+        long expiration = System.currentTimeMillis() + 60_000;
+        Map<String, CacheEntry> week = new LinkedHashMap<>();
+        for (int day = 13; day < 20; day++) {
+            week.put("meals_187_2025-10-" + day, new CacheEntry("Curry " + day, expiration, day));
+        }
+        Assertions.assertEquals(7, cache.putAll(week).size());
+        Assertions.assertEquals(before + 1, syncs.snapshot().getCount());
+        Assertions.assertFalse(Files.exists(cacheDirectory.resolve("meals_187_2025-10-13.cache.json")));
+
+        Assertions.assertEquals(7, cache.checkpoint());
+        Assertions.assertEquals(0, Files.size(journalFile));
+        Assertions.assertTrue(Files.exists(cacheDirectory.resolve("meals_187_2025-10-13.cache.json")));
+
+        // a crash leaves the journal behind, the last record only partly written
+        cache.put("meals_187_2025-10-20", "Schnitzel");
+        cache.remove("meals_187_2025-10-13");
+        cache.put("meals_187_2025-10-21", "Falafel");
+        byte[] journal = Files.readAllBytes(journalFile);
+        Files.write(journalFile, Arrays.copyOf(journal, journal.length - 3));
+
+        FilePersistentCache recovered = new FilePersistentCache(cacheDirectory.toString());
+        Assertions.assertFalse(Files.exists(journalFile));
+        Assertions.assertEquals("Schnitzel", recovered.get("meals_187_2025-10-20", String.class));
+        Assertions.assertNull(recovered.get("meals_187_2025-10-13", String.class));
+        Assertions.assertNull(recovered.get("meals_187_2025-10-21", String.class));
+        Assertions.assertEquals("Curry 14", recovered.get("meals_187_2025-10-14", String.class));
+        Assertions.assertEquals(7, new FilePersistentCache(cacheDirectory.toString()).size());
+
+        cache.close();
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> new FilePersistentCache(cacheDirectory.toString(), true).enableJournal(1000));
+    }
+}
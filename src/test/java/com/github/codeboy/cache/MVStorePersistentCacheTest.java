@@ -0,0 +1,63 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Prices;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+class MVStorePersistentCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testMensaCacheManager() {
+        String file = directory.resolve("cache.mv.db").toString();
+        List<Meal> meals = Collections.singletonList(
+                new Meal("Käsespätzle", "Tellergericht", Collections.singletonList("vegetarisch"), new Prices("3.50", null, null, null)));
+        try (MVStorePersistentCache cache = new MVStorePersistentCache(file)) {
+            MensaCacheManager manager = new MensaCacheManager(cache);
+            Assertions.assertTrue(manager.cacheMeals(187, "2025-10-13", meals));
+            Assertions.assertFalse(manager.cacheMeals(187, "2025-10-13", meals));
+            manager.cacheMeals(18, "2025-10-13", meals);
+            manager.cacheOpeningTimes(187, "2025-10-13", true);
+            Assertions.assertEquals(Arrays.asList("meals_187_2025-10-13"), cache.getKeysWithPrefix("meals_187_"));
+        }
+
+        try (MVStorePersistentCache cache = new MVStorePersistentCache(file)) {
+            MensaCacheManager manager = new MensaCacheManager(cache);
+            Assertions.assertEquals("Käsespätzle", manager.getCachedMeals(187, "2025-10-13").get(0).getName());
+            Assertions.assertEquals(Boolean.TRUE, manager.getCachedOpeningTimes(187, "2025-10-13"));
+            Assertions.assertEquals(2, manager.searchMeals("spätzle").size());
+
+            manager.clearMensaCache(187);
+            Assertions.assertEquals(Arrays.asList("meals_18_2025-10-13"), cache.getAllKeys());
+            Assertions.assertEquals(1, manager.searchMeals("spätzle").size());
+        }
+    }
+
+    @Test
+    public void testBatchIsAtomic() {
+        try (MVStorePersistentCache cache = new MVStorePersistentCache(directory.resolve("cache.mv.db").toString())) {
+            long expiration = System.currentTimeMillis() + 60_000;
+            Map<String, CacheEntry> entries = new LinkedHashMap<>();
+            entries.put("a", new CacheEntry("first", expiration, 1));
+            entries.put("b", new CacheEntry(null, expiration));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cache.putAll(entries));
+            Assertions.assertEquals(0, cache.size());
+
+            entries.remove("b");
+            Assertions.assertEquals(Collections.singleton("a"), cache.putAll(entries));
+            Assertions.assertEquals(Collections.emptySet(), cache.putAll(entries));
+
+            cache.put("expired", "old", System.currentTimeMillis() - 1);
+            Assertions.assertNull(cache.get("expired", String.class));
+            Assertions.assertEquals("first", cache.get("a", String.class));
+            Assertions.assertEquals(Arrays.asList("a"), cache.getAllKeys());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Prices;
+import com.github.codeboy.metrics.Metrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+class MensaCacheManagerTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    private static List<Meal> meals(String... names) {
+        List<Meal> meals = new ArrayList<>();
+        for (String name : names) {
+            meals.add(new Meal(name, "Tellergericht", Collections.singletonList("vegan"), new Prices("3.50", null, null, null)));
+        }
+        return meals;
+    }
+
+    @Test
+    public void testChangeDetection() throws Exception {
+        MensaCacheManager manager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        List<String> changes = new ArrayList<>();
+        manager.addMenuChangeListener((mensaId, date, meals) -> changes.add(mensaId + " " + date));
+
+        Assertions.assertTrue(manager.cacheMeals(187, "2025-10-13", meals("Curry")));
+        Path file = cacheDirectory.resolve("meals_187_2025-10-13.cache.json");
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(modified - 10_000));
+
+        Assertions.assertFalse(manager.cacheMeals(187, "2025-10-13", meals("Curry")));
+        Assertions.assertEquals(modified - 10_000, Files.getLastModifiedTime(file).toMillis());
+
+        Map<String, List<Meal>> week = new LinkedHashMap<>();
+        week.put("2025-10-13", meals("Curry"));
+        week.put("2025-10-14", meals("Schnitzel"));
+        Assertions.assertEquals(Collections.singleton("2025-10-14"), manager.cacheMeals(187, week));
+        Assertions.assertEquals(Arrays.asList("187 2025-10-13", "187 2025-10-14"), changes);
+    }
+
+    @Test
+    public void testMealSearch() {
+        FilePersistentCache cache = new FilePersistentCache(cacheDirectory.toString());
+        new MensaCacheManager(cache).cacheMeals(96, "2025-10-14", meals("Jägerschnitzel mit Pommes"));
+
+        // entries that were already on disk are found as well
+        MensaCacheManager manager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        manager.cacheMeals(187, "2025-10-13", meals("Wiener Schnitzel", "Gemüsecurry"));
+        manager.cacheMeals(187, "2025-10-15", meals("Schnitzel vom Schwein"));
+
+        Assertions.assertEquals("[Hit{mensaId=187, date=2025-10-13}, Hit{mensaId=96, date=2025-10-14}, Hit{mensaId=187, date=2025-10-15}]",
+                manager.searchMeals("schnitzel").toString());
+        Assertions.assertEquals("[Hit{mensaId=187, date=2025-10-15}]", manager.searchMeals("Schnitzel Schwein").toString());
+        // the words have to be in the same meal, not only on the same day
+        Assertions.assertTrue(manager.searchMeals("schnitzel curry").isEmpty());
+        Assertions.assertArrayEquals(new int[]{1}, manager.searchMeals("gemuse vegan").get(0).getMealIndexes());
+        Assertions.assertArrayEquals(new int[]{0, 1}, manager.searchMeals("vegan", Collections.singleton(187),
+                LocalDate.of(2025, 10, 13), LocalDate.of(2025, 10, 13)).get(0).getMealIndexes());
+        Assertions.assertEquals("[Hit{mensaId=187, date=2025-10-13}]", manager.searchMeals("schnitzel",
+                Collections.singleton(187), LocalDate.of(2025, 10, 13), LocalDate.of(2025, 10, 14)).toString());
+
+        manager.cacheMeals(187, "2025-10-13", meals("Gemüsecurry"));
+        manager.removeCachedMeals(187, "2025-10-15");
+        Assertions.assertEquals("[Hit{mensaId=96, date=2025-10-14}]", manager.searchMeals("schnitzel").toString());
+        Assertions.assertEquals(2, manager.searchMeals("vegan").size());
+
+        // loading the index is no lookup, the days stay out of the heap and the hits are not counted
+        HeapPersistentCache heap = new HeapPersistentCache(10);
+        TieredPersistentCache tiered = new TieredPersistentCache(Arrays.asList(new CacheTier("index-heap", heap),
+                new CacheTier("index-disk", new FilePersistentCache(cacheDirectory.toString()))));
+        long hits = Metrics.getInstance().counter("cache.meals.hits").get();
+        Assertions.assertEquals(1, new MensaCacheManager(tiered).searchMeals("schnitzel").size());
+        Assertions.assertEquals(0, heap.size());
+        Assertions.assertEquals(hits, Metrics.getInstance().counter("cache.meals.hits").get());
+
+        // nor does it change which entries a cache drops first
+        HeapPersistentCache lru = new HeapPersistentCache(3);
+        MensaCacheManager heapManager = new MensaCacheManager(lru);
+        heapManager.cacheMeals(1, "2025-10-13", meals("Curry"));
+        lru.put("other", "value");
+        heapManager.cacheMeals(2, "2025-10-13", meals("Curry"));
+        Assertions.assertEquals(2, new MensaCacheManager(lru).searchMeals("curry").size());
+        lru.put("new", "value");
+        Assertions.assertEquals(Arrays.asList("other", "meals_2_2025-10-13", "new"), lru.getAllKeys());
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.codeboy.cache;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Prices;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class TieredPersistentCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testPromotion() throws Exception {
+        FilePersistentCache disk = new FilePersistentCache(directory.toString());
+        CacheTier heap = new CacheTier("promotion-heap", new HeapPersistentCache(10));
+        CacheTier files = new CacheTier("promotion-disk", disk);
+        try (TieredPersistentCache cache = new TieredPersistentCache(Arrays.asList(heap, files))) {
+            disk.put("key", "value", System.currentTimeMillis() + 60_000);
+
+            Assertions.assertEquals("value", cache.get("key", String.class));
+            Assertions.assertEquals(1, heap.getMisses());
+            Assertions.assertEquals(1, files.getHits());
+            Assertions.assertEquals(1, heap.getPromotions());
+
+            Assertions.assertEquals("value", cache.get("key", String.class));
+            Assertions.assertEquals(1, heap.getHits());
+            Assertions.assertEquals(1, files.getHits());
+
+            // a shared directory written by another process stands in for a remote tier
+            FilePersistentCache other = new FilePersistentCache(directory.resolve("shared").toString(), true);
+            other.put("remote", "value", System.currentTimeMillis() + 60_000);
+            CacheTier shared = new CacheTier("promotion-shared",
+                    new FilePersistentCache(directory.resolve("shared").toString(), true))
+                    .writePolicy(CacheTier.WritePolicy.NONE);
+            try (TieredPersistentCache remote = new TieredPersistentCache(Arrays.asList(
+                    new CacheTier("remote-heap", new HeapPersistentCache(10)), shared))) {
+                Assertions.assertEquals("value", remote.get("remote", String.class));
+                remote.put("remote", "changed");
+                // tiers that are not written to drop the stale entry
+                Assertions.assertFalse(shared.getCache().contains("remote"));
+                Assertions.assertEquals("changed", remote.get("remote", String.class));
+            }
+        }
+    }
+
+    @Test
+    public void testPromotionKeepsNewerValues() throws Exception {
+        HeapPersistentCache upper = new HeapPersistentCache(10);
+        long now = System.currentTimeMillis();
+        HeapPersistentCache lower = new HeapPersistentCache(10) {
+            @Override
+            public CacheEntry getEntry(String key) {
+                // another thread puts a newer value while the old one is read
+                upper.putAll(Collections.singletonMap(key, new CacheEntry("new", now + 60_000, now, CacheEntry.NO_CONTENT_HASH)));
+                return super.getEntry(key);
+            }
+        };
+        lower.putAll(Collections.singletonMap("key", new CacheEntry("old", now + 60_000, now - 1000, CacheEntry.NO_CONTENT_HASH)));
+        CacheTier heap = new CacheTier("newer-heap", upper);
+        try (TieredPersistentCache cache = new TieredPersistentCache(Arrays.asList(heap, new CacheTier("newer-lower", lower)))) {
+            Assertions.assertEquals("old", cache.get("key", String.class));
+            Assertions.assertEquals("new", upper.get("key", String.class));
+            Assertions.assertEquals(0, heap.getPromotions());
+        }
+
+        // a value that doesn't fit off the heap replaces the previous one by nothing
+        OffHeapPersistentCache offHeap = new OffHeapPersistentCache(1024);
+        offHeap.put("key", "small");
+        char[] large = new char[2048];
+        Arrays.fill(large, 'x');
+        Assertions.assertEquals(Collections.singleton("key"),
+                offHeap.putAll(Collections.singletonMap("key", new CacheEntry(new String(large), now + 60_000))));
+        Assertions.assertNull(offHeap.get("key", String.class));
+        Assertions.assertEquals(0, offHeap.size());
+        Assertions.assertEquals(0, offHeap.getBytes());
+    }
+
+    @Test
+    public void testWriteBackAndDemotion() throws Exception {
+        FilePersistentCache disk = new FilePersistentCache(directory.toString());
+        CacheTier heap = new CacheTier("demotion-heap", new HeapPersistentCache(2)).demote(true);
+        CacheTier files = new CacheTier("demotion-disk", disk).writePolicy(CacheTier.WritePolicy.BACK);
+        try (TieredPersistentCache cache = new TieredPersistentCache(Arrays.asList(heap, files), 60_000)) {
+            cache.put("a", "1");
+            cache.put("b", "2");
+            Assertions.assertEquals(2, files.getPendingWrites());
+            Assertions.assertEquals(0, disk.size());
+
+            // the heap drops "a", which is still waiting to be written back
+            cache.put("c", "3");
+            Assertions.assertEquals(0, files.getDemotions());
+            Assertions.assertEquals("1", cache.get("a", String.class));
+            Assertions.assertEquals(1, files.getHits());
+
+            cache.flush();
+            Assertions.assertEquals(0, files.getPendingWrites());
+            Assertions.assertEquals(Arrays.asList("a", "b", "c"), sorted(disk.getAllKeys()));
+
+            // entries the heap drops are demoted when the disk doesn't have them
+            disk.clearAll();
+            cache.put("d", "4");
+            cache.put("e", "5");
+            Assertions.assertTrue(files.getDemotions() > 0);
+            Assertions.assertTrue(disk.contains("a") || disk.contains("c") || disk.contains("d"));
+        }
+    }
+
+    @Test
+    public void testSpec() throws Exception {
+        String spec = "heap:100, demote=true; offheap:1m; disk:" + directory.resolve("disk") + ", write=back";
+        try (TieredPersistentCache cache = TieredPersistentCache.fromSpec(spec)) {
+            Assertions.assertEquals(3, cache.getTiers().size());
+            Assertions.assertEquals("offheap", cache.getTiers().get(1).getName());
+            Assertions.assertEquals(1 << 20, ((OffHeapPersistentCache) cache.getTiers().get(1).getCache()).getMaxBytes());
+            Assertions.assertEquals(CacheTier.WritePolicy.BACK, cache.getTiers().get(2).getWritePolicy());
+            Assertions.assertNotNull(cache.getCache(FilePersistentCache.class));
+
+            MensaCacheManager manager = new MensaCacheManager(cache);
+            List<Meal> meals = Collections.singletonList(
+                    new Meal("Curry", "Tellergericht", Collections.singletonList("vegan"), new Prices("3.50", null, null, null)));
+            Assertions.assertTrue(manager.cacheMeals(187, "2025-10-13", meals));
+            Assertions.assertFalse(manager.cacheMeals(187, "2025-10-13", meals));
+            Assertions.assertEquals("Curry", manager.getCachedMeals(187, "2025-10-13").get(0).getName());
+            Assertions.assertEquals(1, manager.searchMeals("curry").size());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TieredPersistentCache.fromSpec("heap; ram:10"));
+    }
+
+    private static List<String> sorted(List<String> keys) {
+        Collections.sort(keys);
+        return keys;
+    }
+}
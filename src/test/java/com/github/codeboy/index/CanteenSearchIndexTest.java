@@ -0,0 +1,58 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class CanteenSearchIndexTest {
+
+    private static Mensa mensa(int id, String name, String city, String address) {
+        return new MensaImpl(id, name, city, address, Arrays.asList(50.0, 6.0));
+    }
+
+    private static List<Integer> ids(List<Mensa> mensas) {
+        return mensas.stream().map(Mensa::getId).collect(Collectors.toList());
+    }
+
+    private final CanteenSearchIndex index = CanteenSearchIndex.build(Arrays.asList(
+            mensa(1, "Aachen, Mensa Academica", "Aachen", "Pontwall 3"),
+            mensa(2, "Aachen, Mensa Vita", "Aachen", "Helmertweg 1"),
+            mensa(3, "Köln, Mensa Zülpicher Straße", "Köln", "Zülpicher Straße 70"),
+            mensa(4, "Mensateria Aachen", "Aachen", "Turmstraße 3")
+    ));
+
+    @Test
+    public void testRanking() {
+        Assertions.assertEquals(Arrays.asList(4, 2, 1, 3), ids(index.search("mensa", 10)));
+        Assertions.assertEquals(Arrays.asList(2, 1, 4), ids(index.search("aachen", 10)));
+        Assertions.assertEquals(Arrays.asList(4, 2), ids(index.search("mensa", 2)));
+    }
+
+    @Test
+    public void testNormalization() {
+        Assertions.assertEquals(Arrays.asList(3), ids(index.search("zulpicher strasse", 10)));
+        Assertions.assertEquals(Arrays.asList(3), ids(index.search("KÖLN", 10)));
+        Assertions.assertEquals(Arrays.asList(4), ids(index.search("Turm", 10)));
+        Assertions.assertTrue(index.search("xyz", 10).isEmpty());
+    }
+
+    @Test
+    public void testShortQuery() {
+        Assertions.assertEquals(Arrays.asList(2), ids(index.search("vi", 10)));
+    }
+
+    @Test
+    public void testWithMensa() {
+        CanteenSearchIndex updated = index.withMensa(mensa(2, "Aachen, Bistro Templergraben", "Aachen", "Templergraben 55"))
+                .withMensa(mensa(5, "Jülich, Mensa", "Jülich", "Heinrich-Mußmann-Straße 1"));
+        Assertions.assertEquals(Arrays.asList(4, 5, 1, 3), ids(updated.search("mensa", 10)));
+        Assertions.assertEquals(Arrays.asList(2), ids(updated.search("templer", 10)));
+        Assertions.assertEquals(5, updated.size());
+        Assertions.assertEquals(Arrays.asList(4, 2, 1, 3), ids(index.search("mensa", 10)));
+    }
+}
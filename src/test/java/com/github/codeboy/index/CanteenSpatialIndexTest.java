@@ -0,0 +1,50 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Mensa;
+import com.github.codeboy.api.MensaImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+class CanteenSpatialIndexTest {
+
+    private static double distance(Mensa mensa, double lat, double lon) {
+        return CanteenSpatialIndex.distanceKm(lat, lon, mensa.getCoordinates().get(0), mensa.getCoordinates().get(1));
+    }
+
+    @Test
+    public void testDistance() {
+        // Aachen Hauptbahnhof to Köln Hauptbahnhof
+        Assertions.assertEquals(64.4, CanteenSpatialIndex.distanceKm(50.7678, 6.0915, 50.9430, 6.9589), 1);
+    }
+
+    @Test
+    public void testAgainstFullScan() {
+        Random random = new Random(42);
+        List<Mensa> canteens = new ArrayList<>();
+        for (int id = 0; id < 1000; id++) {
+            canteens.add(new MensaImpl(id, "Mensa " + id, "", "",
+                    Arrays.asList(47 + random.nextDouble() * 8, 6 + random.nextDouble() * 9)));
+        }
+        canteens.add(new MensaImpl(1000, "Unknown", "", "", Arrays.asList(0.0, 0.0)));
+        canteens.add(new MensaImpl(1001, "Missing", "", "", null));
+        CanteenSpatialIndex index = CanteenSpatialIndex.build(canteens);
+        Assertions.assertEquals(1000, index.size());
+
+        for (int i = 0; i < 50; i++) {
+            double lat = 47 + random.nextDouble() * 8, lon = 6 + random.nextDouble() * 9;
+            List<Mensa> expected = canteens.subList(0, 1000).stream()
+                    .sorted(Comparator.comparingDouble(mensa -> distance(mensa, lat, lon)))
+                    .collect(Collectors.toList());
+
+            Assertions.assertEquals(expected.subList(0, 7), index.findNearest(lat, lon, 7));
+
+            List<Mensa> within = expected.stream()
+                    .filter(mensa -> distance(mensa, lat, lon) <= 40)
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(within, index.findWithin(lat, lon, 40));
+        }
+    }
+}
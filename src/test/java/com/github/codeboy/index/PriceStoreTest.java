@@ -0,0 +1,69 @@
+package com.github.codeboy.index;
+
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.Prices;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class PriceStoreTest {
+
+    private static final long MONDAY = LocalDate.of(2025, 10, 13).toEpochDay();
+
+    private static List<Meal> meals(String... studentPrices) {
+        List<Meal> meals = new ArrayList<>();
+        for (String price : studentPrices) {
+            meals.add(new Meal("Essen", "Tellergericht", Collections.emptyList(), new Prices(price, "5.00", null, null)));
+        }
+        return meals;
+    }
+
+    @Test
+    public void testParseCents() {
+        Assertions.assertEquals(350, Prices.parseCents("3.50"));
+        Assertions.assertEquals(350, Prices.parseCents("3,5"));
+        Assertions.assertEquals(350, Prices.parseCents("3,50 €"));
+        Assertions.assertEquals(4, Prices.parseCents("0.035"));
+        Assertions.assertEquals(200, Prices.parseCents("2"));
+        Assertions.assertEquals(Prices.MISSING, Prices.parseCents(null));
+        Assertions.assertEquals(Prices.MISSING, Prices.parseCents(""));
+        Assertions.assertEquals(Prices.MISSING, Prices.parseCents("n/a"));
+    }
+
+    @Test
+    public void testAggregations() {
+        PriceStore store = new PriceStore();
+        store.record(187, MONDAY + 2, meals("2.00", null));
+        store.record(187, MONDAY, meals("3.50", "1.80"));
+        store.record(96, MONDAY, meals("2.20"));
+
+        Assertions.assertArrayEquals(new int[]{200, Prices.MISSING}, store.getPrices(187, MONDAY + 2, Prices.Audience.STUDENTS));
+        Assertions.assertEquals(180, store.getMinPrice(187, MONDAY, Prices.Audience.STUDENTS));
+        Assertions.assertEquals(Prices.MISSING, store.getMinPrice(187, MONDAY, Prices.Audience.PUPILS));
+        Assertions.assertEquals(730.0 / 3, store.getAveragePrice(187, MONDAY, MONDAY + 6, Prices.Audience.STUDENTS), 1e-9);
+
+        double[] daily = store.getDailyAverages(187, MONDAY, MONDAY + 2, Prices.Audience.STUDENTS);
+        Assertions.assertEquals(265.0, daily[0], 1e-9);
+        Assertions.assertTrue(Double.isNaN(daily[1]));
+        Assertions.assertEquals(200.0, daily[2], 1e-9);
+
+        PriceStore.Cheapest cheapest = store.findCheapest(Arrays.asList(96, 187), MONDAY, Prices.Audience.STUDENTS);
+        Assertions.assertEquals(187, cheapest.getMensaId());
+        Assertions.assertEquals(1, cheapest.getMealIndex());
+        Assertions.assertEquals(180, cheapest.getCents());
+
+        // replacing and removing days keeps the other days intact
+        store.record(187, MONDAY, meals("1.50"));
+        store.remove(187, MONDAY + 2);
+        Assertions.assertArrayEquals(new int[]{150}, store.getPrices(187, MONDAY, Prices.Audience.STUDENTS));
+        Assertions.assertArrayEquals(new int[0], store.getPrices(187, MONDAY + 2, Prices.Audience.STUDENTS));
+        Assertions.assertEquals(500.0, store.getAveragePrice(187, MONDAY, MONDAY + 6, Prices.Audience.EMPLOYEES), 1e-9);
+        store.remove(187, MONDAY);
+        Assertions.assertEquals(Collections.singleton(96), store.getMensaIds());
+    }
+}
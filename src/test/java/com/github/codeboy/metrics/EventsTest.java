@@ -0,0 +1,52 @@
+package com.github.codeboy.metrics;
+
+import com.github.codeboy.cache.FilePersistentCache;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class EventsTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testCacheEvents() throws Exception {
+        Assertions.assertTrue(Events.ENABLED);
+        Path file = cacheDirectory.resolve("cache.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.codeboy.Cache");
+            recording.enable("com.github.codeboy.Disk");
+            recording.start();
+
+            FilePersistentCache cache = new FilePersistentCache(cacheDirectory.resolve("cache").toString());
+            cache.put("meals_187_2025-10-13", "Curry");
+            cache.get("meals_187_2025-10-13", String.class);
+            cache.get("meals_187_2025-10-14", String.class);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if (name.equals("com.github.codeboy.Cache"))
+                events.add(event.getString("operation") + " " + event.getString("key") + " " + event.getBoolean("hit"));
+            else if (name.equals("com.github.codeboy.Disk"))
+                events.add(event.getString("operation") + " " + event.getLong("bytes"));
+        }
+        Assertions.assertEquals(4, events.size(), events.toString());
+        Assertions.assertTrue(events.contains("put meals_187_2025-10-13 false"), events.toString());
+        Assertions.assertTrue(events.contains("get meals_187_2025-10-13 true"), events.toString());
+        Assertions.assertTrue(events.contains("get meals_187_2025-10-14 false"), events.toString());
+        Assertions.assertTrue(events.stream().anyMatch(e -> e.startsWith("write ")), events.toString());
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.codeboy.metrics;
+
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+class MetricsTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assertions.assertEquals(100, snapshot.getCount());
+        Assertions.assertEquals(100_000_000L, snapshot.getMax());
+        Assertions.assertEquals(50_500_000.0, snapshot.getMean(), 0.001);
+        // percentiles are the upper bound of their power of two bucket
+        long median = snapshot.getPercentile(50);
+        Assertions.assertTrue(median >= 50_000_000L && median < 100_000_000L, String.valueOf(median));
+        Assertions.assertEquals(100_000_000L, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void testCacheHitRatio() {
+        Metrics metrics = Metrics.getInstance();
+        metrics.reset();
+        MensaCacheManager manager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        manager.cacheMeals(187, "2025-10-13", Collections.emptyList());
+        manager.getCachedMeals(187, "2025-10-13");
+        manager.getCachedMeals(187, "2025-10-13");
+        manager.getCachedMeals(187, "2025-10-14");
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        Assertions.assertEquals(2, snapshot.getCounter("cache.meals.hits"));
+        Assertions.assertEquals(1, snapshot.getCounter("cache.meals.misses"));
+        Assertions.assertEquals(2 / 3.0, snapshot.getHitRatio("cache.meals"), 0.001);
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.codeboy.server;
+
+import com.github.codeboy.OpenMensa;
+import com.github.codeboy.Util;
+import com.github.codeboy.api.Meal;
+import com.github.codeboy.api.MensaImpl;
+import com.github.codeboy.api.Prices;
+import com.github.codeboy.cache.FilePersistentCache;
+import com.github.codeboy.cache.MensaCacheManager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class MensaServerTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void testReadThrough() throws Exception {
+        System.setProperty("mensa4j.providers", "");
+        OpenMensa openMensa = OpenMensa.getInstance();
+        MensaCacheManager previous = openMensa.getCacheManager();
+        MensaCacheManager cacheManager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        openMensa.setCacheManager(cacheManager);
+        AtomicInteger fetches = new AtomicInteger();
+        openMensa.addMensa(new MensaImpl(424242, "Testmensa", "Aachen", "Templergraben 55", Arrays.asList(50.78, 6.08)) {
+            @Override
+            public List<Meal> getMeals(String date, boolean bypassCache) {
+                List<Meal> cached = cacheManager.getCachedMeals(getId(), date);
+                if (cached != null)
+                    return cached;
+                fetches.incrementAndGet();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                List<Meal> meals = Collections.singletonList(new Meal("Curry", "Tellergericht",
+                        Collections.singletonList("vegan"), new Prices("3.50", null, null, null)));
+                cacheManager.cacheMeals(getId(), date, meals);
+                return meals;
+            }
+        });
+
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try (MensaServer server = new MensaServer(openMensa, 0)) {
+            String url = server.getBaseUrl();
+            JsonObject canteen = JsonParser.parseString(Util.readUrl(url + "/canteens/424242")).getAsJsonObject();
+            Assertions.assertEquals("Testmensa", canteen.get("name").getAsString());
+            Assertions.assertEquals(2, canteen.get("coordinates").getAsJsonArray().size());
+
+            JsonArray page = JsonParser.parseString(Util.readUrl(url + "/canteens/?page=1")).getAsJsonArray();
+            Assertions.assertTrue(page.size() >= 1);
+            Assertions.assertEquals("[]", Util.readUrl(url + "/canteens/?page=1000"));
+
+            // concurrent requests for an uncached day share one fetch
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(clients.submit(() -> Util.readUrl(url + "/canteens/424242/days/2025-10-13/meals")));
+            }
+            for (Future<String> response : responses) {
+                JsonArray meals = JsonParser.parseString(response.get()).getAsJsonArray();
+                Assertions.assertEquals("Curry", meals.get(0).getAsJsonObject().get("name").getAsString());
+            }
+            Assertions.assertEquals(1, fetches.get());
+
+            Assertions.assertThrows(IOException.class, () -> Util.readUrl(url + "/canteens/424242/days/tomorrow/meals"));
+        } finally {
+            clients.shutdownNow();
+            openMensa.setCacheManager(previous);
+        }
+    }
+
+    @Test
+    public void testFailedFetch() throws Exception {
+        System.setProperty("mensa4j.providers", "");
+        OpenMensa openMensa = OpenMensa.getInstance();
+        MensaCacheManager previous = openMensa.getCacheManager();
+        MensaCacheManager cacheManager = new MensaCacheManager(new FilePersistentCache(cacheDirectory.toString()));
+        openMensa.setCacheManager(cacheManager);
+        // like the providers on an upstream error: nothing is cached, the answer looks like a closed day
+        openMensa.addMensa(new MensaImpl(424243, "Baustelle", "Aachen", "", null) {
+            @Override
+            public List<Meal> getMeals(String date, boolean bypassCache) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public boolean isOpen(String date) {
+                return false;
+            }
+        });
+
+        try (MensaServer server = new MensaServer(openMensa, 0)) {
+            String url = server.getBaseUrl() + "/canteens/424243/days/2025-10-13";
+            Assertions.assertEquals(404, status(url + "/meals"));
+            Assertions.assertEquals(404, status(url));
+
+            // a day really known to be closed is answered
+            cacheManager.cacheOpeningTimes(424243, "2025-10-13", false);
+            Assertions.assertEquals(200, status(url));
+            Assertions.assertTrue(JsonParser.parseString(Util.readUrl(url)).getAsJsonObject().get("closed").getAsBoolean());
+        } finally {
+            openMensa.setCacheManager(previous);
+        }
+    }
+
+    private static int status(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}